@@ -0,0 +1,74 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.benchmarks;
+
+import io.ecocode.html.checks.AvoidAutoplayCheck;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.plugins.html.node.Node;
+import org.sonar.plugins.html.node.TagNode;
+import org.sonar.plugins.html.visitor.HtmlSourceCode;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link AvoidAutoplayCheck} alone, notified of every start element of a document without any dispatching.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class AvoidAutoplayCheckBenchmark {
+
+    private final List<TagNode> elements = new ArrayList<>();
+
+    private AvoidAutoplayCheck check;
+
+    @Setup
+    public void setup(Corpus corpus) {
+        for (Node node : corpus.lexer().parse(new StringReader(corpus.content))) {
+            if (node instanceof TagNode && !((TagNode) node).isEndElement()) {
+                elements.add((TagNode) node);
+            }
+        }
+        check = Corpus.check(AvoidAutoplayCheck.class);
+    }
+
+    @Benchmark
+    public HtmlSourceCode startElement(Corpus corpus) {
+        HtmlSourceCode sourceCode = new HtmlSourceCode(corpus.inputFile);
+        check.startDocument(sourceCode, Collections.emptyList());
+        for (TagNode element : elements) {
+            check.startElement(element);
+        }
+        check.endDocument();
+        return sourceCode;
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.benchmarks;
+
+import io.ecocode.html.HtmlRulesDefinition;
+import io.ecocode.html.util.CorpusGenerator;
+import io.ecocode.html.visitor.HtmlNodeDispatcher;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.check.Rule;
+import org.sonar.plugins.html.api.HtmlConstants;
+import org.sonar.plugins.html.checks.AbstractPageCheck;
+import org.sonar.plugins.html.lex.PageLexer;
+import org.sonar.plugins.html.lex.VueLexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Generated document shared by the benchmarks.
+ */
+@State(Scope.Benchmark)
+public class Corpus {
+
+    @Param({"HTML", "VUE", "JSP"})
+    public CorpusGenerator.Kind kind;
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"0.2", "0.8"})
+    public double tagDensity;
+
+    public String content;
+
+    public ByteBuffer bytes;
+
+    public InputFile inputFile;
+
+    @Setup
+    public void generate() {
+        content = new CorpusGenerator(42, tagDensity).generate(kind, size);
+        bytes = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+        inputFile = new TestInputFileBuilder("benchmarks", "corpus." + kind.extension())
+                .setModuleBaseDir(Paths.get("."))
+                .setLanguage(HtmlConstants.LANGUAGE_KEY)
+                .setType(InputFile.Type.MAIN)
+                .setCharset(StandardCharsets.UTF_8)
+                .setContents(content)
+                .initMetadata(content)
+                .build();
+    }
+
+    public PageLexer lexer() {
+        return kind == CorpusGenerator.Kind.VUE ? new VueLexer() : new PageLexer();
+    }
+
+    /**
+     * Creates the checks without the check factory of the scanner, all of them being active.
+     */
+    public static HtmlNodeDispatcher dispatcher(List<Class<? extends AbstractPageCheck>> checks) {
+        HtmlNodeDispatcher dispatcher = new HtmlNodeDispatcher();
+        for (Class<? extends AbstractPageCheck> checkClass : checks) {
+            dispatcher.addVisitor(check(checkClass));
+        }
+        return dispatcher;
+    }
+
+    public static <T extends AbstractPageCheck> T check(Class<T> checkClass) {
+        try {
+            T check = checkClass.getDeclaredConstructor().newInstance();
+            check.setRuleKey(RuleKey.of(HtmlRulesDefinition.REPOSITORY_KEY, checkClass.getAnnotation(Rule.class).key()));
+            return check;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create check " + checkClass.getName(), e);
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.benchmarks;
+
+import io.ecocode.html.CheckList;
+import io.ecocode.html.HtmlAnalysisCache;
+import io.ecocode.html.HtmlAnalysisSettings;
+import io.ecocode.html.HtmlFileAnalyzer;
+import io.ecocode.html.HtmlFileContent;
+import io.ecocode.html.visitor.HtmlNodeDispatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.SonarEdition;
+import org.sonar.api.SonarQubeSide;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.internal.SonarRuntimeImpl;
+import org.sonar.api.utils.Version;
+import org.sonar.plugins.html.api.HtmlConstants;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Analysis of a file read from the file system, from the reading of its content to the visit of its nodes,
+ * by the analyzer of a worker thread which is reused from file to file, and by a new analyzer.
+ * The reading and decoding of the content is also measured alone, with the buffers of a worker and with new buffers.
+ * <p>
+ * Run with the JMH {@code gc} profiler, the difference of {@code gc.alloc.rate.norm} between both is what is allocated
+ * once per worker rather than once per file.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class FileAnalyzerBenchmark {
+
+    private Path directory;
+
+    private InputFile inputFile;
+
+    private HtmlAnalysisSettings settings;
+
+    private HtmlNodeDispatcher dispatcher;
+
+    private HtmlFileAnalyzer workerAnalyzer;
+
+    private final HtmlFileContent.Buffers workerBuffers = new HtmlFileContent.Buffers();
+
+    private final char[] readBuffer = new char[8 * 1024];
+
+    @Setup
+    public void setup(Corpus corpus) throws IOException {
+        directory = Files.createTempDirectory("ecocode-html-benchmarks");
+        String filename = "corpus." + corpus.kind.extension();
+        Files.writeString(directory.resolve(filename), corpus.content);
+        inputFile = new TestInputFileBuilder("benchmarks", filename)
+                .setModuleBaseDir(directory)
+                .setLanguage(HtmlConstants.LANGUAGE_KEY)
+                .setType(InputFile.Type.MAIN)
+                .setCharset(StandardCharsets.UTF_8)
+                .initMetadata(corpus.content)
+                .build();
+
+        // every file is lexed, whether an active rule may raise an issue on it or not
+        MapSettings mapSettings = new MapSettings().setProperty(HtmlAnalysisSettings.PRE_FILTER_PROPERTY, false);
+        settings = new HtmlAnalysisSettings(mapSettings.asConfig(),
+                SonarRuntimeImpl.forSonarQube(Version.create(9, 9), SonarQubeSide.SCANNER, SonarEdition.COMMUNITY));
+        dispatcher = Corpus.dispatcher(CheckList.getChecks());
+        workerAnalyzer = new HtmlFileAnalyzer(dispatcher, settings, HtmlAnalysisCache.disabled());
+    }
+
+    @TearDown
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public HtmlFileAnalyzer.Result workerAnalyzer() throws IOException {
+        return workerAnalyzer.analyze(inputFile);
+    }
+
+    @Benchmark
+    public HtmlFileAnalyzer.Result newAnalyzer() throws IOException {
+        return new HtmlFileAnalyzer(dispatcher, settings, HtmlAnalysisCache.disabled()).analyze(inputFile);
+    }
+
+    @Benchmark
+    public int readWithWorkerBuffers() throws IOException {
+        return read(HtmlFileContent.read(inputFile, true, workerBuffers));
+    }
+
+    @Benchmark
+    public int readWithoutBuffers() throws IOException {
+        return read(HtmlFileContent.read(inputFile, true));
+    }
+
+    private int read(HtmlFileContent content) throws IOException {
+        int length = 0;
+        try (Reader reader = content.reader()) {
+            int read;
+            while ((read = reader.read(readBuffer)) != -1) {
+                length += read;
+            }
+        }
+        return length;
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.benchmarks;
+
+import io.ecocode.html.lex.VueTemplateLexer;
+import io.ecocode.html.util.CorpusGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.plugins.html.node.Node;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Parse throughput of {@code PageLexer}, or of {@code VueLexer} for Vue documents, whose template block can also be lexed alone.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LexerBenchmark {
+
+    @Benchmark
+    public List<Node> parse(Corpus corpus) {
+        return corpus.lexer().parse(new StringReader(corpus.content));
+    }
+
+    /**
+     * Same as the analysis of a file: only the template block of Vue documents is lexed, other documents are lexed as a whole.
+     */
+    @Benchmark
+    public List<Node> parseTemplateOnly(Corpus corpus) {
+        List<Node> nodes = corpus.kind == CorpusGenerator.Kind.VUE
+                ? new VueTemplateLexer().parse(corpus.bytes, StandardCharsets.UTF_8)
+                : null;
+        return nodes != null ? nodes : parse(corpus);
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.benchmarks;
+
+import io.ecocode.html.CheckList;
+import io.ecocode.html.HtmlMetricsSaver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.plugins.html.visitor.HtmlSourceCode;
+
+import java.io.StringReader;
+import java.nio.file.Paths;
+
+/**
+ * Issues of a document saved on an in-memory {@link SensorContextTester}, which includes the creation
+ * of their locations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class MetricsSaverBenchmark {
+
+    private final HtmlMetricsSaver metricsSaver = new HtmlMetricsSaver(0);
+
+    private HtmlSourceCode sourceCode;
+
+    private SensorContextTester context;
+
+    @Setup
+    public void setup(Corpus corpus) {
+        sourceCode = new HtmlSourceCode(corpus.inputFile);
+        Corpus.dispatcher(CheckList.getChecks()).scan(corpus.lexer().parse(new StringReader(corpus.content)), sourceCode);
+    }
+
+    /**
+     * The context keeps all the saved issues, so a new one is used for each invocation.
+     */
+    @Setup(Level.Invocation)
+    public void createContext() {
+        context = SensorContextTester.create(Paths.get("."));
+    }
+
+    @Benchmark
+    public SensorContextTester saveMetrics() {
+        metricsSaver.saveMetrics(context, sourceCode);
+        return context;
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.benchmarks;
+
+import io.ecocode.html.CheckList;
+import io.ecocode.html.visitor.HtmlNodeDispatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.plugins.html.checks.AbstractPageCheck;
+import org.sonar.plugins.html.node.Node;
+import org.sonar.plugins.html.visitor.HtmlAstScanner;
+import org.sonar.plugins.html.visitor.HtmlSourceCode;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Visit of an already lexed document with all the checks, through the dispatcher used by the sensor
+ * and through the {@link HtmlAstScanner} of sonar-html, which notifies every check of every node.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ScanBenchmark {
+
+    private List<Node> nodes;
+
+    private HtmlNodeDispatcher dispatcher;
+
+    private HtmlAstScanner scanner;
+
+    @Setup
+    public void setup(Corpus corpus) {
+        nodes = corpus.lexer().parse(new StringReader(corpus.content));
+        dispatcher = Corpus.dispatcher(CheckList.getChecks());
+        scanner = new HtmlAstScanner(Collections.emptyList());
+        for (Class<? extends AbstractPageCheck> checkClass : CheckList.getChecks()) {
+            scanner.addVisitor(Corpus.check(checkClass));
+        }
+    }
+
+    @Benchmark
+    public HtmlSourceCode dispatcher(Corpus corpus) {
+        HtmlSourceCode sourceCode = new HtmlSourceCode(corpus.inputFile);
+        dispatcher.scan(nodes, sourceCode);
+        return sourceCode;
+    }
+
+    @Benchmark
+    public HtmlSourceCode htmlAstScanner(Corpus corpus) {
+        HtmlSourceCode sourceCode = new HtmlSourceCode(corpus.inputFile);
+        scanner.scan(nodes, sourceCode);
+        return sourceCode;
+    }
+
+}
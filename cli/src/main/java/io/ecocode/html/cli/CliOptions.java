@@ -0,0 +1,166 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.cli;
+
+import io.ecocode.html.HtmlAnalysisSettings;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Options of the command line, see {@link #USAGE}.
+ */
+public class CliOptions {
+
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: ecocode-html [options] <file or directory>...",
+            "Options:",
+            "  -f, --format <text|json>   output format, text by default",
+            "  -t, --threads <n>          number of analysis threads, one per processor by default",
+            "  -e, --encoding <charset>   encoding of the files, UTF-8 by default",
+            "  -r, --rules <keys>         comma-separated keys of the rules to run, all rules by default",
+            "  -D<property>=<value>       analysis property, like sonar.ecocode.html.largeFiles.hardLimit",
+            "  -h, --help                 prints this help",
+            "Exits with 0 when no issue is found, 1 when issues are found and 2 on errors.");
+
+    public enum Format {
+        TEXT,
+        JSON
+    }
+
+    private final List<Path> paths = new ArrayList<>();
+
+    private final Map<String, String> properties = new HashMap<>();
+
+    private final Set<String> rules = new HashSet<>();
+
+    private Format format = Format.TEXT;
+
+    private Charset encoding = StandardCharsets.UTF_8;
+
+    private boolean help;
+
+    private CliOptions() {
+        properties.put(HtmlAnalysisSettings.THREADS_PROPERTY, "0");
+    }
+
+    /**
+     * @throws IllegalArgumentException when an option is unknown or has an invalid value
+     */
+    public static CliOptions parse(String... args) {
+        CliOptions options = new CliOptions();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-h":
+                case "--help":
+                    options.help = true;
+                    break;
+                case "-f":
+                case "--format":
+                    options.format = parseFormat(value(args, ++i, arg));
+                    break;
+                case "-t":
+                case "--threads":
+                    options.properties.put(HtmlAnalysisSettings.THREADS_PROPERTY, value(args, ++i, arg));
+                    break;
+                case "-e":
+                case "--encoding":
+                    options.encoding = Charset.forName(value(args, ++i, arg));
+                    break;
+                case "-r":
+                case "--rules":
+                    for (String rule : value(args, ++i, arg).split(",")) {
+                        options.rules.add(rule.trim());
+                    }
+                    break;
+                default:
+                    options.parseArgument(arg);
+                    break;
+            }
+        }
+
+        if (options.paths.isEmpty() && !options.help) {
+            throw new IllegalArgumentException("No file or directory to analyze");
+        }
+        return options;
+    }
+
+    private void parseArgument(String arg) {
+        if (arg.startsWith("-D") && arg.indexOf('=') > 2) {
+            properties.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        } else if (arg.startsWith("-")) {
+            throw new IllegalArgumentException("Unknown option " + arg);
+        } else {
+            paths.add(Paths.get(arg));
+        }
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value of option " + option);
+        }
+        return args[index];
+    }
+
+    private static Format parseFormat(String format) {
+        try {
+            return Format.valueOf(format.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown format " + format, e);
+        }
+    }
+
+    public List<Path> paths() {
+        return paths;
+    }
+
+    public Map<String, String> properties() {
+        return properties;
+    }
+
+    /**
+     * @return the keys of the rules to run, or an empty set to run all of them
+     */
+    public Set<String> rules() {
+        return rules;
+    }
+
+    public Format format() {
+        return format;
+    }
+
+    public Charset encoding() {
+        return encoding;
+    }
+
+    public boolean help() {
+        return help;
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.cli;
+
+import io.ecocode.html.CheckList;
+import io.ecocode.html.HtmlAnalysisCache;
+import io.ecocode.html.HtmlAnalysisSettings;
+import io.ecocode.html.HtmlFileAnalyzer;
+import io.ecocode.html.HtmlFileContent;
+import io.ecocode.html.HtmlRulesDefinition;
+import io.ecocode.html.declarative.DeclarativeMatcher;
+import io.ecocode.html.declarative.DeclarativeRule;
+import io.ecocode.html.declarative.DeclarativeRules;
+import io.ecocode.html.declarative.DeclarativeRulesCheck;
+import io.ecocode.html.visitor.HtmlNodeDispatcher;
+import org.sonar.api.SonarEdition;
+import org.sonar.api.SonarQubeSide;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultIndexedFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.FileMetadata;
+import org.sonar.api.batch.fs.internal.Metadata;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.internal.SonarRuntimeImpl;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.Version;
+import org.sonar.check.Rule;
+import org.sonar.plugins.html.checks.AbstractPageCheck;
+import org.sonar.plugins.html.checks.HtmlIssue;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs the rules of the plugin on files and directories without a SonarQube scanner, for instance from a pre-commit hook.
+ * <p>
+ * Files are analyzed in parallel by the {@link HtmlFileAnalyzer} used by the sensor, and their issues are printed in the order
+ * of the files, with the same rule keys and locations as in SonarQube.
+ */
+public class HtmlCli {
+
+    /**
+     * Default suffixes of the HTML and JSP languages of sonar-html, and suffixes of the other files analyzed by the sensor.
+     */
+    static final Set<String> SUFFIXES = Set.of(
+            "html", "xhtml", "cshtml", "vbhtml", "aspx", "ascx", "rhtml", "erb", "shtm", "shtml", "cmp", "twig",
+            "jsp", "jspf", "jspx",
+            "php", "php3", "php4", "php5", "phtml", "inc", "vue");
+
+    private final CliOptions options;
+
+    private final PrintStream out;
+
+    private final PrintStream err;
+
+    HtmlCli(CliOptions options, PrintStream out, PrintStream err) {
+        this.options = options;
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        PrintStream out = System.out;
+        // the loggers of the analysis print to the standard output when no logging backend is available
+        System.setOut(System.err);
+        System.exit(run(args, out, System.err));
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        CliOptions options;
+        try {
+            options = CliOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(CliOptions.USAGE);
+            return 2;
+        }
+
+        if (options.help()) {
+            out.println(CliOptions.USAGE);
+            return 0;
+        }
+        return new HtmlCli(options, out, err).execute();
+    }
+
+    int execute() {
+        long start = System.nanoTime();
+        List<Path> files;
+        try {
+            files = files();
+        } catch (IOException | RuntimeException e) {
+            err.println("Cannot list files to analyze: " + e.getMessage());
+            return 2;
+        }
+
+        MapSettings properties = new MapSettings();
+        properties.addProperties(options.properties());
+        HtmlAnalysisSettings settings = new HtmlAnalysisSettings(properties.asConfig(),
+                SonarRuntimeImpl.forSonarQube(Version.create(9, 4), SonarQubeSide.SCANNER, SonarEdition.COMMUNITY));
+        List<Class<? extends AbstractPageCheck>> checks = checks();
+        DeclarativeMatcher declarativeMatcher = DeclarativeMatcher.compile(HtmlRulesDefinition.REPOSITORY_KEY, declarativeRules());
+        if (checks.size() + declarativeMatcher.rules().size() < options.rules().size()) {
+            err.println("Unknown rule in " + options.rules());
+            return 2;
+        }
+        ThreadLocal<HtmlFileAnalyzer> analyzers = ThreadLocal.withInitial(
+                () -> new HtmlFileAnalyzer(setupDispatcher(checks, declarativeMatcher), settings, HtmlAnalysisCache.disabled()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(settings.threads(), runnable -> {
+            Thread thread = new Thread(runnable, "ecocode-html-cli");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<List<ReportedIssue>>> results = new ArrayList<>();
+        for (Path file : files) {
+            results.add(executor.submit(() -> analyze(analyzers.get(), file)));
+        }
+
+        int issues = 0;
+        boolean errors = false;
+        if (options.format() == CliOptions.Format.JSON) {
+            out.println("{\"issues\": [");
+        }
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    for (ReportedIssue issue : results.get(i).get()) {
+                        print(issue, issues++);
+                    }
+                } catch (ExecutionException e) {
+                    err.println("Cannot analyze file " + files.get(i) + ": " + e.getCause());
+                    errors = true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 2;
+        } finally {
+            executor.shutdownNow();
+        }
+        if (options.format() == CliOptions.Format.JSON) {
+            out.println(System.lineSeparator() + "]}");
+        }
+
+        err.println(String.format(Locale.ENGLISH, "%d issue(s) found in %d file(s) in %d ms",
+                issues, files.size(), (System.nanoTime() - start) / 1_000_000));
+        if (errors) {
+            return 2;
+        }
+        return issues > 0 ? 1 : 0;
+    }
+
+    private void print(ReportedIssue issue, int index) {
+        if (options.format() == CliOptions.Format.JSON) {
+            out.print((index == 0 ? "" : "," + System.lineSeparator()) + "  " + issue.toJson());
+        } else {
+            out.println(issue.toText());
+        }
+    }
+
+    private List<Path> files() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path path : options.paths()) {
+            if (Files.isRegularFile(path)) {
+                files.add(path);
+                continue;
+            }
+            try (Stream<Path> walk = Files.walk(path)) {
+                files.addAll(walk
+                        .filter(file -> Files.isRegularFile(file) && SUFFIXES.contains(suffix(file)) && !isExcluded(path.relativize(file)))
+                        .sorted()
+                        .collect(Collectors.toList()));
+            }
+        }
+        return files;
+    }
+
+    private static String suffix(Path file) {
+        String fileName = file.getFileName().toString();
+        return fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * @return whether the file is in a hidden directory or in the dependencies of a Node.js project
+     */
+    private static boolean isExcluded(Path relativePath) {
+        for (int i = 0; i < relativePath.getNameCount() - 1; i++) {
+            String directory = relativePath.getName(i).toString();
+            if (directory.startsWith(".") || "node_modules".equals(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<ReportedIssue> analyze(HtmlFileAnalyzer analyzer, Path file) throws IOException {
+        // the file is read once, and decoded once for both its metadata and its analysis
+        HtmlFileContent content = HtmlFileContent.of(Files.readAllBytes(file), options.encoding());
+        Metadata metadata = new FileMetadata(err::println).readMetadata(new StringReader(content.text()));
+        Path baseDir = file.toAbsolutePath().getParent();
+        DefaultInputFile inputFile = new DefaultInputFile(
+                new DefaultIndexedFile("ecocode-html-cli", baseDir, file.getFileName().toString(), null),
+                metadataFile -> metadataFile.setMetadata(metadata),
+                content.text());
+        inputFile.setCharset(options.encoding());
+        inputFile.setStatus(InputFile.Status.ADDED);
+
+        List<ReportedIssue> issues = new ArrayList<>();
+        for (HtmlIssue issue : analyzer.analyze(inputFile, content).sourceCode().getIssues()) {
+            issues.add(new ReportedIssue(file.toString(), inputFile, issue));
+        }
+        return issues;
+    }
+
+    private List<Class<? extends AbstractPageCheck>> checks() {
+        List<Class<? extends AbstractPageCheck>> checks = new ArrayList<>();
+        for (Class<? extends AbstractPageCheck> check : CheckList.getChecks()) {
+            if (options.rules().isEmpty() || options.rules().contains(check.getAnnotation(Rule.class).key())) {
+                checks.add(check);
+            }
+        }
+        return checks;
+    }
+
+    private List<DeclarativeRule> declarativeRules() {
+        List<DeclarativeRule> rules = new ArrayList<>();
+        for (DeclarativeRule rule : DeclarativeRules.load()) {
+            if (options.rules().isEmpty() || options.rules().contains(rule.key())) {
+                rules.add(rule);
+            }
+        }
+        return rules;
+    }
+
+    private static HtmlNodeDispatcher setupDispatcher(List<Class<? extends AbstractPageCheck>> checks, DeclarativeMatcher declarativeMatcher) {
+        HtmlNodeDispatcher dispatcher = new HtmlNodeDispatcher();
+        for (Class<? extends AbstractPageCheck> checkClass : checks) {
+            try {
+                AbstractPageCheck check = checkClass.getDeclaredConstructor().newInstance();
+                check.setRuleKey(RuleKey.of(HtmlRulesDefinition.REPOSITORY_KEY, checkClass.getAnnotation(Rule.class).key()));
+                dispatcher.addVisitor(check);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create check " + checkClass.getName(), e);
+            }
+        }
+        if (!declarativeMatcher.isEmpty()) {
+            DeclarativeRulesCheck check = new DeclarativeRulesCheck(declarativeMatcher);
+            check.setRuleKey(RuleKey.of(HtmlRulesDefinition.REPOSITORY_KEY, DeclarativeRulesCheck.KEY));
+            dispatcher.addVisitor(check);
+        }
+        return dispatcher;
+    }
+
+}
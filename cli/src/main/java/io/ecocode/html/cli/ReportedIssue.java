@@ -0,0 +1,94 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.cli;
+
+import io.ecocode.html.HtmlMetricsSaver;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.plugins.html.checks.HtmlIssue;
+
+import javax.annotation.Nullable;
+import java.util.Locale;
+
+/**
+ * Issue located like {@link HtmlMetricsSaver} locates the issues saved by the sensor.
+ */
+public class ReportedIssue {
+
+    private final String file;
+
+    private final String ruleKey;
+
+    private final String message;
+
+    @Nullable
+    private final TextRange textRange;
+
+    ReportedIssue(String file, InputFile inputFile, HtmlIssue issue) {
+        this.file = file;
+        this.ruleKey = issue.ruleKey().toString();
+        this.message = issue.message() != null ? issue.message() : "";
+        this.textRange = HtmlMetricsSaver.range(inputFile, issue);
+    }
+
+    public String ruleKey() {
+        return ruleKey;
+    }
+
+    /**
+     * @return the issue as {@code file:line:column: message [rule]}, the column starting at 1 like in most editors
+     */
+    public String toText() {
+        if (textRange == null) {
+            return String.format(Locale.ENGLISH, "%s: %s [%s]", file, message, ruleKey);
+        }
+        return String.format(Locale.ENGLISH, "%s:%d:%d: %s [%s]",
+                file, textRange.start().line(), textRange.start().lineOffset() + 1, message, ruleKey);
+    }
+
+    /**
+     * @return the issue as a JSON object, the text range having the same fields as in the web API of SonarQube
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"rule\": ").append(quote(ruleKey))
+                .append(", \"file\": ").append(quote(file))
+                .append(", \"message\": ").append(quote(message));
+        if (textRange != null) {
+            json.append(String.format(Locale.ENGLISH,
+                    ", \"textRange\": {\"startLine\": %d, \"startOffset\": %d, \"endLine\": %d, \"endOffset\": %d}",
+                    textRange.start().line(), textRange.start().lineOffset(), textRange.end().line(), textRange.end().lineOffset()));
+        }
+        return json.append('}').toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HtmlCliTest {
+
+    private static final String PROJECT = Paths.get("src/test/resources/project").toString();
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Test
+    void textReport() {
+        assertThat(run(PROJECT)).isEqualTo(1);
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\\R")).containsExactly(
+                Paths.get(PROJECT, "index.html") + ":4:1: Avoid using autoplay attribute in audio element [ecocode-html:EC8000]",
+                Paths.get(PROJECT, "index.html") + ":6:1: Avoid using autoplay attribute in video element [ecocode-html:EC8000]",
+                Paths.get(PROJECT, "pages", "player.vue") + ":7:3: Avoid using autoplay attribute in video element [ecocode-html:EC8000]");
+        assertThat(err.toString(StandardCharsets.UTF_8)).startsWith("3 issue(s) found in 2 file(s)");
+    }
+
+    @Test
+    void jsonReport() {
+        assertThat(run("--format", "json", "--threads", "1", Paths.get(PROJECT, "pages").toString())).isEqualTo(1);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualToIgnoringNewLines("{\"issues\": ["
+                + "  {\"rule\": \"ecocode-html:EC8000\", \"file\": \"" + Paths.get(PROJECT, "pages", "player.vue").toString().replace("\\", "\\\\")
+                + "\", \"message\": \"Avoid using autoplay attribute in video element\","
+                + " \"textRange\": {\"startLine\": 7, \"startOffset\": 2, \"endLine\": 7, \"endOffset\": 33}}"
+                + "]}");
+    }
+
+    @Test
+    void rules() {
+        assertThat(run("-r", "EC8000", PROJECT)).isEqualTo(1);
+        assertThat(run("-r", "EC1", PROJECT)).isEqualTo(2);
+        assertThat(err.toString(StandardCharsets.UTF_8)).contains("Unknown rule in [EC1]");
+    }
+
+    @Test
+    void analysisProperties() {
+        assertThat(run("-Dsonar.ecocode.html.largeFiles.hardLimit=0", "-Dsonar.ecocode.html.streaming=true", PROJECT)).isEqualTo(1);
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\\R")).hasSize(3);
+    }
+
+    @Test
+    void malformedContentIsReplaced(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("latin1.html");
+        Files.write(file, "<p>caf\u00e9</p>\n<video src=\"a.mp4\" autoplay></video>\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        assertThat(run(file.toString())).isEqualTo(1);
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\\R")).containsExactly(
+                file + ":2:1: Avoid using autoplay attribute in video element [ecocode-html:EC8000]");
+    }
+
+    @Test
+    void usage() {
+        assertThat(run()).isEqualTo(2);
+        assertThat(run("--format", "xml", PROJECT)).isEqualTo(2);
+        assertThat(err.toString(StandardCharsets.UTF_8)).contains("No file or directory to analyze", "Unknown format xml", CliOptions.USAGE);
+
+        assertThat(run("--help")).isZero();
+        assertThat(out.toString(StandardCharsets.UTF_8)).contains(CliOptions.USAGE);
+    }
+
+    private int run(String... args) {
+        return HtmlCli.run(args, new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+}
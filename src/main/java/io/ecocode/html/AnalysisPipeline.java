@@ -0,0 +1,281 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import org.sonar.api.batch.fs.InputFile;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Analyzes files one after the other in three overlapping stages: a reader thread reads the content of the next files
+ * while an analysis thread lexes and visits the current one, and the calling thread saves the results of the previous ones.
+ * <p>
+ * Stages are connected by bounded queues, so that a stage waits for the next one when it falls behind, and at most
+ * {@value #PREFETCHED_FILES} read contents and {@value #PENDING_RESULTS} results wait in memory.
+ * Results are saved in the order of the files, like in a sequential analysis.
+ * Files are also only read once admitted by the {@link MemoryBudget}, which the calling thread releases once they are saved.
+ * When the analysis is cancelled, the reader and analysis threads are interrupted and abandon their file,
+ * and they are stopped before {@link #run} returns.
+ */
+final class AnalysisPipeline {
+
+    static final int PREFETCHED_FILES = 4;
+
+    static final int PENDING_RESULTS = 4;
+
+    /**
+     * Time between two checks of the cancellation of the analysis while waiting for the next result.
+     */
+    private static final long CANCELLATION_POLL_MILLIS = 50;
+
+    private final HtmlFileAnalyzer analyzer;
+
+    private final boolean readFromFileSystem;
+
+    private final ThreadFactory threadFactory;
+
+    private final MemoryBudget memoryBudget;
+
+    private final BlockingQueue<Content> contents = new ArrayBlockingQueue<>(PREFETCHED_FILES);
+
+    private final BlockingQueue<Outcome> outcomes = new ArrayBlockingQueue<>(PENDING_RESULTS);
+
+    /**
+     * @param analyzer analyzer used by the analysis thread only
+     */
+    AnalysisPipeline(HtmlFileAnalyzer analyzer, boolean readFromFileSystem, ThreadFactory threadFactory, MemoryBudget memoryBudget) {
+        this.analyzer = analyzer;
+        this.readFromFileSystem = readFromFileSystem;
+        this.threadFactory = threadFactory;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * @param saver called from the calling thread with the result of each analyzed file
+     * @param errorReporter called from the calling thread for each file which cannot be read, analyzed or saved
+     */
+    void run(Iterable<InputFile> inputFiles, BooleanSupplier cancelled, Consumer<HtmlFileAnalyzer.Result> saver,
+             BiConsumer<InputFile, Throwable> errorReporter) {
+        ExecutorService executor = Executors.newFixedThreadPool(2, threadFactory);
+        try {
+            executor.execute(() -> read(inputFiles));
+            executor.execute(() -> analyze(cancelled));
+
+            while (!cancelled.getAsBoolean()) {
+                Outcome outcome = outcomes.poll(CANCELLATION_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (outcome == null) {
+                    continue;
+                }
+                if (outcome.inputFile == null) {
+                    if (outcome.failure != null) {
+                        throw fatal(outcome.failure);
+                    }
+                    return;
+                }
+                try {
+                    save(outcome, saver, errorReporter);
+                } finally {
+                    memoryBudget.release(outcome.footprint);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while analyzing files", e);
+        } finally {
+            shutdown(executor);
+        }
+    }
+
+    /**
+     * Interrupts the reader and analysis threads and waits for them to stop, so that none of them outlives the analysis.
+     */
+    static void shutdown(ExecutorService executor) {
+        executor.shutdownNow();
+        try {
+            // the threads stop at their next check of the interruption or of the cancellation
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void save(Outcome outcome, Consumer<HtmlFileAnalyzer.Result> saver, BiConsumer<InputFile, Throwable> errorReporter) {
+        if (outcome.failure != null) {
+            errorReporter.accept(outcome.inputFile, outcome.failure);
+            return;
+        }
+        try {
+            saver.accept(outcome.result);
+        } catch (Exception e) {
+            errorReporter.accept(outcome.inputFile, e);
+        }
+    }
+
+    private static RuntimeException fatal(Throwable failure) {
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return new IllegalStateException("Cannot analyze files", failure);
+    }
+
+    /**
+     * Small files are read in buffers reused in turn: a buffer is read again only once the contents read after it filled
+     * the queue and the analysis thread took the next one, so that the analysis of its previous content is over.
+     */
+    private void read(Iterable<InputFile> inputFiles) {
+        HtmlFileContent.Buffers[] buffers = new HtmlFileContent.Buffers[PREFETCHED_FILES + 2];
+        int next = 0;
+        try {
+            for (InputFile inputFile : inputFiles) {
+                if (buffers[next] == null) {
+                    buffers[next] = new HtmlFileContent.Buffers();
+                }
+                boolean unread = analyzer.skipsUnread(inputFile);
+                long footprint = unread ? 0 : memoryBudget.footprint(inputFile);
+                memoryBudget.acquire(footprint);
+                if (unread) {
+                    contents.put(new Content(inputFile, null, footprint, null));
+                    continue;
+                }
+                HtmlFileContent content;
+                try {
+                    content = HtmlFileContent.read(inputFile, readFromFileSystem, buffers[next]);
+                } catch (Exception e) {
+                    // read again and reported by the analysis thread, like in a sequential analysis
+                    content = null;
+                }
+                next = (next + 1) % buffers.length;
+                contents.put(new Content(inputFile, content, footprint, null));
+            }
+            contents.put(new Content(null, null, 0, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            putLast(contents, new Content(null, null, 0, e));
+        }
+    }
+
+    private void analyze(BooleanSupplier cancelled) {
+        try {
+            while (true) {
+                Content content = contents.take();
+                if (content.inputFile == null) {
+                    outcomes.put(new Outcome(null, null, 0, content.failure));
+                    return;
+                }
+                Outcome outcome = analyze(content, cancelled);
+                if (outcome == null) {
+                    return;
+                }
+                outcomes.put(outcome);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            putLast(outcomes, new Outcome(null, null, 0, e));
+        }
+    }
+
+    /**
+     * @return the outcome of the analysis of the file, or null when the analysis was cancelled
+     */
+    @Nullable
+    private Outcome analyze(Content content, BooleanSupplier cancelled) {
+        try {
+            HtmlFileAnalyzer.Result result = analyzer.analyze(content.inputFile, content.content, cancelled);
+            return new Outcome(content.inputFile, result, content.footprint, null);
+        } catch (CancellationException e) {
+            return null;
+        } catch (Exception e) {
+            return new Outcome(content.inputFile, null, content.footprint, e);
+        }
+    }
+
+    /**
+     * Tells the next stage that the previous one failed, unless the pipeline is being shut down.
+     */
+    private static <T> void putLast(BlockingQueue<T> queue, T last) {
+        try {
+            queue.put(last);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Content of a file read by the reader thread, null when it could not be read or does not need to be read,
+     * or the end of the files when there is no file.
+     */
+    private static final class Content {
+
+        @Nullable
+        private final InputFile inputFile;
+
+        @Nullable
+        private final HtmlFileContent content;
+
+        private final long footprint;
+
+        @Nullable
+        private final Throwable failure;
+
+        private Content(@Nullable InputFile inputFile, @Nullable HtmlFileContent content, long footprint, @Nullable Throwable failure) {
+            this.inputFile = inputFile;
+            this.content = content;
+            this.footprint = footprint;
+            this.failure = failure;
+        }
+
+    }
+
+    /**
+     * Result of the analysis of a file, or the end of the analysis when there is no file.
+     */
+    private static final class Outcome {
+
+        @Nullable
+        private final InputFile inputFile;
+
+        @Nullable
+        private final HtmlFileAnalyzer.Result result;
+
+        private final long footprint;
+
+        @Nullable
+        private final Throwable failure;
+
+        private Outcome(@Nullable InputFile inputFile, @Nullable HtmlFileAnalyzer.Result result, long footprint, @Nullable Throwable failure) {
+            this.inputFile = inputFile;
+            this.result = result;
+            this.footprint = footprint;
+            this.failure = failure;
+        }
+
+    }
+
+}
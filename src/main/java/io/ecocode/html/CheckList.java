@@ -18,11 +18,17 @@
 package io.ecocode.html;
 
 import io.ecocode.html.checks.AvoidAutoplayCheck;
+import org.sonar.api.server.rule.RulesDefinition.NewRepository;
 import org.sonar.plugins.html.checks.AbstractPageCheck;
 
 import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Checks of the rules of the plugin, with the keys and parameters of their rules, listed by hand so that they are known
+ * without scanning the annotations of the checks by reflection when the plugin starts.
+ * The lists must follow the checks annotated with {@link org.sonar.check.Rule}, which is verified by the tests.
+ */
 public class CheckList {
 
     private CheckList() {
@@ -34,4 +40,30 @@ public class CheckList {
         );
     }
 
+    /**
+     * @return a new instance of each check, created without reflection, in the order of {@link #getChecks()}
+     */
+    public static List<AbstractPageCheck> newChecks() {
+        return Arrays.asList(
+                new AvoidAutoplayCheck()
+        );
+    }
+
+    /**
+     * @return the keys of the rules of the checks, in the order of {@link #getChecks()}
+     */
+    public static List<String> ruleKeys() {
+        return Arrays.asList(
+                AvoidAutoplayCheck.KEY
+        );
+    }
+
+    /**
+     * Adds the parameters of the rules, declared by the {@link org.sonar.check.RuleProperty} fields of their checks,
+     * to the rules already created in the repository.
+     */
+    static void addParams(NewRepository repository) {
+        // none of the checks has parameters
+    }
+
 }
@@ -0,0 +1,248 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.html.checks.HtmlIssue;
+import org.sonar.plugins.html.visitor.HtmlSourceCode;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Groups of files of an analysis whose contents are identical, such as vendored copies or generated pages:
+ * the first analyzed file of a group is lexed and visited, and its issues and measures are replayed on the other files.
+ * <p>
+ * Candidates are found before the analysis by comparing the sizes of the files, without reading them. Files having the size
+ * of another file are then grouped by the hash of their content, computed when they are read for their analysis,
+ * so that each file is read and hashed once, and by their {@link HtmlFileAnalyzer#analysisKind analysis kind},
+ * since the same content is analyzed differently in a PHP, JSP, Vue or HTML file, or with another charset.
+ */
+final class DuplicateContents {
+
+    private static final Logger LOG = Loggers.get(DuplicateContents.class);
+
+    private static final long WAIT_POLL_MILLIS = 50;
+
+    private static final DuplicateContents NONE = new DuplicateContents(Collections.emptyMap());
+
+    private final Map<InputFile, SameSize> candidates;
+
+    private DuplicateContents(Map<InputFile, SameSize> candidates) {
+        this.candidates = candidates;
+    }
+
+    static DuplicateContents none() {
+        return NONE;
+    }
+
+    /**
+     * @param inputFiles files of the analysis, which must be readable from the file system
+     */
+    static DuplicateContents find(Iterable<InputFile> inputFiles) {
+        Map<Long, List<InputFile>> filesBySize = new HashMap<>();
+        for (InputFile inputFile : inputFiles) {
+            Path path = Paths.get(inputFile.uri());
+            try {
+                if (Files.isRegularFile(path)) {
+                    filesBySize.computeIfAbsent(Files.size(path), size -> new ArrayList<>(1)).add(inputFile);
+                }
+            } catch (IOException e) {
+                LOG.debug("Cannot read the size of file " + inputFile, e);
+            }
+        }
+
+        Map<InputFile, SameSize> candidates = new HashMap<>();
+        for (List<InputFile> files : filesBySize.values()) {
+            if (files.size() > 1) {
+                SameSize sameSize = new SameSize(files.size());
+                files.forEach(inputFile -> candidates.put(inputFile, sameSize));
+            }
+        }
+        if (!candidates.isEmpty()) {
+            LOG.debug("{} file(s) have the size of another file, they are grouped by the hash of their content", candidates.size());
+        }
+        return candidates.isEmpty() ? NONE : new DuplicateContents(candidates);
+    }
+
+    /**
+     * @return whether other files have the size of the file, in which case it is grouped by the hash of its content
+     */
+    boolean isCandidate(InputFile inputFile) {
+        return candidates.containsKey(inputFile);
+    }
+
+    /**
+     * Must be called once per file, when it is read for its analysis.
+     *
+     * @param contentHash hash of the content of the file, as computed by {@link HtmlAnalysisCache#contentHash}
+     * @return the group of the files having the same content and analyzed the same way,
+     * or null when no other file has the size of the file
+     */
+    @CheckForNull
+    Group group(InputFile inputFile, String contentHash) {
+        SameSize sameSize = candidates.get(inputFile);
+        return sameSize == null ? null : sameSize.group(HtmlFileAnalyzer.analysisKind(inputFile) + ":" + contentHash);
+    }
+
+    /**
+     * Files having the same size, grouped by analysis kind and content as they are read.
+     */
+    private static final class SameSize {
+
+        private final Map<String, Group> groups = new HashMap<>();
+
+        private int unread;
+
+        private SameSize(int files) {
+            this.unread = files;
+        }
+
+        private synchronized Group group(String key) {
+            Group group = groups.computeIfAbsent(key, k -> new Group());
+            group.join();
+            if (--unread == 0) {
+                // no other file can join the groups anymore
+                groups.values().forEach(Group::complete);
+                groups.clear();
+            }
+            return group;
+        }
+
+    }
+
+    /**
+     * Files having the same content. The first file to {@link #claim()} the group analyzes the content and
+     * {@link #publish publishes} the result, the other ones waiting for it to be {@link #replay replayed}.
+     * The result is released once every file of the same size was read and every file of the group got it.
+     */
+    static final class Group {
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private final CountDownLatch published = new CountDownLatch(1);
+
+        /**
+         * Files of the group which did not get the result of the analysis yet.
+         */
+        private int pending;
+
+        /**
+         * Whether every file of the same size was read, so that no other file can join the group.
+         */
+        private boolean complete;
+
+        @Nullable
+        private volatile HtmlSourceCode sourceCode;
+
+        private Group() {
+        }
+
+        /**
+         * @return whether the calling file is the first of the group, which must then analyze it and publish the result
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        /**
+         * @param analyzed result of the analysis of the content, or null when it was not analyzed,
+         *                 in which case every other file of the group is analyzed on its own
+         */
+        void publish(@Nullable HtmlSourceCode analyzed) {
+            sourceCode = analyzed;
+            published.countDown();
+            leave();
+        }
+
+        /**
+         * Waits for the result of the file which claimed the group.
+         *
+         * @return the issues and measures of the analysis on the given file, or null when the content was not analyzed
+         * @throws CancellationException when the analysis is cancelled or the current thread interrupted while waiting
+         */
+        @CheckForNull
+        HtmlSourceCode replay(InputFile inputFile, BooleanSupplier cancelled) {
+            try {
+                while (!published.await(WAIT_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (cancelled.getAsBoolean()) {
+                        throw new CancellationException("Analysis cancelled while waiting for a file identical to " + inputFile);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for a file identical to " + inputFile);
+            }
+
+            HtmlSourceCode analyzed = sourceCode;
+            leave();
+            return analyzed == null ? null : copy(analyzed, inputFile);
+        }
+
+        private synchronized void join() {
+            pending++;
+        }
+
+        private synchronized void leave() {
+            pending--;
+            releaseWhenDone();
+        }
+
+        private synchronized void complete() {
+            complete = true;
+            releaseWhenDone();
+        }
+
+        private void releaseWhenDone() {
+            if (complete && pending == 0) {
+                sourceCode = null;
+            }
+        }
+
+        private static HtmlSourceCode copy(HtmlSourceCode analyzed, InputFile inputFile) {
+            HtmlSourceCode copy = new HtmlSourceCode(inputFile);
+            for (Map.Entry<Metric<Integer>, Integer> measure : analyzed.getMeasures().entrySet()) {
+                copy.addMeasure(measure.getKey(), measure.getValue());
+            }
+            // issues only hold lines and columns, which are the same in identical files
+            for (HtmlIssue issue : analyzed.getIssues()) {
+                copy.addIssue(issue);
+            }
+            return copy;
+        }
+
+    }
+
+}
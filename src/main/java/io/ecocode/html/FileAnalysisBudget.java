@@ -0,0 +1,217 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import org.sonar.api.batch.fs.InputFile;
+
+import javax.annotation.Nonnull;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Time budget of the analysis of a file, checked cooperatively while the file is read, lexed and visited:
+ * the analysis is abandoned as soon as the budget runs out or the analysis is cancelled.
+ * <p>
+ * Lexers which read their whole input before lexing cannot check the budget, so they are {@link #run(Task) run} on another
+ * thread, which is abandoned when the budget runs out. Every read of the {@link #reader readers} of the budget then fails,
+ * so that an abandoned lexer stops as soon as it reads again, and no longer reads buffers reused by the next files.
+ */
+final class FileAnalysisBudget {
+
+    /**
+     * Number of {@link #tick() ticks} between two checks, so that checking stays negligible when called for each node.
+     */
+    private static final int CHECK_INTERVAL = 64;
+
+    /**
+     * Maximum time between two checks of the cancellation of the analysis while waiting for a task.
+     */
+    private static final long WAIT_INTERVAL_MILLIS = 100;
+
+    private static final AtomicInteger WORKER_COUNT = new AtomicInteger();
+
+    /**
+     * Threads of the tasks, abandoned tasks keeping their thread busy until they return.
+     */
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ecocode-html-lexer-" + WORKER_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final InputFile inputFile;
+
+    private final long timeoutMillis;
+
+    private final long deadline;
+
+    private final BooleanSupplier cancelled;
+
+    private int countdown = CHECK_INTERVAL;
+
+    /**
+     * Whether a task was abandoned, guarded by this budget along with the reads of its readers.
+     */
+    private boolean abandoned;
+
+    private FileAnalysisBudget(InputFile inputFile, long timeoutMillis, BooleanSupplier cancelled) {
+        this.inputFile = inputFile;
+        this.timeoutMillis = timeoutMillis;
+        this.deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * @param timeoutMillis time after which the analysis of the file is abandoned, not applied when 0 or less
+     * @param cancelled whether the whole analysis is cancelled, the interruption of the current thread being checked as well
+     */
+    static FileAnalysisBudget start(InputFile inputFile, long timeoutMillis, BooleanSupplier cancelled) {
+        return new FileAnalysisBudget(inputFile, timeoutMillis, cancelled);
+    }
+
+    /**
+     * Checks the budget from time to time, to be called for each node.
+     */
+    void tick() {
+        if (--countdown <= 0) {
+            countdown = CHECK_INTERVAL;
+            check();
+        }
+    }
+
+    /**
+     * @throws CancellationException when the analysis is cancelled
+     * @throws AnalysisTimeoutException when the budget ran out
+     */
+    void check() {
+        if (cancelled.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Analysis cancelled while analyzing file " + inputFile);
+        }
+        if (timeoutMillis > 0 && System.nanoTime() - deadline > 0) {
+            throw new AnalysisTimeoutException("Analysis of file " + inputFile + " abandoned after " + timeoutMillis + " ms, the time set by "
+                    + HtmlAnalysisSettings.FILE_TIMEOUT_PROPERTY);
+        }
+    }
+
+    /**
+     * @return a reader checking the budget when characters are read, and failing on every read once a task was abandoned
+     */
+    Reader reader(Reader reader) {
+        FileAnalysisBudget budget = this;
+        return new FilterReader(reader) {
+
+            @Override
+            public int read() throws IOException {
+                synchronized (budget) {
+                    checkAbandoned();
+                    tick();
+                    return super.read();
+                }
+            }
+
+            @Override
+            public int read(@Nonnull char[] buffer, int offset, int length) throws IOException {
+                synchronized (budget) {
+                    checkAbandoned();
+                    check();
+                    return super.read(buffer, offset, length);
+                }
+            }
+
+        };
+    }
+
+    private void checkAbandoned() {
+        if (abandoned) {
+            throw new CancellationException("Lexing of file " + inputFile + " abandoned");
+        }
+    }
+
+    /**
+     * Runs a task which cannot check the budget itself on another thread, and abandons it as soon as the budget runs out
+     * or the analysis is cancelled. The abandoned task keeps running until it returns, so it must not share any state
+     * with the rest of the analysis. The task runs on the current thread when no timeout applies.
+     *
+     * @throws CancellationException when the analysis is cancelled
+     * @throws AnalysisTimeoutException when the budget ran out
+     */
+    <T> T run(Task<T> task) throws IOException {
+        if (timeoutMillis <= 0) {
+            return task.run();
+        }
+
+        Future<T> future = WORKERS.submit(task::run);
+        try {
+            while (true) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                try {
+                    return future.get(Math.max(1, Math.min(remainingMillis, WAIT_INTERVAL_MILLIS)), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    check();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Analysis cancelled while analyzing file " + inputFile);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (!future.isDone()) {
+                abandon();
+            }
+            // interrupts the task when it was abandoned, in case it checks the interruption of its thread
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Waits for the read in progress, if any, so that the abandoned task no longer reads once this method returns.
+     */
+    private synchronized void abandon() {
+        abandoned = true;
+    }
+
+    /**
+     * Task run within the budget.
+     */
+    @FunctionalInterface
+    interface Task<T> {
+
+        T run() throws IOException;
+
+    }
+
+}
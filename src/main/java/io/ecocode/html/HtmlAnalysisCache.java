@@ -0,0 +1,358 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import io.ecocode.html.declarative.DeclarativeRule;
+import org.sonar.api.SonarProduct;
+import org.sonar.api.SonarRuntime;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.Checks;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.Version;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.check.RuleProperty;
+import org.sonar.plugins.html.checks.HtmlIssue;
+import org.sonar.plugins.html.checks.PreciseHtmlIssue;
+import org.sonar.plugins.html.visitor.HtmlSourceCode;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Stores the issues and measures of each analyzed file in the analysis cache of the scanner,
+ * so that files whose content did not change since the previous analysis are not lexed and visited again.
+ * <p>
+ * Entries are keyed by the content hash of the file, by its {@link HtmlFileAnalyzer#analysisKind analysis kind}, since the same content
+ * gives other results in a PHP, JSP or Vue file or with another charset, and by a fingerprint of the plugin build and of the active rules
+ * (keys, implementations and parameters, or descriptions of the declarative rules): any change in the quality profile or in the plugin misses the cache.
+ * The build is identified by the version, the commit and the time of the build, so that two snapshot builds never share entries,
+ * and the cache is disabled when it cannot be identified.
+ * <p>
+ * SonarLint has no analysis cache, entries are then kept in memory between analyses by {@link HtmlWarmAnalyzer}.
+ */
+public class HtmlAnalysisCache {
+
+    private static final Logger LOG = Loggers.get(HtmlAnalysisCache.class);
+
+    private static final String KEY_PREFIX = "ecocode-html:issues:";
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final HtmlAnalysisCache DISABLED = new HtmlAnalysisCache(null, null, null);
+
+    private static final String PLUGIN_PROPERTIES = "/io/ecocode/html/plugin.properties";
+
+    @CheckForNull
+    private final SensorContext context;
+
+    @CheckForNull
+    private final Map<String, byte[]> memory;
+
+    @CheckForNull
+    private final String fingerprint;
+
+    private final Set<String> writtenKeys = new HashSet<>();
+
+    private HtmlAnalysisCache(@CheckForNull SensorContext context, @CheckForNull Map<String, byte[]> memory, @CheckForNull String fingerprint) {
+        this.context = context;
+        this.memory = memory;
+        this.fingerprint = fingerprint;
+    }
+
+    public static HtmlAnalysisCache create(SensorContext context, SonarRuntime sonarRuntime, Checks<Object> checks) {
+        return create(context, sonarRuntime, checks, List.of());
+    }
+
+    /**
+     * @param declarativeRules the active declarative rules
+     */
+    public static HtmlAnalysisCache create(SensorContext context, SonarRuntime sonarRuntime, Checks<Object> checks, List<DeclarativeRule> declarativeRules) {
+        return create(context, sonarRuntime, checks, declarativeRules, pluginBuild());
+    }
+
+    static HtmlAnalysisCache create(SensorContext context, SonarRuntime sonarRuntime, Checks<Object> checks, List<DeclarativeRule> declarativeRules,
+                                    @Nullable String pluginBuild) {
+        if (sonarRuntime.getProduct() == SonarProduct.SONARLINT
+                || !sonarRuntime.getApiVersion().isGreaterThanOrEqual(Version.create(9, 4))
+                || !context.isCacheEnabled()) {
+            return DISABLED;
+        }
+        if (pluginBuild == null) {
+            LOG.info("Analysis cache disabled: the build of the plugin cannot be identified from {}", PLUGIN_PROPERTIES);
+            return DISABLED;
+        }
+        return new HtmlAnalysisCache(context, null, fingerprint(pluginBuild, checks, declarativeRules));
+    }
+
+    /**
+     * @param entries where entries are stored, which must be thread-safe when the cache is shared between threads
+     * @param fingerprint fingerprint of the plugin version and of the active rules
+     */
+    public static HtmlAnalysisCache inMemory(Map<String, byte[]> entries, String fingerprint) {
+        return new HtmlAnalysisCache(null, entries, fingerprint);
+    }
+
+    /**
+     * @return a cache that never hits, for analyses outside of a scanner
+     */
+    public static HtmlAnalysisCache disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return context != null || memory != null;
+    }
+
+    /**
+     * @return the source code of the file rebuilt from the previous analysis, or null when the cache misses
+     */
+    @CheckForNull
+    public HtmlSourceCode read(InputFile inputFile, String contentHash) {
+        String key = key(inputFile, contentHash);
+        InputStream entry;
+        if (memory != null) {
+            byte[] bytes = memory.get(key);
+            entry = bytes == null ? null : new ByteArrayInputStream(bytes);
+        } else if (context != null && context.previousCache().contains(key)) {
+            entry = context.previousCache().read(key);
+        } else {
+            entry = null;
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(entry)) {
+            return deserialize(inputFile, in);
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Cannot read cached analysis of file " + inputFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the result of a file analysis for the next analysis, must be called from the sensor thread.
+     */
+    public void write(String contentHash, HtmlSourceCode sourceCode, boolean fromPreviousCache) {
+        if (memory != null) {
+            if (!fromPreviousCache) {
+                memory.put(key(sourceCode.inputFile(), contentHash), serialize(sourceCode));
+            }
+            return;
+        }
+        if (context == null) {
+            return;
+        }
+
+        String key = key(sourceCode.inputFile(), contentHash);
+        // files with the same content analyzed the same way share the same entry
+        if (!writtenKeys.add(key)) {
+            return;
+        }
+
+        if (fromPreviousCache) {
+            context.nextCache().copyFromPrevious(key);
+        } else {
+            context.nextCache().write(key, serialize(sourceCode));
+        }
+    }
+
+    public static String contentHash(ByteBuffer content) {
+        MessageDigest digest = digest();
+        digest.update(content);
+        return toHex(digest.digest());
+    }
+
+    private String key(InputFile inputFile, String contentHash) {
+        return KEY_PREFIX + fingerprint + ":" + HtmlFileAnalyzer.analysisKind(inputFile) + ":" + contentHash;
+    }
+
+    private static byte[] serialize(HtmlSourceCode sourceCode) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(FORMAT_VERSION);
+
+            out.writeInt(sourceCode.getMeasures().size());
+            for (Map.Entry<Metric<Integer>, Integer> measure : sourceCode.getMeasures().entrySet()) {
+                out.writeUTF(measure.getKey().getKey());
+                out.writeInt(measure.getValue());
+            }
+
+            out.writeInt(sourceCode.getIssues().size());
+            for (HtmlIssue issue : sourceCode.getIssues()) {
+                out.writeUTF(issue.ruleKey().toString());
+                out.writeUTF(issue.message());
+                out.writeBoolean(issue.cost() != null);
+                if (issue.cost() != null) {
+                    out.writeDouble(issue.cost());
+                }
+                out.writeBoolean(issue.line() != null);
+                if (issue.line() != null) {
+                    out.writeInt(issue.line());
+                }
+                out.writeBoolean(issue instanceof PreciseHtmlIssue);
+                if (issue instanceof PreciseHtmlIssue) {
+                    PreciseHtmlIssue preciseHtmlIssue = (PreciseHtmlIssue) issue;
+                    out.writeInt(preciseHtmlIssue.startColumn());
+                    out.writeInt(preciseHtmlIssue.endLine());
+                    out.writeInt(preciseHtmlIssue.endColumn());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialize analysis of file " + sourceCode.inputFile(), e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HtmlSourceCode deserialize(InputFile inputFile, DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unsupported cache format");
+        }
+
+        HtmlSourceCode sourceCode = new HtmlSourceCode(inputFile);
+
+        int measures = in.readInt();
+        for (int i = 0; i < measures; i++) {
+            Metric<Integer> metric = CoreMetrics.getMetric(in.readUTF());
+            sourceCode.addMeasure(metric, in.readInt());
+        }
+
+        int issues = in.readInt();
+        for (int i = 0; i < issues; i++) {
+            RuleKey ruleKey = RuleKey.parse(in.readUTF());
+            String message = in.readUTF();
+            Double cost = in.readBoolean() ? in.readDouble() : null;
+            Integer line = in.readBoolean() ? in.readInt() : null;
+            if (in.readBoolean()) {
+                sourceCode.addIssue(new PreciseHtmlIssue(ruleKey, line, message, in.readInt(), in.readInt(), in.readInt()));
+            } else {
+                sourceCode.addIssue(new HtmlIssue(ruleKey, line, message, cost));
+            }
+        }
+
+        return sourceCode;
+    }
+
+    private static String fingerprint(String pluginBuild, Checks<Object> checks, List<DeclarativeRule> declarativeRules) {
+        Set<String> rules = new TreeSet<>();
+        for (Object check : checks.all()) {
+            StringBuilder rule = new StringBuilder()
+                    .append(checks.ruleKey(check))
+                    .append('=')
+                    .append(check.getClass().getName());
+            appendRuleProperties(rule, check);
+            rules.add(rule.toString());
+        }
+        for (DeclarativeRule declarativeRule : declarativeRules) {
+            rules.add(declarativeRule.toString());
+        }
+
+        MessageDigest digest = digest();
+        digest.update(pluginBuild.getBytes(StandardCharsets.UTF_8));
+        for (String rule : rules) {
+            digest.update((byte) '\n');
+            digest.update(rule.getBytes(StandardCharsets.UTF_8));
+        }
+        return toHex(digest.digest());
+    }
+
+    private static void appendRuleProperties(StringBuilder rule, Object check) {
+        for (Class<?> type = check.getClass(); type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (field.isAnnotationPresent(RuleProperty.class)) {
+                    try {
+                        field.setAccessible(true);
+                        rule.append(';').append(field.getName()).append('=').append(field.get(check));
+                    } catch (ReflectiveOperationException | RuntimeException e) {
+                        throw new IllegalStateException("Cannot read property " + field.getName() + " of " + type.getName(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the version, commit and time of the build of the plugin, or null when they are not all known
+     */
+    @CheckForNull
+    static String pluginBuild() {
+        try (InputStream in = HtmlAnalysisCache.class.getResourceAsStream(PLUGIN_PROPERTIES)) {
+            return in == null ? null : pluginBuild(in);
+        } catch (IOException e) {
+            LOG.debug("Cannot read the build of the plugin", e);
+            return null;
+        }
+    }
+
+    @CheckForNull
+    static String pluginBuild(InputStream pluginProperties) throws IOException {
+        Properties properties = new Properties();
+        properties.load(pluginProperties);
+        StringBuilder build = new StringBuilder();
+        for (String property : new String[]{"version", "build", "timestamp"}) {
+            String value = properties.getProperty(property, "").trim();
+            // left as is when the resource was not filtered by the build
+            if (value.isEmpty() || value.startsWith("${")) {
+                return null;
+            }
+            build.append(build.length() == 0 ? "" : " ").append(value);
+        }
+        return build.toString();
+    }
+
+    static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+}
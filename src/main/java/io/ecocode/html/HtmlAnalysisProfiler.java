@@ -0,0 +1,233 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import io.ecocode.html.visitor.TimedVisitor;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.html.visitor.DefaultNodeVisitor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures the time spent per file, per rule and per phase of the analysis, when {@link HtmlAnalysisSettings#PROFILING_PROPERTY} is enabled.
+ * <p>
+ * Rules are timed by wrapping checks in a {@link TimedVisitor}, which can be done from any thread,
+ * while files are recorded from the sensor thread once saved.
+ */
+public class HtmlAnalysisProfiler {
+
+    private static final Logger LOG = Loggers.get(HtmlAnalysisProfiler.class);
+
+    static final String REPORT_FILE = "ecocode-html-profiling.json";
+
+    private static final int TOP = 10;
+
+    private static final HtmlAnalysisProfiler DISABLED = new HtmlAnalysisProfiler(false);
+
+    private final boolean enabled;
+
+    private final List<TimedRule> rules = new ArrayList<>();
+
+    private final List<FileTiming> files = new ArrayList<>();
+
+    private HtmlAnalysisProfiler(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public static HtmlAnalysisProfiler create(HtmlAnalysisSettings settings) {
+        return settings.profiling() ? new HtmlAnalysisProfiler(true) : DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the check wrapped in a visitor measuring the time spent in it, or the check itself when profiling is disabled
+     */
+    public DefaultNodeVisitor instrument(RuleKey ruleKey, DefaultNodeVisitor check) {
+        if (!enabled) {
+            return check;
+        }
+
+        TimedVisitor visitor = new TimedVisitor(check);
+        synchronized (rules) {
+            rules.add(new TimedRule(ruleKey, visitor));
+        }
+        return visitor;
+    }
+
+    public void record(InputFile inputFile, HtmlFileAnalyzer.Result result, long saveNanos) {
+        if (enabled) {
+            files.add(new FileTiming(inputFile.toString(), result, saveNanos));
+        }
+    }
+
+    /**
+     * Logs the slowest files and rules and writes all timings to the working directory.
+     */
+    public void report(Path workDir) {
+        List<FileTiming> slowestFiles = new ArrayList<>(files);
+        slowestFiles.sort(Comparator.comparingLong(FileTiming::totalNanos).reversed());
+        List<Map.Entry<RuleKey, Long>> slowestRules = new ArrayList<>(ruleNanos().entrySet());
+        slowestRules.sort(Map.Entry.<RuleKey, Long>comparingByValue().reversed());
+
+        StringBuilder log = new StringBuilder("Slowest files:");
+        for (FileTiming file : slowestFiles.subList(0, Math.min(TOP, slowestFiles.size()))) {
+            log.append(String.format(Locale.ENGLISH, "%n  %s %s ms (read %s ms, lex %s ms, visit %s ms, save %s ms)", file.file,
+                    millis(file.totalNanos()), millis(file.readNanos), millis(file.lexNanos), millis(file.visitNanos), millis(file.saveNanos)));
+        }
+        log.append(System.lineSeparator()).append("Slowest rules:");
+        for (Map.Entry<RuleKey, Long> rule : slowestRules.subList(0, Math.min(TOP, slowestRules.size()))) {
+            log.append(String.format(Locale.ENGLISH, "%n  %s %s ms", rule.getKey(), millis(rule.getValue())));
+        }
+        LOG.info(log.toString());
+
+        Path report = workDir.resolve(REPORT_FILE);
+        try {
+            Files.createDirectories(workDir);
+            try (Writer writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+                writeReport(writer, slowestFiles, slowestRules);
+            }
+            LOG.info("Analysis timings written to {}", report);
+        } catch (IOException e) {
+            LOG.warn("Cannot write analysis timings to " + report, e);
+        }
+    }
+
+    private Map<RuleKey, Long> ruleNanos() {
+        Map<RuleKey, Long> ruleNanos = new HashMap<>();
+        synchronized (rules) {
+            for (TimedRule rule : rules) {
+                ruleNanos.merge(rule.ruleKey, rule.visitor.nanos(), Long::sum);
+            }
+        }
+        return ruleNanos;
+    }
+
+    private static void writeReport(Writer writer, List<FileTiming> files, List<Map.Entry<RuleKey, Long>> rules) throws IOException {
+        long readNanos = 0;
+        long lexNanos = 0;
+        long visitNanos = 0;
+        long saveNanos = 0;
+        for (FileTiming file : files) {
+            readNanos += file.readNanos;
+            lexNanos += file.lexNanos;
+            visitNanos += file.visitNanos;
+            saveNanos += file.saveNanos;
+        }
+
+        writer.write("{\n  \"phases\": {");
+        writer.write(String.format(Locale.ENGLISH, "\"readMs\": %s, \"lexMs\": %s, \"visitMs\": %s, \"saveMs\": %s},\n",
+                millis(readNanos), millis(lexNanos), millis(visitNanos), millis(saveNanos)));
+
+        writer.write("  \"files\": [");
+        String separator = "\n";
+        for (FileTiming file : files) {
+            writer.write(separator);
+            writer.write(String.format(Locale.ENGLISH,
+                    "    {\"file\": %s, \"action\": \"%s\", \"totalMs\": %s, \"readMs\": %s, \"lexMs\": %s, \"visitMs\": %s, \"saveMs\": %s}",
+                    quote(file.file), file.action, millis(file.totalNanos()), millis(file.readNanos), millis(file.lexNanos),
+                    millis(file.visitNanos), millis(file.saveNanos)));
+            separator = ",\n";
+        }
+        writer.write("\n  ],\n  \"rules\": [");
+        separator = "\n";
+        for (Map.Entry<RuleKey, Long> rule : rules) {
+            writer.write(separator);
+            writer.write(String.format(Locale.ENGLISH, "    {\"rule\": %s, \"visitMs\": %s}", quote(rule.getKey().toString()), millis(rule.getValue())));
+            separator = ",\n";
+        }
+        writer.write("\n  ]\n}\n");
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ENGLISH, "%.3f", nanos / 1_000_000.0);
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static final class TimedRule {
+
+        private final RuleKey ruleKey;
+
+        private final TimedVisitor visitor;
+
+        private TimedRule(RuleKey ruleKey, TimedVisitor visitor) {
+            this.ruleKey = ruleKey;
+            this.visitor = visitor;
+        }
+
+    }
+
+    private static final class FileTiming {
+
+        private final String file;
+
+        private final HtmlFileAnalyzer.Action action;
+
+        private final long readNanos;
+
+        private final long lexNanos;
+
+        private final long visitNanos;
+
+        private final long saveNanos;
+
+        private FileTiming(String file, HtmlFileAnalyzer.Result result, long saveNanos) {
+            this.file = file;
+            this.action = result.action();
+            this.readNanos = result.readNanos();
+            this.lexNanos = result.lexNanos();
+            this.visitNanos = result.visitNanos();
+            this.saveNanos = saveNanos;
+        }
+
+        private long totalNanos() {
+            return readNanos + lexNanos + visitNanos + saveNanos;
+        }
+
+    }
+
+}
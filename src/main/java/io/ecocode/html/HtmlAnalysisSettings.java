@@ -0,0 +1,256 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import org.sonar.api.SonarProduct;
+import org.sonar.api.SonarRuntime;
+import org.sonar.api.config.Configuration;
+
+import java.util.Objects;
+
+/**
+ * Analysis properties of the sensor, none of them is required.
+ */
+public class HtmlAnalysisSettings {
+
+    /**
+     * Number of threads used to lex and visit files. Files are analyzed sequentially when not greater than 1 (default),
+     * a value of 0 or less uses one thread per available processor.
+     */
+    public static final String THREADS_PROPERTY = "sonar.ecocode.html.threads";
+
+    /**
+     * Whether HTML files are lexed and visited by chunks, so that memory use does not grow with the size of the files.
+     * Disabled by default, in which case only files above {@link #LARGE_FILE_SOFT_LIMIT_PROPERTY} are streamed.
+     * Vue files are never streamed.
+     * <p>
+     * Only checks inspecting the element being visited are chunk-safe, which is the case of all the checks of this plugin:
+     * the visitors receive no node in {@code startDocument}, and elements opened in a chunk and closed in another one
+     * are not linked together, so checks walking the whole list of nodes, or the parent or children of elements,
+     * miss what lies in the other chunks.
+     */
+    public static final String STREAMING_PROPERTY = "sonar.ecocode.html.streaming";
+
+    /**
+     * Size in kilobytes above which files are lexed and visited by chunks, like with {@link #STREAMING_PROPERTY}.
+     * Opt-in: not applied when 0 or less, the default, so that all files are analyzed whole unless a limit is set.
+     */
+    public static final String LARGE_FILE_SOFT_LIMIT_PROPERTY = "sonar.ecocode.html.largeFiles.softLimit";
+
+    /**
+     * Size in kilobytes above which files are not analyzed.
+     * Opt-in: not applied when 0 or less, the default, so that no file is skipped unless a limit is set.
+     */
+    public static final String LARGE_FILE_HARD_LIMIT_PROPERTY = "sonar.ecocode.html.largeFiles.hardLimit";
+
+    /**
+     * Whether the time spent per file, per rule and per analysis phase is measured. When enabled, the slowest files and rules
+     * are logged at the end of the analysis and all timings are written to {@value HtmlAnalysisProfiler#REPORT_FILE} in the working directory.
+     * Disabled by default.
+     */
+    public static final String PROFILING_PROPERTY = "sonar.ecocode.html.profiling";
+
+    /**
+     * Whether files whose content contains none of the {@link io.ecocode.html.prefilter.TriggerTokens} of the active rules
+     * are not lexed, as no issue can be raised on them. Disabled by default.
+     */
+    public static final String PRE_FILTER_PROPERTY = "sonar.ecocode.html.preFilter";
+
+    /**
+     * Maximum number of issues of a rule saved on a file, the other ones being summed up by a single issue on the file.
+     * Not applied when 0 or less (default).
+     */
+    public static final String MAX_ISSUES_PER_RULE_PROPERTY = "sonar.ecocode.html.maxIssuesPerRule";
+
+    /**
+     * Time in milliseconds after which the analysis of a file is abandoned and reported as an analysis error.
+     * Opt-in: not applied when 0 or less, the default, so that no file is abandoned unless a timeout is set.
+     */
+    public static final String FILE_TIMEOUT_PROPERTY = "sonar.ecocode.html.fileTimeout";
+
+    /**
+     * Whether files whose content is identical to the content of another file are analyzed once, the issues of the first
+     * analyzed file being replayed on the other ones. Disabled by default.
+     */
+    public static final String DEDUPLICATION_PROPERTY = "sonar.ecocode.html.deduplication";
+
+    /**
+     * Whether the files of a sequential analysis are read ahead by a thread while the previous ones are lexed and visited by another one,
+     * the results being saved by the sensor thread. Disabled by default, not applied to parallel analyses nor in SonarLint.
+     */
+    public static final String PIPELINE_PROPERTY = "sonar.ecocode.html.pipeline";
+
+    /**
+     * Memory in megabytes the files being analyzed may hold at once, estimated from their size: a file waits for the analysis
+     * of the previous ones when it would exceed the budget, the structures of each file are released as soon as it is saved,
+     * and the peak heap usage is logged. Not applied when 0 or less (default).
+     */
+    public static final String MEMORY_BUDGET_PROPERTY = "sonar.ecocode.html.memoryBudget";
+
+    /**
+     * Whether only the files added or changed according to the scanner, typically in a pull request, are analyzed.
+     * Unchanged files are replayed from the analysis cache when it holds their previous analysis, and not analyzed otherwise.
+     * Disabled by default.
+     */
+    public static final String CHANGED_FILES_ONLY_PROPERTY = "sonar.ecocode.html.changedFilesOnly";
+
+    private final int threads;
+
+    private final boolean streaming;
+
+    private final long softLimit;
+
+    private final long hardLimit;
+
+    private final int maxIssuesPerRule;
+
+    private final long fileTimeout;
+
+    private final boolean profiling;
+
+    private final boolean preFilter;
+
+    private final boolean deduplication;
+
+    private final boolean pipeline;
+
+    private final long memoryBudget;
+
+    private final boolean changedFilesOnly;
+
+    private final boolean readFromFileSystem;
+
+    public HtmlAnalysisSettings(Configuration configuration, SonarRuntime sonarRuntime) {
+        int configuredThreads = configuration.getInt(THREADS_PROPERTY).orElse(1);
+        this.threads = configuredThreads > 0 ? configuredThreads : Runtime.getRuntime().availableProcessors();
+        this.streaming = configuration.getBoolean(STREAMING_PROPERTY).orElse(false);
+        this.softLimit = configuration.getLong(LARGE_FILE_SOFT_LIMIT_PROPERTY).orElse(0L) * 1024;
+        this.hardLimit = configuration.getLong(LARGE_FILE_HARD_LIMIT_PROPERTY).orElse(0L) * 1024;
+        this.maxIssuesPerRule = configuration.getInt(MAX_ISSUES_PER_RULE_PROPERTY).orElse(0);
+        this.fileTimeout = configuration.getLong(FILE_TIMEOUT_PROPERTY).orElse(0L);
+        this.profiling = configuration.getBoolean(PROFILING_PROPERTY).orElse(false);
+        this.preFilter = configuration.getBoolean(PRE_FILTER_PROPERTY).orElse(false);
+        this.deduplication = configuration.getBoolean(DEDUPLICATION_PROPERTY).orElse(false);
+        this.pipeline = configuration.getBoolean(PIPELINE_PROPERTY).orElse(false);
+        this.memoryBudget = configuration.getLong(MEMORY_BUDGET_PROPERTY).orElse(0L) * 1024 * 1024;
+        this.changedFilesOnly = configuration.getBoolean(CHANGED_FILES_ONLY_PROPERTY).orElse(false);
+        // SonarLint analyzes the content of the editors, which may not be saved
+        this.readFromFileSystem = sonarRuntime.getProduct() != SonarProduct.SONARLINT;
+    }
+
+    public int threads() {
+        return threads;
+    }
+
+    public boolean streaming() {
+        return streaming;
+    }
+
+    /**
+     * @return whether a file of the given size in bytes is analyzed by chunks
+     */
+    public boolean isAboveSoftLimit(long size) {
+        return softLimit > 0 && size > softLimit;
+    }
+
+    /**
+     * @return whether a file of the given size in bytes is not analyzed
+     */
+    public boolean isAboveHardLimit(long size) {
+        return hardLimit > 0 && size > hardLimit;
+    }
+
+    /**
+     * @return the maximum number of issues of a rule saved on a file, 0 or less when not limited
+     */
+    public int maxIssuesPerRule() {
+        return maxIssuesPerRule;
+    }
+
+    /**
+     * @return the time in milliseconds after which the analysis of a file is abandoned, 0 or less when not limited
+     */
+    public long fileTimeout() {
+        return fileTimeout;
+    }
+
+    public boolean profiling() {
+        return profiling;
+    }
+
+    public boolean preFilter() {
+        return preFilter;
+    }
+
+    public boolean deduplication() {
+        return deduplication;
+    }
+
+    public boolean pipeline() {
+        return pipeline;
+    }
+
+    /**
+     * @return the memory in bytes the files being analyzed may hold at once, 0 or less when not limited
+     */
+    public long memoryBudget() {
+        return memoryBudget;
+    }
+
+    public boolean changedFilesOnly() {
+        return changedFilesOnly;
+    }
+
+    /**
+     * @return whether files can be read straight from the file system rather than through {@link org.sonar.api.batch.fs.InputFile#inputStream()}
+     */
+    public boolean readFromFileSystem() {
+        return readFromFileSystem;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        HtmlAnalysisSettings that = (HtmlAnalysisSettings) o;
+        return threads == that.threads
+                && streaming == that.streaming
+                && softLimit == that.softLimit
+                && hardLimit == that.hardLimit
+                && maxIssuesPerRule == that.maxIssuesPerRule
+                && fileTimeout == that.fileTimeout
+                && profiling == that.profiling
+                && preFilter == that.preFilter
+                && deduplication == that.deduplication
+                && pipeline == that.pipeline
+                && memoryBudget == that.memoryBudget
+                && changedFilesOnly == that.changedFilesOnly
+                && readFromFileSystem == that.readFromFileSystem;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(threads, streaming, softLimit, hardLimit, maxIssuesPerRule, fileTimeout, profiling, preFilter, deduplication, pipeline,
+                memoryBudget, changedFilesOnly, readFromFileSystem);
+    }
+
+}
@@ -0,0 +1,475 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import io.ecocode.html.jfr.FileAnalysisEvent;
+import io.ecocode.html.jfr.JfrEvents;
+import io.ecocode.html.lex.ServerCodeMaskingReader;
+import io.ecocode.html.lex.StreamingPageLexer;
+import io.ecocode.html.lex.VueTemplateLexer;
+import io.ecocode.html.prefilter.ContentPreFilter;
+import io.ecocode.html.visitor.HtmlNodeDispatcher;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.html.api.HtmlConstants;
+import org.sonar.plugins.html.lex.PageLexer;
+import org.sonar.plugins.html.lex.VueLexer;
+import org.sonar.plugins.html.node.Node;
+import org.sonar.plugins.html.visitor.HtmlSourceCode;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Lexes and visits files one after the other with the same visitors, lexers and buffers, so an instance must not be shared
+ * between threads and the analysis of many small files allocates little more than their nodes.
+ */
+public class HtmlFileAnalyzer {
+
+    private static final Logger LOG = Loggers.get(HtmlFileAnalyzer.class);
+
+    /**
+     * Size from which files are lexed on another thread, so that their lexing can be abandoned when it exceeds the timeout.
+     * Smaller files, the vast majority, are lexed in a few milliseconds and do not pay for the handover to another thread.
+     */
+    static final int ABANDONABLE_LEXING_SIZE = 64 * 1024;
+
+    private static final Set<String> PHP_SUFFIXES = new HashSet<>(Arrays.asList("php", "php3", "php4", "php5", "phtml", "inc"));
+
+    /**
+     * Suffixes of the template syntaxes whose {@code {{ }}} expressions are not cut when files are analyzed by chunks.
+     */
+    private static final Set<String> TEMPLATE_SUFFIXES = new HashSet<>(Arrays.asList("twig", "hbs", "handlebars", "mustache", "njk"));
+
+    private final HtmlNodeDispatcher dispatcher;
+
+    private final HtmlAnalysisSettings settings;
+
+    private final HtmlAnalysisCache cache;
+
+    private final ContentPreFilter preFilter;
+
+    private final DuplicateContents duplicates;
+
+    // the buffers and the lexers are renewed when a lexing thread is abandoned, since it may still hold them
+    private HtmlFileContent.Buffers buffers = new HtmlFileContent.Buffers();
+
+    private char[] maskingBuffer = new char[ServerCodeMaskingReader.BUFFER_SIZE];
+
+    private PageLexer pageLexer = new PageLexer();
+
+    private VueLexer vueLexer = new VueLexer();
+
+    private VueTemplateLexer vueTemplateLexer = new VueTemplateLexer();
+
+    private StreamingPageLexer streamingLexer = new StreamingPageLexer(pageLexer);
+
+    /**
+     * @param dispatcher dispatcher to which all the visitors were already added
+     */
+    public HtmlFileAnalyzer(HtmlNodeDispatcher dispatcher, HtmlAnalysisSettings settings, HtmlAnalysisCache cache) {
+        this(dispatcher, settings, cache, DuplicateContents.none());
+    }
+
+    /**
+     * @param duplicates groups of identical files, shared by the analyzers of an analysis
+     */
+    HtmlFileAnalyzer(HtmlNodeDispatcher dispatcher, HtmlAnalysisSettings settings, HtmlAnalysisCache cache, DuplicateContents duplicates) {
+        this.dispatcher = dispatcher;
+        this.settings = settings;
+        this.cache = cache;
+        this.duplicates = duplicates;
+        this.preFilter = settings.preFilter()
+                ? ContentPreFilter.forVisitors(dispatcher.visitors())
+                : ContentPreFilter.acceptAll();
+    }
+
+    /**
+     * Lexes and visits a file, unless its content was already analyzed with the same rules by the previous analysis,
+     * or is identical to the content of another file of the analysis.
+     * Files above the soft size limit are analyzed by chunks, files above the hard size limit are skipped,
+     * and files on which no active rule can raise an issue are filtered out.
+     * When only changed files are analyzed, unchanged files are only replayed from the analysis cache.
+     * Each analysis is recorded as a {@link FileAnalysisEvent} by Java Flight Recorder, the event being only created while it is enabled.
+     *
+     * The analysis of the file is abandoned when the current thread is interrupted.
+     *
+     * @throws AnalysisTimeoutException when the analysis of the file exceeds {@link HtmlAnalysisSettings#fileTimeout()}
+     * @throws java.util.concurrent.CancellationException when the current thread is interrupted while analyzing the file
+     */
+    public Result analyze(InputFile inputFile) throws IOException {
+        return analyze(inputFile, () -> false);
+    }
+
+    /**
+     * Same as {@link #analyze(InputFile)}, also abandoning the analysis of the file when it is cancelled.
+     *
+     * @param cancelled whether the analysis is cancelled, checked from time to time while analyzing the file
+     */
+    public Result analyze(InputFile inputFile, BooleanSupplier cancelled) throws IOException {
+        return analyze(inputFile, null, cancelled);
+    }
+
+    /**
+     * Same as {@link #analyze(InputFile)}, for a file whose content was already read, for instance by another thread.
+     *
+     * @param content content of the file, which must not be read with the buffers of another analyzer still in use
+     */
+    public Result analyze(InputFile inputFile, HtmlFileContent content) throws IOException {
+        return analyze(inputFile, content, () -> false);
+    }
+
+    /**
+     * Same as {@link #analyze(InputFile, HtmlFileContent)}, also abandoning the analysis of the file when it is cancelled.
+     *
+     * @param content content of the file already read, or null to read it
+     */
+    public Result analyze(InputFile inputFile, @Nullable HtmlFileContent content, BooleanSupplier cancelled) throws IOException {
+        FileAnalysisEvent event = JfrEvents.isFileAnalysisEnabled() ? new FileAnalysisEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        Result result = null;
+        try {
+            result = analyze(inputFile, content, cancelled, event);
+            return result;
+        } finally {
+            if (event != null && event.shouldCommit()) {
+                event.path = inputFile.toString();
+                event.language = inputFile.language();
+                if (result != null) {
+                    event.action = result.action().name();
+                    event.issues = result.sourceCode().getIssues().size();
+                }
+                event.commit();
+            }
+        }
+    }
+
+    private Result analyze(InputFile inputFile, @Nullable HtmlFileContent readContent, BooleanSupplier cancelled,
+                           @Nullable FileAnalysisEvent event)
+            throws IOException {
+        long start = System.nanoTime();
+        if (skipsUnread(inputFile)) {
+            return new Result(new HtmlSourceCode(inputFile), null, Action.UNCHANGED, System.nanoTime() - start, 0, 0);
+        }
+        FileAnalysisBudget budget = FileAnalysisBudget.start(inputFile, settings.fileTimeout(), cancelled);
+        HtmlFileContent content = readContent != null ? readContent : HtmlFileContent.read(inputFile, settings.readFromFileSystem(), buffers);
+        if (event != null) {
+            event.size = content.size();
+        }
+        if (settings.isAboveHardLimit(content.size())) {
+            LOG.info("Skipping file {}: its size of {} KB exceeds the limit set by {}",
+                    inputFile, content.size() / 1024, HtmlAnalysisSettings.LARGE_FILE_HARD_LIMIT_PROPERTY);
+            return new Result(new HtmlSourceCode(inputFile), null, Action.SKIPPED, System.nanoTime() - start, 0, 0);
+        }
+
+        // the content is hashed once, both to find identical files and to look up the cache
+        String contentHash = cache.isEnabled() || duplicates.isCandidate(inputFile) ? HtmlAnalysisCache.contentHash(content.bytes()) : null;
+        DuplicateContents.Group group = contentHash != null ? duplicates.group(inputFile, contentHash) : null;
+        if (group == null) {
+            return analyzeContent(inputFile, content, contentHash, budget, event, start);
+        }
+
+        if (!group.claim()) {
+            HtmlSourceCode replayed = group.replay(inputFile, cancelled);
+            if (replayed != null) {
+                return new Result(replayed, cache.isEnabled() ? contentHash : null, Action.DUPLICATE, System.nanoTime() - start, 0, 0);
+            }
+            // the time spent waiting for the first file does not count in the budget of this one
+            budget = FileAnalysisBudget.start(inputFile, settings.fileTimeout(), cancelled);
+            return analyzeContent(inputFile, content, contentHash, budget, event, start);
+        }
+
+        Result result = null;
+        try {
+            result = analyzeContent(inputFile, content, contentHash, budget, event, start);
+            return result;
+        } finally {
+            // filtered files are cheap enough to be handled again
+            group.publish(result != null && result.action().isReplayable() ? result.sourceCode() : null);
+        }
+    }
+
+    private Result analyzeContent(InputFile inputFile, HtmlFileContent content, @Nullable String contentHash, FileAnalysisBudget budget,
+                                  @Nullable FileAnalysisEvent event, long start) throws IOException {
+        if (!preFilter.accepts(content.bytes(), inputFile.charset())) {
+            return new Result(new HtmlSourceCode(inputFile), null, Action.FILTERED, System.nanoTime() - start, 0, 0);
+        }
+
+        String cachedHash = cache.isEnabled() ? contentHash : null;
+        if (cachedHash != null) {
+            HtmlSourceCode cachedSourceCode = cache.read(inputFile, cachedHash);
+            if (cachedSourceCode != null) {
+                return new Result(cachedSourceCode, cachedHash, Action.FROM_CACHE, System.nanoTime() - start, 0, 0);
+            }
+        }
+        if (isUnchanged(inputFile)) {
+            return new Result(new HtmlSourceCode(inputFile), null, Action.UNCHANGED, System.nanoTime() - start, 0, 0);
+        }
+
+        long scanStart = System.nanoTime();
+        long visitorNanos = dispatcher.visitorNanos();
+        HtmlSourceCode sourceCode;
+        Action action;
+        if (!isVueFile(inputFile) && (settings.streaming() || settings.isAboveSoftLimit(content.size()))) {
+            LOG.info("Analyzing file {} by chunks", inputFile);
+            sourceCode = scanByChunks(inputFile, content, budget);
+            recordLexer(event, StreamingPageLexer.class);
+            action = Action.ANALYZED_BY_CHUNKS;
+        } else {
+            sourceCode = scan(inputFile, content, budget, event);
+            action = Action.ANALYZED;
+        }
+
+        // lexing and visiting are interleaved when a file is analyzed by chunks, so the lexing time is what remains of the scan
+        long visitNanos = dispatcher.visitorNanos() - visitorNanos;
+        long lexNanos = System.nanoTime() - scanStart - visitNanos;
+        return new Result(sourceCode, cachedHash, action, scanStart - start, lexNanos, visitNanos);
+    }
+
+    /**
+     * May be called from any thread.
+     *
+     * @return whether the file is not analyzed without even being read, being unchanged while no previous analysis can be replayed
+     */
+    boolean skipsUnread(InputFile inputFile) {
+        return isUnchanged(inputFile) && !cache.isEnabled();
+    }
+
+    private boolean isUnchanged(InputFile inputFile) {
+        return settings.changedFilesOnly() && inputFile.status() == InputFile.Status.SAME;
+    }
+
+    /**
+     * Lexers read the whole file before lexing it, so large files are lexed within the budget on another thread.
+     */
+    private HtmlSourceCode scan(InputFile inputFile, HtmlFileContent content, FileAnalysisBudget budget, @Nullable FileAnalysisEvent event)
+            throws IOException {
+        HtmlSourceCode sourceCode = new HtmlSourceCode(inputFile);
+
+        List<Node> nodes;
+        if (content.size() < ABANDONABLE_LEXING_SIZE) {
+            nodes = lex(inputFile, content, budget, event);
+        } else {
+            try {
+                nodes = budget.run(() -> lex(inputFile, content, budget, event));
+            } catch (AnalysisTimeoutException | CancellationException e) {
+                renewLexers();
+                throw e;
+            }
+        }
+        budget.check();
+
+        dispatcher.startDocument(sourceCode, nodes);
+        for (Node node : nodes) {
+            budget.tick();
+            dispatcher.visit(node);
+        }
+        dispatcher.endDocument();
+
+        return sourceCode;
+    }
+
+    /**
+     * Only the template block of Vue files is lexed, unless it cannot be located without lexing the whole file.
+     */
+    private List<Node> lex(InputFile inputFile, HtmlFileContent content, FileAnalysisBudget budget, @Nullable FileAnalysisEvent event)
+            throws IOException {
+        if (isVueFile(inputFile)) {
+            List<Node> nodes = vueTemplateLexer.parse(content.bytes(), inputFile.charset());
+            recordLexer(event, VueTemplateLexer.class);
+            if (nodes == null) {
+                nodes = vueLexer.parse(budget.reader(content.reader()));
+                recordLexer(event, VueLexer.class);
+            }
+            return nodes;
+        }
+        recordLexer(event, PageLexer.class);
+        return pageLexer.parse(budget.reader(markupReader(inputFile, content)));
+    }
+
+    private static void recordLexer(@Nullable FileAnalysisEvent event, Class<?> lexer) {
+        if (event != null) {
+            event.lexer = lexer.getSimpleName();
+        }
+    }
+
+    private void renewLexers() {
+        buffers = new HtmlFileContent.Buffers();
+        maskingBuffer = new char[ServerCodeMaskingReader.BUFFER_SIZE];
+        pageLexer = new PageLexer();
+        vueLexer = new VueLexer();
+        vueTemplateLexer = new VueTemplateLexer();
+        streamingLexer = new StreamingPageLexer(pageLexer);
+    }
+
+    /**
+     * Only the nodes of the current chunk are kept in memory, and the content of mapped files is decoded while being lexed.
+     */
+    private HtmlSourceCode scanByChunks(InputFile inputFile, HtmlFileContent content, FileAnalysisBudget budget) throws IOException {
+        HtmlSourceCode sourceCode = new HtmlSourceCode(inputFile);
+        dispatcher.startDocument(sourceCode, Collections.emptyList());
+        streamingLexer.parse(budget.reader(markupReader(inputFile, content)), TEMPLATE_SUFFIXES.contains(suffix(inputFile)), node -> {
+            budget.tick();
+            dispatcher.visit(node);
+        });
+        dispatcher.endDocument();
+        return sourceCode;
+    }
+
+    /**
+     * Server side code inside the tags of PHP and JSP files is masked, so that it does not break the markup of the tags.
+     */
+    private Reader markupReader(InputFile inputFile, HtmlFileContent content) throws IOException {
+        ServerCodeMaskingReader.Syntax syntax = serverCodeSyntax(inputFile);
+        return syntax == null ? content.reader() : new ServerCodeMaskingReader(content.reader(), syntax, maskingBuffer);
+    }
+
+    @CheckForNull
+    private static ServerCodeMaskingReader.Syntax serverCodeSyntax(InputFile inputFile) {
+        if (HtmlConstants.JSP_LANGUAGE_KEY.equals(inputFile.language())) {
+            return ServerCodeMaskingReader.Syntax.JSP;
+        }
+        return PHP_SUFFIXES.contains(suffix(inputFile)) ? ServerCodeMaskingReader.Syntax.PHP : null;
+    }
+
+    /**
+     * Identical contents give identical results only when they are analyzed the same way, which depends on the file besides its content.
+     *
+     * @return the lexer of the file, the masking of its server side code, its template syntax and its charset
+     */
+    static String analysisKind(InputFile inputFile) {
+        String lexer = isVueFile(inputFile) ? "vue" : "page";
+        ServerCodeMaskingReader.Syntax syntax = serverCodeSyntax(inputFile);
+        String masking = syntax == null ? "none" : syntax.name().toLowerCase(Locale.ROOT);
+        String template = TEMPLATE_SUFFIXES.contains(suffix(inputFile)) ? "template" : "markup";
+        return lexer + "/" + masking + "/" + template + "/" + inputFile.charset().name();
+    }
+
+    private static String suffix(InputFile inputFile) {
+        String filename = inputFile.filename();
+        return filename.substring(filename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isVueFile(InputFile inputFile) {
+        return inputFile.filename().endsWith(".vue");
+    }
+
+    /**
+     * What was done with a file.
+     */
+    public enum Action {
+        ANALYZED,
+        ANALYZED_BY_CHUNKS,
+        FROM_CACHE,
+        /**
+         * Issues and measures replayed from the analysis of an identical file.
+         */
+        DUPLICATE,
+        FILTERED,
+        /**
+         * Unchanged file not analyzed, when only changed files are analyzed.
+         */
+        UNCHANGED,
+        SKIPPED;
+
+        private boolean isReplayable() {
+            return this == ANALYZED || this == ANALYZED_BY_CHUNKS || this == FROM_CACHE;
+        }
+    }
+
+    public static final class Result {
+
+        private final HtmlSourceCode sourceCode;
+
+        @Nullable
+        private final String contentHash;
+
+        private final Action action;
+
+        private final long readNanos;
+
+        private final long lexNanos;
+
+        private final long visitNanos;
+
+        private Result(HtmlSourceCode sourceCode, @Nullable String contentHash, Action action, long readNanos, long lexNanos, long visitNanos) {
+            this.sourceCode = sourceCode;
+            this.contentHash = contentHash;
+            this.action = action;
+            this.readNanos = readNanos;
+            this.lexNanos = lexNanos;
+            this.visitNanos = visitNanos;
+        }
+
+        public HtmlSourceCode sourceCode() {
+            return sourceCode;
+        }
+
+        /**
+         * @return the hash of the file content when the analysis cache is enabled
+         */
+        @CheckForNull
+        public String contentHash() {
+            return contentHash;
+        }
+
+        public Action action() {
+            return action;
+        }
+
+        public boolean fromCache() {
+            return action == Action.FROM_CACHE;
+        }
+
+        /**
+         * @return the time spent reading the file and looking it up in the analysis cache
+         */
+        public long readNanos() {
+            return readNanos;
+        }
+
+        /**
+         * @return the time spent lexing the file, which includes visiting it unless visitors are timed
+         */
+        public long lexNanos() {
+            return lexNanos;
+        }
+
+        /**
+         * @return the time spent in the visitors timed by {@link io.ecocode.html.visitor.TimedVisitor}
+         */
+        public long visitNanos() {
+            return visitNanos;
+        }
+
+    }
+
+}
@@ -0,0 +1,310 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import org.sonar.api.batch.fs.InputFile;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Content of a file, read at once through a {@link FileChannel} instead of being decoded through the small buffer
+ * of an {@link java.io.InputStreamReader}.
+ * <p>
+ * Files from {@value #MAPPING_THRESHOLD} bytes are memory-mapped and decoded while being lexed, smaller files are read
+ * in a single heap buffer and decoded at once into a string, which takes the fast path of the JDK for ASCII content.
+ * A mapping cannot be released explicitly: it is released when its buffer is garbage collected, and keeps the file locked
+ * on Windows until then. {@link MemoryBudget} counts the whole size of the mapped files for that reason.
+ * When {@link Buffers} are given, small files are read and decoded in buffers reused from file to file instead.
+ * Content read by the caller is {@link #of(byte[], Charset) wrapped} instead, and can be decoded once into its {@link #text()}.
+ */
+public final class HtmlFileContent {
+
+    static final int MAPPING_THRESHOLD = 1024 * 1024;
+
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final ByteBuffer bytes;
+
+    private final Charset charset;
+
+    @CheckForNull
+    private final Buffers buffers;
+
+    @CheckForNull
+    private String text;
+
+    private HtmlFileContent(ByteBuffer bytes, Charset charset, @Nullable Buffers buffers) {
+        this.bytes = bytes;
+        this.charset = charset;
+        this.buffers = buffers;
+    }
+
+    /**
+     * @param fromFileSystem whether the file can be read from the file system, which is not the case of files edited
+     *                       in SonarLint whose content may not be saved yet
+     */
+    public static HtmlFileContent read(InputFile inputFile, boolean fromFileSystem) throws IOException {
+        return read(inputFile, fromFileSystem, null);
+    }
+
+    /**
+     * Same as {@link #read(InputFile, boolean)}, the content being only valid until the next file is read with the same buffers.
+     */
+    public static HtmlFileContent read(InputFile inputFile, boolean fromFileSystem, @Nullable Buffers buffers) throws IOException {
+        Path path = fromFileSystem ? Paths.get(inputFile.uri()) : null;
+        if (path == null || !Files.isRegularFile(path)) {
+            try (InputStream inputStream = inputFile.inputStream()) {
+                return new HtmlFileContent(ByteBuffer.wrap(inputStream.readAllBytes()), inputFile.charset(), buffers);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAPPING_THRESHOLD) {
+                return new HtmlFileContent(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), inputFile.charset(), buffers);
+            }
+
+            ByteBuffer buffer = buffers != null ? buffers.bytes((int) size) : ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read until the end of the file
+            }
+            buffer.flip();
+            return new HtmlFileContent(buffer, inputFile.charset(), buffers);
+        }
+    }
+
+    /**
+     * @return the given content, as if read from a file of the given charset
+     */
+    public static HtmlFileContent of(byte[] bytes, Charset charset) {
+        return new HtmlFileContent(ByteBuffer.wrap(bytes), charset, null);
+    }
+
+    /**
+     * @return the size of the file in bytes
+     */
+    public long size() {
+        return bytes.remaining();
+    }
+
+    /**
+     * @return the raw content of the file, which may include a byte order mark
+     */
+    public ByteBuffer bytes() {
+        return bytes.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the decoded content of the file, without byte order mark
+     */
+    public Reader reader() throws IOException {
+        if (text != null) {
+            return new StringReader(text);
+        }
+        if (!bytes.hasArray()) {
+            return new DecodingReader(bytes.duplicate(), charset);
+        }
+        if (buffers != null) {
+            return buffers.decode(bytes.duplicate(), charset);
+        }
+
+        String text = new String(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining(), charset);
+        Reader reader = new StringReader(text);
+        if (!text.isEmpty() && text.charAt(0) == BYTE_ORDER_MARK) {
+            reader.skip(1);
+        }
+        return reader;
+    }
+
+    /**
+     * Decodes the content once, replacing malformed input, the next {@link #reader() readers} reading the decoded text.
+     *
+     * @return the decoded content of the file, without byte order mark
+     */
+    public String text() throws IOException {
+        if (text == null) {
+            StringBuilder decoded = new StringBuilder((int) Math.min(size(), Integer.MAX_VALUE - 8L));
+            try (Reader reader = reader()) {
+                char[] buffer = new char[8192];
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    decoded.append(buffer, 0, read);
+                }
+            }
+            text = decoded.toString();
+        }
+        return text;
+    }
+
+    /**
+     * Buffers in which the content of small files is read and decoded, reused from file to file by a thread:
+     * an instance must not be shared between threads. Buffers grown for files above {@value #MAX_RETAINED_SIZE} bytes
+     * are not kept, so that a single large file does not hold memory for the rest of the analysis.
+     */
+    public static final class Buffers {
+
+        static final int MAX_RETAINED_SIZE = 256 * 1024;
+
+        private static final int INITIAL_SIZE = 16 * 1024;
+
+        private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_SIZE);
+
+        private char[] chars = new char[INITIAL_SIZE];
+
+        @CheckForNull
+        private CharsetDecoder decoder;
+
+        /**
+         * @return a heap buffer whose remaining space is the given size
+         */
+        ByteBuffer bytes(int size) {
+            ByteBuffer buffer = bytes.capacity() >= size ? bytes : ByteBuffer.allocate(size);
+            if (size <= MAX_RETAINED_SIZE) {
+                bytes = buffer;
+            }
+            buffer.clear().limit(size);
+            return buffer;
+        }
+
+        /**
+         * Decodes the content at once, replacing malformed input like {@link String#String(byte[], Charset)} does.
+         */
+        Reader decode(ByteBuffer content, Charset charset) {
+            CharsetDecoder contentDecoder = decoder(charset);
+            // every malformed byte is replaced by at most one character
+            int capacity = (int) Math.ceil(content.remaining() * (double) contentDecoder.maxCharsPerByte()) + 1;
+            char[] buffer = chars.length >= capacity ? chars : new char[capacity];
+            if (capacity <= MAX_RETAINED_SIZE) {
+                chars = buffer;
+            }
+
+            CharBuffer out = CharBuffer.wrap(buffer);
+            contentDecoder.decode(content, out, true);
+            contentDecoder.flush(out);
+
+            int start = out.position() > 0 && buffer[0] == BYTE_ORDER_MARK ? 1 : 0;
+            return new CharArrayReader(buffer, start, out.position() - start);
+        }
+
+        private CharsetDecoder decoder(Charset charset) {
+            if (decoder == null || !decoder.charset().equals(charset)) {
+                decoder = charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            }
+            return decoder.reset();
+        }
+
+    }
+
+    /**
+     * Decodes bytes straight into the buffer of the reader, replacing malformed input like {@link java.io.InputStreamReader} does.
+     */
+    private static final class DecodingReader extends Reader {
+
+        private final ByteBuffer bytes;
+
+        private final CharsetDecoder decoder;
+
+        private final char[] single = new char[2];
+
+        private int pending = -1;
+
+        private boolean started;
+
+        private boolean finished;
+
+        private DecodingReader(ByteBuffer bytes, Charset charset) {
+            this.bytes = bytes;
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (pending >= 0) {
+                buffer[offset] = (char) pending;
+                pending = -1;
+                return 1;
+            }
+            if (length == 1) {
+                // a single char may not be enough for a supplementary character, the low surrogate is kept for the next read
+                int read = decode(single, 0, 2);
+                if (read == 2) {
+                    pending = single[1];
+                }
+                if (read > 0) {
+                    buffer[offset] = single[0];
+                    return 1;
+                }
+                return read;
+            }
+            return decode(buffer, offset, length);
+        }
+
+        private int decode(char[] buffer, int offset, int length) throws IOException {
+            CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+            while (out.position() == offset && !finished) {
+                CoderResult result = decoder.decode(bytes, out, true);
+                if (result.isUnderflow()) {
+                    finished = decoder.flush(out).isUnderflow();
+                } else if (result.isError()) {
+                    result.throwException();
+                }
+            }
+
+            int read = out.position() - offset;
+            if (!started && read > 0) {
+                started = true;
+                if (buffer[offset] == BYTE_ORDER_MARK) {
+                    System.arraycopy(buffer, offset + 1, buffer, offset, read - 1);
+                    return read == 1 ? decode(buffer, offset, length) : read - 1;
+                }
+            }
+            return read == 0 ? -1 : read;
+        }
+
+        @Override
+        public void close() {
+            // nothing to release, the mapping is released with the buffer
+        }
+
+    }
+
+}
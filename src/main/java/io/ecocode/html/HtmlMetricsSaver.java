@@ -0,0 +1,197 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import io.ecocode.html.jfr.JfrEvents;
+import io.ecocode.html.jfr.SaveMetricsEvent;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.issue.NewIssue;
+import org.sonar.api.batch.sensor.issue.NewIssueLocation;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.html.checks.HtmlIssue;
+import org.sonar.plugins.html.checks.PreciseHtmlIssue;
+import org.sonar.plugins.html.visitor.HtmlSourceCode;
+
+import javax.annotation.CheckForNull;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Saves the measures and issues of an analyzed file.
+ * <p>
+ * Issues are sorted by rule and location so that identical issues are saved once, and the range of each location
+ * is created once, whole-line ranges being shared by all the issues of a line. When a rule raises more issues on a file
+ * than the configured maximum, the other ones are summed up by a single issue on the file.
+ * Each file is recorded as a {@link SaveMetricsEvent} by Java Flight Recorder.
+ */
+public final class HtmlMetricsSaver {
+
+    private static final Comparator<HtmlIssue> ISSUE_ORDER = Comparator
+            .comparing(HtmlIssue::ruleKey)
+            .thenComparing(HtmlIssue::line, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingInt(HtmlMetricsSaver::startColumn)
+            .thenComparingInt(HtmlMetricsSaver::endLine)
+            .thenComparingInt(HtmlMetricsSaver::endColumn)
+            .thenComparing(HtmlIssue::message, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(HtmlIssue::cost, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final int maxIssuesPerRule;
+
+    /**
+     * @param maxIssuesPerRule maximum number of issues of a rule saved on a file, not limited when 0 or less
+     */
+    public HtmlMetricsSaver(int maxIssuesPerRule) {
+        this.maxIssuesPerRule = maxIssuesPerRule;
+    }
+
+    public void saveMetrics(SensorContext context, HtmlSourceCode sourceCode) {
+        if (!JfrEvents.isSaveMetricsEnabled()) {
+            save(context, sourceCode);
+            return;
+        }
+        SaveMetricsEvent event = new SaveMetricsEvent();
+        event.begin();
+        int savedIssues = save(context, sourceCode);
+        if (event.shouldCommit()) {
+            event.path = sourceCode.inputFile().toString();
+            event.measures = sourceCode.getMeasures().size();
+            event.raisedIssues = sourceCode.getIssues().size();
+            event.savedIssues = savedIssues;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return the number of saved issues
+     */
+    private int save(SensorContext context, HtmlSourceCode sourceCode) {
+        InputFile inputFile = sourceCode.inputFile();
+
+        for (Map.Entry<Metric<Integer>, Integer> entry : sourceCode.getMeasures().entrySet()) {
+            context.<Integer>newMeasure()
+                    .on(inputFile)
+                    .forMetric(entry.getKey())
+                    .withValue(entry.getValue())
+                    .save();
+        }
+
+        if (sourceCode.getIssues().isEmpty()) {
+            return 0;
+        }
+
+        HtmlIssue[] issues = sourceCode.getIssues().toArray(new HtmlIssue[0]);
+        Arrays.sort(issues, ISSUE_ORDER);
+        // only the lines having issues get a range, whatever the size of the file
+        Map<Integer, TextRange> lineRanges = new HashMap<>();
+
+        HtmlIssue previous = null;
+        int ruleIssues = 0;
+        int savedIssues = 0;
+        for (HtmlIssue issue : issues) {
+            if (previous != null && ISSUE_ORDER.compare(previous, issue) == 0) {
+                continue;
+            }
+            if (previous != null && !previous.ruleKey().equals(issue.ruleKey())) {
+                savedIssues += saveOmittedIssues(context, inputFile, previous.ruleKey(), ruleIssues);
+                ruleIssues = 0;
+            }
+            previous = issue;
+            ruleIssues++;
+
+            if (maxIssuesPerRule <= 0 || ruleIssues <= maxIssuesPerRule) {
+                NewIssue newIssue = context.newIssue()
+                        .forRule(issue.ruleKey())
+                        .gap(issue.cost());
+                NewIssueLocation location = newIssue.newLocation().on(inputFile);
+                if (issue.message() != null) {
+                    location.message(issue.message());
+                }
+                TextRange range = range(inputFile, issue, lineRanges);
+                if (range != null) {
+                    location.at(range);
+                }
+                newIssue.at(location).save();
+                savedIssues++;
+            }
+        }
+        return savedIssues + saveOmittedIssues(context, inputFile, previous.ruleKey(), ruleIssues);
+    }
+
+    /**
+     * @return the number of saved issues, 1 when issues were omitted and 0 otherwise
+     */
+    private int saveOmittedIssues(SensorContext context, InputFile inputFile, RuleKey ruleKey, int ruleIssues) {
+        if (maxIssuesPerRule <= 0 || ruleIssues <= maxIssuesPerRule) {
+            return 0;
+        }
+
+        NewIssue newIssue = context.newIssue().forRule(ruleKey);
+        newIssue.at(newIssue.newLocation()
+                        .on(inputFile)
+                        .message(String.format("%d more issues of this rule are not reported on this file, which has more than %d of them",
+                                ruleIssues - maxIssuesPerRule, maxIssuesPerRule)))
+                .save();
+        return 1;
+    }
+
+    /**
+     * @return the range where the issue is reported on the file, {@code null} for issues on the whole file
+     */
+    @CheckForNull
+    public static TextRange range(InputFile inputFile, HtmlIssue issue) {
+        Integer line = issue.line();
+        if (issue instanceof PreciseHtmlIssue) {
+            PreciseHtmlIssue preciseHtmlIssue = (PreciseHtmlIssue) issue;
+            return inputFile.newRange(issue.line(),
+                    preciseHtmlIssue.startColumn(),
+                    preciseHtmlIssue.endLine(),
+                    preciseHtmlIssue.endColumn());
+        } else if (line != null) {
+            return inputFile.selectLine(line);
+        }
+        return null;
+    }
+
+    @CheckForNull
+    private static TextRange range(InputFile inputFile, HtmlIssue issue, Map<Integer, TextRange> lineRanges) {
+        Integer line = issue.line();
+        if (issue instanceof PreciseHtmlIssue || line == null) {
+            return range(inputFile, issue);
+        }
+        // invalid lines are reported by the input file
+        return lineRanges.computeIfAbsent(line, inputFile::selectLine);
+    }
+
+    private static int startColumn(HtmlIssue issue) {
+        return issue instanceof PreciseHtmlIssue ? ((PreciseHtmlIssue) issue).startColumn() : -1;
+    }
+
+    private static int endLine(HtmlIssue issue) {
+        return issue instanceof PreciseHtmlIssue ? ((PreciseHtmlIssue) issue).endLine() : -1;
+    }
+
+    private static int endColumn(HtmlIssue issue) {
+        return issue instanceof PreciseHtmlIssue ? ((PreciseHtmlIssue) issue).endColumn() : -1;
+    }
+
+}
@@ -18,6 +18,7 @@
 package io.ecocode.html;
 
 import org.sonar.api.Plugin;
+import org.sonar.api.SonarProduct;
 
 public class HtmlPlugin implements Plugin {
 
@@ -26,6 +27,9 @@ public class HtmlPlugin implements Plugin {
     @Override
     public void define(Context context) {
         context.addExtensions(HtmlRulesDefinition.class, HtmlSensor.class);
+        if (context.getRuntime().getProduct() == SonarProduct.SONARLINT) {
+            context.addExtension(HtmlWarmAnalyzer.class);
+        }
     }
 
 }
@@ -17,18 +17,17 @@
  */
 package io.ecocode.html;
 
+import io.ecocode.html.declarative.DeclarativeRules;
 import org.sonar.api.SonarRuntime;
 import org.sonar.api.server.rule.RulesDefinition;
 import org.sonar.plugins.html.api.HtmlConstants;
 import org.sonarsource.analyzer.commons.RuleMetadataLoader;
 
-import java.util.Collections;
-
 public class HtmlRulesDefinition implements RulesDefinition {
 
     public static final String REPOSITORY_KEY = "ecocode-html";
 
-    private static final String METADATA_LOCATION = "io/ecocode/rules/html";
+    static final String METADATA_LOCATION = "io/ecocode/rules/html";
 
     private final SonarRuntime sonarRuntime;
 
@@ -44,10 +43,10 @@ public class HtmlRulesDefinition implements RulesDefinition {
 
         RuleMetadataLoader ruleMetadataLoader = new RuleMetadataLoader(METADATA_LOCATION, sonarRuntime);
 
-        ruleMetadataLoader.addRulesByAnnotatedClass(
-                repository,
-                Collections.unmodifiableList(CheckList.getChecks())
-        );
+        // rule keys and parameters are listed with the checks rather than read from their annotations
+        ruleMetadataLoader.addRulesByRuleKey(repository, CheckList.ruleKeys());
+        CheckList.addParams(repository);
+        ruleMetadataLoader.addRulesByRuleKey(repository, DeclarativeRules.keys(DeclarativeRules.load()));
 
         repository.done();
     }
@@ -17,37 +17,52 @@
  */
 package io.ecocode.html;
 
+import io.ecocode.html.declarative.DeclarativeMatcher;
+import io.ecocode.html.declarative.DeclarativeRule;
+import io.ecocode.html.declarative.DeclarativeRules;
+import io.ecocode.html.declarative.DeclarativeRulesCheck;
+import io.ecocode.html.jfr.AnalysisErrorEvent;
+import io.ecocode.html.jfr.JfrEvents;
+import io.ecocode.html.visitor.HtmlNodeDispatcher;
 import org.sonar.api.SonarProduct;
 import org.sonar.api.SonarRuntime;
 import org.sonar.api.batch.fs.FilePredicate;
 import org.sonar.api.batch.fs.FilePredicates;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.ActiveRules;
 import org.sonar.api.batch.rule.CheckFactory;
 import org.sonar.api.batch.rule.Checks;
 import org.sonar.api.batch.sensor.Sensor;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.SensorDescriptor;
-import org.sonar.api.batch.sensor.issue.NewIssue;
-import org.sonar.api.batch.sensor.issue.NewIssueLocation;
-import org.sonar.api.measures.Metric;
+import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.Version;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.plugins.html.api.HtmlConstants;
 import org.sonar.plugins.html.checks.AbstractPageCheck;
-import org.sonar.plugins.html.checks.HtmlIssue;
-import org.sonar.plugins.html.checks.PreciseHtmlIssue;
-import org.sonar.plugins.html.lex.PageLexer;
-import org.sonar.plugins.html.lex.VueLexer;
-import org.sonar.plugins.html.visitor.HtmlAstScanner;
 import org.sonar.plugins.html.visitor.HtmlSourceCode;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.util.Collections;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
@@ -60,15 +75,59 @@ public class HtmlSensor implements Sensor {
 
     private static final Logger LOG = Loggers.get(HtmlSensor.class);
 
+    /**
+     * Time between two checks of the cancellation of the analysis while waiting for a file analyzed in parallel.
+     */
+    private static final long CANCELLATION_POLL_MILLIS = 50;
+
     private static final String[] OTHER_FILE_SUFFIXES = {"php", "php3", "php4", "php5", "phtml", "inc", "vue"};
 
-    private final Checks<Object> checks;
+    private final CheckFactory checkFactory;
+
+    @Nullable
+    private final ActiveRules activeRules;
 
     private final SonarRuntime sonarRuntime;
 
+    @Nullable
+    private final HtmlWarmAnalyzer warmAnalyzer;
+
+    private final List<DeclarativeRule> declarativeRules;
+
+    @Nullable
+    private Checks<Object> checks;
+
+    @Nullable
+    private DeclarativeMatcher declarativeMatcher;
+
+    /**
+     * Only the rules implemented by checks are active, since the active declarative rules are read from the active rules.
+     */
     public HtmlSensor(CheckFactory checkFactory, SonarRuntime sonarRuntime) {
-        this.checks = checkFactory.create(HtmlRulesDefinition.REPOSITORY_KEY).addAnnotatedChecks(CheckList.getChecks());
+        this(checkFactory, null, sonarRuntime, null);
+    }
+
+    public HtmlSensor(CheckFactory checkFactory, ActiveRules activeRules, SonarRuntime sonarRuntime) {
+        this(checkFactory, activeRules, sonarRuntime, null);
+    }
+
+    /**
+     * Used by SonarLint, whose analyses reuse the checks and the results of the previous analyses kept by the warm analyzer.
+     */
+    public HtmlSensor(CheckFactory checkFactory, @Nullable ActiveRules activeRules, SonarRuntime sonarRuntime, @Nullable HtmlWarmAnalyzer warmAnalyzer) {
+        this(checkFactory, activeRules, sonarRuntime, warmAnalyzer, DeclarativeRules.load());
+    }
+
+    /**
+     * @param declarativeRules all the declarative rules of the repository, active or not
+     */
+    HtmlSensor(CheckFactory checkFactory, @Nullable ActiveRules activeRules, SonarRuntime sonarRuntime, @Nullable HtmlWarmAnalyzer warmAnalyzer,
+               List<DeclarativeRule> declarativeRules) {
+        this.checkFactory = checkFactory;
+        this.activeRules = activeRules;
         this.sonarRuntime = sonarRuntime;
+        this.warmAnalyzer = warmAnalyzer;
+        this.declarativeRules = declarativeRules;
     }
 
     @Override
@@ -81,9 +140,6 @@ public class HtmlSensor implements Sensor {
     public void execute(@Nonnull SensorContext sensorContext) {
         FileSystem fileSystem = sensorContext.fileSystem();
 
-        // configure page scanner and the visitors
-        final HtmlAstScanner scanner = setupScanner();
-
         FilePredicates predicates = fileSystem.predicates();
         Iterable<InputFile> inputFiles = fileSystem.inputFiles(
                 predicates.and(
@@ -94,63 +150,172 @@ public class HtmlSensor implements Sensor {
                         )
                 ));
 
+        HtmlAnalysisSettings settings = new HtmlAnalysisSettings(sensorContext.config(), sonarRuntime);
+        HtmlAnalysisProfiler profiler = HtmlAnalysisProfiler.create(settings);
+        HtmlMetricsSaver metricsSaver = new HtmlMetricsSaver(settings.maxIssuesPerRule());
+        MemoryBudget memoryBudget = MemoryBudget.create(settings);
+
+        // timed visitors are bound to the profiler of an analysis, so profiled analyses do not reuse the warm analyzer
+        if (warmAnalyzer != null && activeRules != null && !profiler.isEnabled()) {
+            HtmlWarmAnalyzer.Session session = warmAnalyzer.acquire(activeRules, settings,
+                    warmCache -> new HtmlFileAnalyzer(setupDispatcher(checks(), declarativeMatcher(), profiler), settings, warmCache));
+            try {
+                ResultSaver saver = new ResultSaver(sensorContext, session.cache(), metricsSaver, profiler, memoryBudget, DuplicateContents.none());
+                executeSequentially(sensorContext, inputFiles, session.analyzer(), saver);
+                saver.logSummary();
+                memoryBudget.logPeak();
+            } finally {
+                warmAnalyzer.release(session);
+            }
+            return;
+        }
+
+        HtmlAnalysisCache cache = HtmlAnalysisCache.create(sensorContext, sonarRuntime, checks(), declarativeMatcher().rules());
+        DuplicateContents duplicates = settings.deduplication() && settings.readFromFileSystem()
+                ? DuplicateContents.find(inputFiles)
+                : DuplicateContents.none();
+        ResultSaver saver = new ResultSaver(sensorContext, cache, metricsSaver, profiler, memoryBudget, duplicates);
+        DeclarativeMatcher matcher = declarativeMatcher();
+        if (settings.threads() > 1) {
+            executeInParallel(sensorContext, inputFiles, settings.threads(),
+                    () -> new HtmlFileAnalyzer(setupDispatcher(createChecks(checkFactory), matcher, profiler), settings, cache, duplicates), saver,
+                    memoryBudget);
+        } else if (settings.pipeline()) {
+            new AnalysisPipeline(new HtmlFileAnalyzer(setupDispatcher(checks(), matcher, profiler), settings, cache, duplicates),
+                    settings.readFromFileSystem(), new AnalysisThreadFactory(), memoryBudget)
+                    .run(inputFiles, sensorContext::isCancelled, saver::save, (inputFile, e) -> reportAnalysisError(sensorContext, inputFile, e));
+        } else {
+            executeSequentially(sensorContext, inputFiles,
+                    new HtmlFileAnalyzer(setupDispatcher(checks(), matcher, profiler), settings, cache, duplicates), saver);
+        }
+        saver.logSummary();
+        memoryBudget.logPeak();
+        if (profiler.isEnabled()) {
+            profiler.report(fileSystem.workDir().toPath());
+        }
+    }
+
+    private static void executeSequentially(SensorContext sensorContext, Iterable<InputFile> inputFiles, HtmlFileAnalyzer analyzer, ResultSaver saver) {
         for (InputFile inputFile : inputFiles) {
             if (sensorContext.isCancelled()) {
                 return;
             }
 
-            HtmlSourceCode sourceCode = new HtmlSourceCode(inputFile);
-
-            try (Reader reader = new InputStreamReader(inputFile.inputStream(), inputFile.charset())) {
-                PageLexer lexer = inputFile.filename().endsWith(".vue") ? new VueLexer() : new PageLexer();
-                scanner.scan(lexer.parse(reader), sourceCode);
-                saveMetrics(sensorContext, sourceCode);
+            try {
+                saver.save(analyzer.analyze(inputFile, sensorContext::isCancelled));
+            } catch (CancellationException e) {
+                return;
             } catch (Exception e) {
-                LOG.error("Cannot analyze file " + inputFile, e);
-                sensorContext.newAnalysisError()
-                        .onFile(inputFile)
-                        .message(e.getMessage())
-                        .save();
+                reportAnalysisError(sensorContext, inputFile, e);
             }
         }
     }
 
-    private static void saveMetrics(SensorContext context, HtmlSourceCode sourceCode) {
-        InputFile inputFile = sourceCode.inputFile();
+    /**
+     * Lexing and visiting run on a pool of workers, each one owning a scanner wired with its own check instances
+     * since checks keep state while visiting a file.
+     * Issues and measures are still saved from the calling thread, in the same order as a sequential analysis.
+     * When the analysis is cancelled, the workers are interrupted and abandon the files they are analyzing,
+     * and the sensor returns once they all stopped.
+     * Files are only submitted once admitted by the memory budget, the next analyzed files being saved until then.
+     */
+    private static void executeInParallel(SensorContext sensorContext, Iterable<InputFile> inputFiles, int threads,
+                                          Supplier<HtmlFileAnalyzer> analyzerFactory, ResultSaver saver, MemoryBudget memoryBudget) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new AnalysisThreadFactory());
+        ThreadLocal<HtmlFileAnalyzer> analyzers = ThreadLocal.withInitial(analyzerFactory);
+        Deque<PendingFile> pending = new ArrayDeque<>();
+
+        try {
+            for (InputFile inputFile : inputFiles) {
+                long footprint = memoryBudget.footprint(inputFile);
+                while (!memoryBudget.tryAcquire(footprint)) {
+                    if (sensorContext.isCancelled()) {
+                        return;
+                    }
+                    saveNext(sensorContext, pending, saver, memoryBudget);
+                }
+                if (sensorContext.isCancelled()) {
+                    memoryBudget.release(footprint);
+                    return;
+                }
 
-        for (Map.Entry<Metric<Integer>, Integer> entry : sourceCode.getMeasures().entrySet()) {
-            context.<Integer>newMeasure()
-                    .on(inputFile)
-                    .forMetric(entry.getKey())
-                    .withValue(entry.getValue())
-                    .save();
+                pending.add(new PendingFile(inputFile, executor.submit(() -> analyzers.get().analyze(inputFile, sensorContext::isCancelled)), footprint));
+                // keep a bounded number of analyzed files waiting to be saved
+                if (pending.size() >= threads * 2) {
+                    saveNext(sensorContext, pending, saver, memoryBudget);
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                if (sensorContext.isCancelled()) {
+                    return;
+                }
+                saveNext(sensorContext, pending, saver, memoryBudget);
+            }
+        } finally {
+            AnalysisPipeline.shutdown(executor);
+        }
+    }
+
+    private static void saveNext(SensorContext sensorContext, Deque<PendingFile> pending, ResultSaver saver, MemoryBudget memoryBudget) {
+        PendingFile next = pending.remove();
+        InputFile inputFile = next.inputFile;
+
+        try {
+            HtmlFileAnalyzer.Result result = null;
+            while (result == null) {
+                if (sensorContext.isCancelled()) {
+                    return;
+                }
+                result = poll(next.future);
+            }
+            saver.save(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while analyzing file " + inputFile, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            if (e.getCause() instanceof CancellationException) {
+                return;
+            }
+            reportAnalysisError(sensorContext, inputFile, e.getCause());
+        } catch (Exception e) {
+            reportAnalysisError(sensorContext, inputFile, e);
+        } finally {
+            memoryBudget.release(next.footprint);
         }
+    }
 
-        for (HtmlIssue issue : sourceCode.getIssues()) {
-            NewIssue newIssue = context.newIssue()
-                    .forRule(issue.ruleKey())
-                    .gap(issue.cost());
-            NewIssueLocation location = locationForIssue(inputFile, issue, newIssue);
-            newIssue.at(location);
-            newIssue.save();
+    @CheckForNull
+    private static HtmlFileAnalyzer.Result poll(Future<HtmlFileAnalyzer.Result> future) throws InterruptedException, ExecutionException {
+        try {
+            return future.get(CANCELLATION_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return null;
         }
     }
 
-    private static NewIssueLocation locationForIssue(InputFile inputFile, HtmlIssue issue, NewIssue newIssue) {
-        NewIssueLocation location = newIssue.newLocation()
-                .on(inputFile)
-                .message(issue.message());
-        Integer line = issue.line();
-        if (issue instanceof PreciseHtmlIssue) {
-            PreciseHtmlIssue preciseHtmlIssue = (PreciseHtmlIssue) issue;
-            location.at(inputFile.newRange(issue.line(),
-                    preciseHtmlIssue.startColumn(),
-                    preciseHtmlIssue.endLine(),
-                    preciseHtmlIssue.endColumn()));
-        } else if (line != null) {
-            location.at(inputFile.selectLine(line));
+    private static void reportAnalysisError(SensorContext sensorContext, InputFile inputFile, Throwable e) {
+        if (e instanceof AnalysisTimeoutException) {
+            LOG.warn(e.getMessage());
+        } else {
+            LOG.error("Cannot analyze file " + inputFile, e);
+        }
+        sensorContext.newAnalysisError()
+                .onFile(inputFile)
+                .message(e.getMessage())
+                .save();
+
+        if (JfrEvents.isAnalysisErrorEnabled()) {
+            AnalysisErrorEvent event = new AnalysisErrorEvent();
+            event.path = inputFile.toString();
+            event.error = e.getClass();
+            event.message = e.getMessage();
+            event.timeout = e instanceof AnalysisTimeoutException;
+            event.commit();
         }
-        return location;
     }
 
     private void processesFilesIndependently(SensorDescriptor descriptor) {
@@ -161,15 +326,163 @@ public class HtmlSensor implements Sensor {
         descriptor.processesFilesIndependently();
     }
 
-    private HtmlAstScanner setupScanner() {
-        HtmlAstScanner scanner = new HtmlAstScanner(Collections.emptyList());
+    private Checks<Object> checks() {
+        if (checks == null) {
+            checks = createChecks(checkFactory);
+        }
+        return checks;
+    }
+
+    /**
+     * @return the active declarative rules, compiled once and shared by the dispatchers of all the threads
+     */
+    private DeclarativeMatcher declarativeMatcher() {
+        if (declarativeMatcher == null) {
+            List<DeclarativeRule> active = new ArrayList<>();
+            if (activeRules != null) {
+                for (DeclarativeRule rule : declarativeRules) {
+                    if (activeRules.find(RuleKey.of(HtmlRulesDefinition.REPOSITORY_KEY, rule.key())) != null) {
+                        active.add(rule);
+                    }
+                }
+            }
+            declarativeMatcher = DeclarativeMatcher.compile(HtmlRulesDefinition.REPOSITORY_KEY, active);
+        }
+        return declarativeMatcher;
+    }
+
+    private static Checks<Object> createChecks(CheckFactory checkFactory) {
+        return checkFactory.create(HtmlRulesDefinition.REPOSITORY_KEY).addAnnotatedChecks(CheckList.newChecks().toArray());
+    }
+
+    private static HtmlNodeDispatcher setupDispatcher(Checks<Object> checks, DeclarativeMatcher declarativeMatcher, HtmlAnalysisProfiler profiler) {
+        HtmlNodeDispatcher dispatcher = new HtmlNodeDispatcher();
 
         for (Object check : checks.all()) {
             ((AbstractPageCheck) check).setRuleKey(checks.ruleKey(check));
-            scanner.addVisitor((AbstractPageCheck) check);
+            dispatcher.addVisitor(profiler.instrument(checks.ruleKey(check), (AbstractPageCheck) check));
+        }
+
+        // all the declarative rules are checked by a single visitor, whatever their number
+        if (!declarativeMatcher.isEmpty()) {
+            DeclarativeRulesCheck check = new DeclarativeRulesCheck(declarativeMatcher);
+            check.setRuleKey(RuleKey.of(HtmlRulesDefinition.REPOSITORY_KEY, DeclarativeRulesCheck.KEY));
+            dispatcher.addVisitor(profiler.instrument(check.getRuleKey(), check));
+        }
+
+        return dispatcher;
+    }
+
+    /**
+     * Saves the issues and measures of the analyzed files, and counts the files for each action taken
+     * to log them when some files were not fully analyzed. Must be called from the sensor thread.
+     */
+    private static class ResultSaver {
+
+        private final SensorContext sensorContext;
+
+        private final HtmlAnalysisCache cache;
+
+        private final HtmlMetricsSaver metricsSaver;
+
+        private final HtmlAnalysisProfiler profiler;
+
+        private final MemoryBudget memoryBudget;
+
+        private final DuplicateContents duplicates;
+
+        private final Map<HtmlFileAnalyzer.Action, Integer> files = new EnumMap<>(HtmlFileAnalyzer.Action.class);
+
+        private ResultSaver(SensorContext sensorContext, HtmlAnalysisCache cache, HtmlMetricsSaver metricsSaver, HtmlAnalysisProfiler profiler,
+                            MemoryBudget memoryBudget, DuplicateContents duplicates) {
+            this.sensorContext = sensorContext;
+            this.cache = cache;
+            this.metricsSaver = metricsSaver;
+            this.profiler = profiler;
+            this.memoryBudget = memoryBudget;
+            this.duplicates = duplicates;
+        }
+
+        private void save(HtmlFileAnalyzer.Result result) {
+            long start = System.nanoTime();
+            if (result.action() != HtmlFileAnalyzer.Action.SKIPPED && result.action() != HtmlFileAnalyzer.Action.UNCHANGED) {
+                metricsSaver.saveMetrics(sensorContext, result.sourceCode());
+                String contentHash = result.contentHash();
+                if (contentHash != null) {
+                    cache.write(contentHash, result.sourceCode(), result.fromCache());
+                }
+            }
+            files.merge(result.action(), 1, Integer::sum);
+            profiler.record(result.sourceCode().inputFile(), result, System.nanoTime() - start);
+            if (memoryBudget.isEnabled()) {
+                release(result);
+                memoryBudget.sample();
+            }
+        }
+
+        /**
+         * Empties the issues and measures of a saved file, which may still be referenced by the visitors until the next file,
+         * unless they are still to be replayed on identical files.
+         */
+        private void release(HtmlFileAnalyzer.Result result) {
+            HtmlSourceCode sourceCode = result.sourceCode();
+            if (result.action() == HtmlFileAnalyzer.Action.DUPLICATE || !duplicates.isCandidate(sourceCode.inputFile())) {
+                sourceCode.getIssues().clear();
+                sourceCode.getMeasures().clear();
+            }
+        }
+
+        private void logSummary() {
+            if (!files.keySet().stream().allMatch(HtmlFileAnalyzer.Action.ANALYZED::equals)) {
+                LOG.info("{} file(s) analyzed, {} of them by chunks, {} file(s) replayed from the cache, "
+                                + "{} file(s) replayed from identical files, "
+                                + "{} file(s) without trigger tokens of the active rules, {} unchanged file(s) not analyzed, {} file(s) skipped",
+                        count(HtmlFileAnalyzer.Action.ANALYZED) + count(HtmlFileAnalyzer.Action.ANALYZED_BY_CHUNKS),
+                        count(HtmlFileAnalyzer.Action.ANALYZED_BY_CHUNKS),
+                        count(HtmlFileAnalyzer.Action.FROM_CACHE),
+                        count(HtmlFileAnalyzer.Action.DUPLICATE),
+                        count(HtmlFileAnalyzer.Action.FILTERED),
+                        count(HtmlFileAnalyzer.Action.UNCHANGED),
+                        count(HtmlFileAnalyzer.Action.SKIPPED));
+            }
+        }
+
+        private int count(HtmlFileAnalyzer.Action action) {
+            return files.getOrDefault(action, 0);
+        }
+
+    }
+
+    private static final class PendingFile {
+
+        private final InputFile inputFile;
+
+        private final Future<HtmlFileAnalyzer.Result> future;
+
+        /**
+         * Footprint admitted by the memory budget, released once the file is saved.
+         */
+        private final long footprint;
+
+        private PendingFile(InputFile inputFile, Future<HtmlFileAnalyzer.Result> future, long footprint) {
+            this.inputFile = inputFile;
+            this.future = future;
+            this.footprint = footprint;
+        }
+
+    }
+
+    private static class AnalysisThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nonnull Runnable runnable) {
+            Thread thread = new Thread(runnable, "ecocode-html-analysis-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
 
-        return scanner;
     }
 
 }
@@ -0,0 +1,134 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonarsource.api.sonarlint.SonarLintSide;
+
+import javax.annotation.CheckForNull;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Keeps the analyzer of the last SonarLint analysis, wired with its checks, and the results of the files it analyzed,
+ * so that the next analyses with the same rules and settings neither create the checks again nor analyze unchanged files.
+ * <p>
+ * The analyzer is handed to one analysis at a time: concurrent analyses create their own one.
+ */
+@SonarLintSide(lifespan = SonarLintSide.INSTANCE)
+public class HtmlWarmAnalyzer {
+
+    /**
+     * Maximum number of file analyses kept in memory, the least recently used ones being evicted.
+     */
+    static final int MAX_CACHED_FILES = 512;
+
+    private final AtomicReference<Session> idleSession = new AtomicReference<>();
+
+    /**
+     * @param analyzerFactory creates an analyzer with the given cache when the idle one cannot be reused
+     * @return a session to give back with {@link #release(Session)} at the end of the analysis
+     */
+    public Session acquire(ActiveRules activeRules, HtmlAnalysisSettings settings, Function<HtmlAnalysisCache, HtmlFileAnalyzer> analyzerFactory) {
+        String fingerprint = fingerprint(activeRules);
+        Session session = idleSession.getAndSet(null);
+        if (session != null && session.fingerprint.equals(fingerprint) && session.settings.equals(settings)) {
+            return session;
+        }
+
+        HtmlAnalysisCache cache = HtmlAnalysisCache.inMemory(Collections.synchronizedMap(new LruMap()), fingerprint);
+        return new Session(fingerprint, settings, cache, analyzerFactory.apply(cache));
+    }
+
+    public void release(Session session) {
+        idleSession.set(session);
+    }
+
+    /**
+     * @return a fingerprint of the plugin build and of the keys and parameters of the active rules of the plugin
+     */
+    static String fingerprint(ActiveRules activeRules) {
+        Set<String> rules = new TreeSet<>();
+        for (ActiveRule activeRule : activeRules.findByRepository(HtmlRulesDefinition.REPOSITORY_KEY)) {
+            rules.add(activeRule.ruleKey() + "=" + new TreeMap<>(activeRule.params()));
+        }
+
+        MessageDigest digest = HtmlAnalysisCache.digest();
+        // entries are only kept in memory, by the plugin instance which produced them, so an unknown build is harmless here
+        digest.update(Objects.toString(HtmlAnalysisCache.pluginBuild(), "").getBytes(StandardCharsets.UTF_8));
+        for (String rule : rules) {
+            digest.update((byte) '\n');
+            digest.update(rule.getBytes(StandardCharsets.UTF_8));
+        }
+        return HtmlAnalysisCache.toHex(digest.digest());
+    }
+
+    /**
+     * Analyzer and cache used by a single analysis at a time.
+     */
+    public static final class Session {
+
+        private final String fingerprint;
+
+        private final HtmlAnalysisSettings settings;
+
+        private final HtmlAnalysisCache cache;
+
+        private final HtmlFileAnalyzer analyzer;
+
+        private Session(String fingerprint, HtmlAnalysisSettings settings, HtmlAnalysisCache cache, HtmlFileAnalyzer analyzer) {
+            this.fingerprint = fingerprint;
+            this.settings = settings;
+            this.cache = cache;
+            this.analyzer = analyzer;
+        }
+
+        public HtmlAnalysisCache cache() {
+            return cache;
+        }
+
+        public HtmlFileAnalyzer analyzer() {
+            return analyzer;
+        }
+
+    }
+
+    private static final class LruMap extends LinkedHashMap<String, byte[]> {
+
+        private LruMap() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(@CheckForNull Map.Entry<String, byte[]> eldest) {
+            return size() > MAX_CACHED_FILES;
+        }
+
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import io.ecocode.html.lex.StreamingPageLexer;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the memory held by the files being analyzed within {@link HtmlAnalysisSettings#MEMORY_BUDGET_PROPERTY}:
+ * a file is admitted for analysis only when the estimated footprint of the files admitted and not saved yet leaves room for it,
+ * or when no other file is in flight, so that the analysis always progresses.
+ * <p>
+ * The footprint of a file is estimated from its size, bounded by the size of a chunk for files analyzed by chunks.
+ * The whole size of the files {@link HtmlFileContent memory-mapped} is added, since their mapping is only released
+ * once garbage collected.
+ * The heap used after garbage collections is sampled each time a file is saved, and its peak is logged at the end of the analysis.
+ */
+final class MemoryBudget {
+
+    private static final Logger LOG = Loggers.get(MemoryBudget.class);
+
+    /**
+     * Rough upper bound of the memory held by the nodes, issues and decoded content of a file, per byte of the file.
+     */
+    static final int FOOTPRINT_PER_BYTE = 20;
+
+    private static final MemoryBudget UNLIMITED = new MemoryBudget(null, 0);
+
+    private static final long MEGABYTE = 1024 * 1024;
+
+    @Nullable
+    private final HtmlAnalysisSettings settings;
+
+    private final long budget;
+
+    private final List<MemoryPoolMXBean> heapPools;
+
+    private long inFlight;
+
+    private int inFlightFiles;
+
+    private long peakInFlight;
+
+    private int peakInFlightFiles;
+
+    private long peakHeap;
+
+    private MemoryBudget(@Nullable HtmlAnalysisSettings settings, long budget) {
+        this.settings = settings;
+        this.budget = budget;
+        this.heapPools = budget <= 0 ? List.of() : ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null)
+                .collect(Collectors.toList());
+    }
+
+    static MemoryBudget create(HtmlAnalysisSettings settings) {
+        return settings.memoryBudget() > 0 ? new MemoryBudget(settings, settings.memoryBudget()) : UNLIMITED;
+    }
+
+    static MemoryBudget unlimited() {
+        return UNLIMITED;
+    }
+
+    boolean isEnabled() {
+        return budget > 0;
+    }
+
+    /**
+     * @return the estimated memory held while analyzing the file, 0 when the budget is not enabled
+     */
+    long footprint(InputFile inputFile) {
+        if (settings == null) {
+            return 0;
+        }
+        Path path = Paths.get(inputFile.uri());
+        long size;
+        try {
+            size = path != null && Files.isRegularFile(path) ? Files.size(path) : 0;
+        } catch (IOException e) {
+            size = 0;
+        }
+        if (settings.isAboveHardLimit(size)) {
+            return 0;
+        }
+        long analyzedSize = settings.streaming() || settings.isAboveSoftLimit(size) ? Math.min(size, StreamingPageLexer.DEFAULT_CHUNK_SIZE) : size;
+        long mappedSize = settings.readFromFileSystem() && size >= HtmlFileContent.MAPPING_THRESHOLD ? size : 0;
+        return analyzedSize * FOOTPRINT_PER_BYTE + mappedSize;
+    }
+
+    /**
+     * @return whether the file was admitted, in which case it must be {@link #release released} once saved
+     */
+    synchronized boolean tryAcquire(long footprint) {
+        if (isEnabled() && inFlightFiles > 0 && inFlight + footprint > budget) {
+            return false;
+        }
+        inFlight += footprint;
+        inFlightFiles++;
+        peakInFlight = Math.max(peakInFlight, inFlight);
+        peakInFlightFiles = Math.max(peakInFlightFiles, inFlightFiles);
+        return true;
+    }
+
+    /**
+     * Waits until the file is admitted, it must then be {@link #release released} once saved.
+     */
+    synchronized void acquire(long footprint) throws InterruptedException {
+        while (!tryAcquire(footprint)) {
+            wait();
+        }
+    }
+
+    synchronized void release(long footprint) {
+        inFlight -= footprint;
+        inFlightFiles--;
+        notifyAll();
+    }
+
+    /**
+     * Samples the heap used after the last garbage collections, must be called from the sensor thread.
+     */
+    void sample() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        peakHeap = Math.max(peakHeap, used);
+    }
+
+    synchronized void logPeak() {
+        if (isEnabled()) {
+            LOG.info("Peak heap used after garbage collection: {} MB, at most {} file(s) estimated to {} MB analyzed at once, "
+                            + "within a budget of {} MB set by {}",
+                    peakHeap / MEGABYTE, peakInFlightFiles, peakInFlight / MEGABYTE, budget / MEGABYTE, HtmlAnalysisSettings.MEMORY_BUDGET_PROPERTY);
+        }
+    }
+
+}
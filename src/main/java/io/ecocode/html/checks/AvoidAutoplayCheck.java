@@ -17,34 +17,36 @@
  */
 package io.ecocode.html.checks;
 
+import io.ecocode.html.prefilter.TriggerTokens;
+import io.ecocode.html.visitor.ElementSubscription;
+import io.ecocode.html.visitor.IndexedElement;
+import io.ecocode.html.visitor.Symbol;
+import io.ecocode.html.visitor.Symbols;
 import org.sonar.check.Rule;
 import org.sonar.plugins.html.checks.AbstractPageCheck;
 import org.sonar.plugins.html.node.TagNode;
 
 @Rule(key = AvoidAutoplayCheck.KEY)
+@ElementSubscription(tags = {"audio", "video"}, attributes = "autoplay")
+@TriggerTokens("autoplay")
 public class AvoidAutoplayCheck extends AbstractPageCheck {
 
     public static final String KEY = "EC8000";
 
+    private static final Symbol AUDIO = Symbols.intern("audio");
+
+    private static final Symbol VIDEO = Symbols.intern("video");
+
+    private static final Symbol AUTOPLAY = Symbols.intern("autoplay");
+
     @Override
     public void startElement(TagNode node) {
-        if (isAudioTag(node) && hasAutoplayAttribute(node)) {
+        IndexedElement element = IndexedElement.of(node);
+        if (element.is(AUDIO) && element.hasAttribute(AUTOPLAY)) {
             createViolation(node, "Avoid using autoplay attribute in audio element");
-        } else if (isVideoTag(node) && hasAutoplayAttribute(node)) {
+        } else if (element.is(VIDEO) && element.hasAttribute(AUTOPLAY)) {
             createViolation(node, "Avoid using autoplay attribute in video element");
         }
     }
 
-    private static boolean isAudioTag(TagNode node) {
-        return "AUDIO".equalsIgnoreCase(node.getNodeName());
-    }
-
-    private static boolean isVideoTag(TagNode node) {
-        return "VIDEO".equalsIgnoreCase(node.getNodeName());
-    }
-
-    private static boolean hasAutoplayAttribute(TagNode node) {
-        return node.hasProperty("AUTOPLAY");
-    }
-
 }
@@ -0,0 +1,163 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.declarative;
+
+import io.ecocode.html.visitor.IndexedElement;
+import io.ecocode.html.visitor.Symbol;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.html.checks.PreciseHtmlIssue;
+import org.sonar.plugins.html.node.TagNode;
+import org.sonar.plugins.html.visitor.HtmlSourceCode;
+
+import javax.annotation.CheckForNull;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Active {@link DeclarativeRule declarative rules} compiled into a table of the rules of each element, indexed by
+ * the id of the {@link Symbol} of the element name like {@link io.ecocode.html.visitor.HtmlNodeDispatcher} does:
+ * an element is matched against all the rules at once, by looking up its name once and testing its attributes
+ * with the symbols indexed by {@link IndexedElement}.
+ * <p>
+ * Immutable, so that a matcher is shared by the analyzers of all the threads.
+ */
+public final class DeclarativeMatcher {
+
+    private static final CompiledRule[] NO_RULES = new CompiledRule[0];
+
+    private static final DeclarativeMatcher EMPTY = new DeclarativeMatcher(List.of(), new CompiledRule[0][], NO_RULES);
+
+    private final List<DeclarativeRule> rules;
+
+    private final CompiledRule[][] elementRules;
+
+    private final CompiledRule[] anyElementRules;
+
+    private DeclarativeMatcher(List<DeclarativeRule> rules, CompiledRule[][] elementRules, CompiledRule[] anyElementRules) {
+        this.rules = rules;
+        this.elementRules = elementRules;
+        this.anyElementRules = anyElementRules;
+    }
+
+    public static DeclarativeMatcher empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param rules the active rules, issues being raised in this order on a given element
+     */
+    public static DeclarativeMatcher compile(String repositoryKey, List<DeclarativeRule> rules) {
+        if (rules.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<List<CompiledRule>> byElement = new ArrayList<>();
+        List<CompiledRule> anyElement = new ArrayList<>();
+        for (DeclarativeRule rule : rules) {
+            CompiledRule compiled = new CompiledRule(RuleKey.of(repositoryKey, rule.key()), rule);
+            if (rule.elements().isEmpty()) {
+                anyElement.add(compiled);
+            }
+            for (Symbol element : rule.elements()) {
+                while (byElement.size() <= element.id()) {
+                    byElement.add(null);
+                }
+                if (byElement.get(element.id()) == null) {
+                    byElement.set(element.id(), new ArrayList<>());
+                }
+                byElement.get(element.id()).add(compiled);
+            }
+        }
+
+        CompiledRule[][] elementRules = new CompiledRule[byElement.size()][];
+        for (int i = 0; i < elementRules.length; i++) {
+            elementRules[i] = byElement.get(i) == null ? null : byElement.get(i).toArray(NO_RULES);
+        }
+        return new DeclarativeMatcher(List.copyOf(rules), elementRules, anyElement.toArray(NO_RULES));
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    public List<DeclarativeRule> rules() {
+        return rules;
+    }
+
+    /**
+     * @return the names of the elements of the rules, or of the attributes they require for the rules applying
+     * to all elements, or null when a rule may match any element
+     */
+    @CheckForNull
+    public String[] triggerTokens() {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (DeclarativeRule rule : rules) {
+            if (!rule.elements().isEmpty()) {
+                rule.elements().forEach(element -> tokens.add(element.name()));
+            } else {
+                DeclarativeRule.Condition required = rule.conditions().stream()
+                        .filter(DeclarativeRule.Condition::requiresAttribute)
+                        .findFirst()
+                        .orElse(null);
+                if (required == null) {
+                    return null;
+                }
+                tokens.add(required.attribute().name());
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * Raises an issue on the start element for each rule it matches.
+     */
+    public void match(TagNode node, HtmlSourceCode sourceCode) {
+        IndexedElement element = IndexedElement.of(node);
+        Symbol name = element.name();
+        if (name != null && name.id() < elementRules.length && elementRules[name.id()] != null) {
+            match(elementRules[name.id()], element, sourceCode);
+        }
+        match(anyElementRules, element, sourceCode);
+    }
+
+    private static void match(CompiledRule[] rules, IndexedElement element, HtmlSourceCode sourceCode) {
+        for (CompiledRule rule : rules) {
+            if (rule.rule.matches(element)) {
+                TagNode node = element.node();
+                sourceCode.addIssue(new PreciseHtmlIssue(rule.ruleKey, node.getStartLinePosition(), rule.rule.message(node),
+                        node.getStartColumnPosition(), node.getEndLinePosition(), node.getEndColumnPosition()));
+            }
+        }
+    }
+
+    private static final class CompiledRule {
+
+        private final RuleKey ruleKey;
+
+        private final DeclarativeRule rule;
+
+        private CompiledRule(RuleKey ruleKey, DeclarativeRule rule) {
+            this.ruleKey = ruleKey;
+            this.rule = rule;
+        }
+
+    }
+
+}
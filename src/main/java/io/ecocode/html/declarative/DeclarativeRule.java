@@ -0,0 +1,198 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.declarative;
+
+import io.ecocode.html.visitor.IndexedElement;
+import io.ecocode.html.visitor.Symbol;
+import io.ecocode.html.visitor.Symbols;
+import org.sonar.plugins.html.node.TagNode;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Rule described by data rather than by a check: an issue is raised on the elements having one of the names of the rule,
+ * or on any element when the rule has no name, whose attributes satisfy all the conditions of the rule.
+ * <p>
+ * The message may contain {@code {element}}, replaced by the lower case name of the element.
+ */
+public final class DeclarativeRule {
+
+    static final String ELEMENT_PLACEHOLDER = "{element}";
+
+    private final String key;
+
+    private final String message;
+
+    private final List<Symbol> elements;
+
+    private final List<Condition> conditions;
+
+    public DeclarativeRule(String key, String message, List<String> elements, List<Condition> conditions) {
+        this.key = key;
+        this.message = message;
+        List<Symbol> symbols = new ArrayList<>(elements.size());
+        for (String element : elements) {
+            symbols.add(Symbols.intern(element));
+        }
+        this.elements = Collections.unmodifiableList(symbols);
+        this.conditions = List.copyOf(conditions);
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public String message() {
+        return message;
+    }
+
+    /**
+     * @return the names of the elements the rule applies to, or an empty list when it applies to all elements
+     */
+    public List<Symbol> elements() {
+        return elements;
+    }
+
+    public List<Condition> conditions() {
+        return conditions;
+    }
+
+    boolean matches(IndexedElement element) {
+        for (Condition condition : conditions) {
+            if (!condition.test(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String message(TagNode node) {
+        if (!message.contains(ELEMENT_PLACEHOLDER)) {
+            return message;
+        }
+        return message.replace(ELEMENT_PLACEHOLDER, node.getNodeName().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return the rule in the form it is described, used to detect changes of the rule between two analyses
+     */
+    @Override
+    public String toString() {
+        return key + elements + conditions + ":" + message;
+    }
+
+    /**
+     * Condition on an attribute of an element. Attribute names and values are compared ignoring case,
+     * values being trimmed, like browsers do for the enumerated attributes.
+     */
+    public static final class Condition {
+
+        public enum Kind {
+            /**
+             * The attribute is set, whatever its value.
+             */
+            PRESENT,
+            ABSENT,
+            /**
+             * The attribute is set to the value.
+             */
+            EQUALS,
+            /**
+             * The attribute is not set, or is set to another value.
+             */
+            NOT_EQUALS
+        }
+
+        private final Symbol attribute;
+
+        private final Kind kind;
+
+        @Nullable
+        private final String value;
+
+        private Condition(String attribute, Kind kind, @Nullable String value) {
+            this.attribute = Symbols.intern(attribute);
+            this.kind = kind;
+            this.value = value;
+        }
+
+        public static Condition present(String attribute) {
+            return new Condition(attribute, Kind.PRESENT, null);
+        }
+
+        public static Condition absent(String attribute) {
+            return new Condition(attribute, Kind.ABSENT, null);
+        }
+
+        public static Condition equalTo(String attribute, String value) {
+            return new Condition(attribute, Kind.EQUALS, Objects.requireNonNull(value).trim());
+        }
+
+        public static Condition notEqualTo(String attribute, String value) {
+            return new Condition(attribute, Kind.NOT_EQUALS, Objects.requireNonNull(value).trim());
+        }
+
+        public Symbol attribute() {
+            return attribute;
+        }
+
+        public Kind kind() {
+            return kind;
+        }
+
+        /**
+         * @return true when the condition can only hold on elements having the attribute
+         */
+        public boolean requiresAttribute() {
+            return kind == Kind.PRESENT || kind == Kind.EQUALS;
+        }
+
+        boolean test(IndexedElement element) {
+            boolean present = element.hasAttribute(attribute);
+            switch (kind) {
+                case PRESENT:
+                    return present;
+                case ABSENT:
+                    return !present;
+                case EQUALS:
+                    return present && hasValue(element.node());
+                case NOT_EQUALS:
+                    return !present || !hasValue(element.node());
+                default:
+                    throw new IllegalStateException("Unknown condition " + kind);
+            }
+        }
+
+        private boolean hasValue(TagNode node) {
+            String actual = node.getAttribute(attribute.name());
+            return actual != null && actual.trim().equalsIgnoreCase(value);
+        }
+
+        @Override
+        public String toString() {
+            return attribute + " " + kind + (value == null ? "" : " " + value);
+        }
+
+    }
+
+}
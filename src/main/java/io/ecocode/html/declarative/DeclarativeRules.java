@@ -0,0 +1,192 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.declarative;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the catalog of the {@link DeclarativeRule declarative rules}, stored next to the metadata of the rules:
+ * <pre>
+ * [
+ *   {
+ *     "key": "EC8999",
+ *     "message": "Avoid preloading the whole media of the {element} element",
+ *     "elements": ["audio", "video"],
+ *     "attributes": [
+ *       {"name": "preload", "value": "auto"}
+ *     ]
+ *   }
+ * ]
+ * </pre>
+ * Each condition on an attribute has exactly one of {@code "present": true|false}, {@code "value"} or {@code "notValue"}.
+ * Like the checks, each rule also needs its {@code <key>.json} and {@code <key>.html} metadata.
+ */
+public final class DeclarativeRules {
+
+    public static final String CATALOG_LOCATION = "/io/ecocode/rules/html/declarative-rules.json";
+
+    private DeclarativeRules() {
+    }
+
+    /**
+     * @return the rules of the catalog of the plugin
+     */
+    public static List<DeclarativeRule> load() {
+        InputStream in = DeclarativeRules.class.getResourceAsStream(CATALOG_LOCATION);
+        if (in == null) {
+            return List.of();
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + CATALOG_LOCATION, e);
+        }
+    }
+
+    public static List<String> keys(List<DeclarativeRule> rules) {
+        List<String> keys = new ArrayList<>(rules.size());
+        for (DeclarativeRule rule : rules) {
+            keys.add(rule.key());
+        }
+        return keys;
+    }
+
+    public static List<DeclarativeRule> parse(Reader reader) throws IOException {
+        JsonElement json;
+        try {
+            json = JsonParser.parseReader(reader);
+        } catch (JsonIOException e) {
+            throw new IOException(e.getMessage(), e.getCause());
+        } catch (JsonParseException e) {
+            throw new IllegalStateException("Invalid declarative rules: " + e.getMessage(), e);
+        }
+        if (!json.isJsonArray()) {
+            throw new IllegalStateException("Declarative rules must be an array of rules");
+        }
+
+        List<DeclarativeRule> rules = new ArrayList<>();
+        Set<String> keys = new HashSet<>();
+        for (JsonElement item : json.getAsJsonArray()) {
+            DeclarativeRule rule = rule(object(item, "rule"));
+            if (!keys.add(rule.key())) {
+                throw new IllegalStateException("Declarative rule " + rule.key() + " is declared several times");
+            }
+            rules.add(rule);
+        }
+        return rules;
+    }
+
+    private static DeclarativeRule rule(JsonObject json) {
+        String key = string(json, "key", "rule");
+        String message = string(json, "message", key);
+
+        List<String> elements = new ArrayList<>();
+        for (JsonElement element : array(json, "elements", key)) {
+            if (!isString(element) || element.getAsString().isBlank()) {
+                throw new IllegalStateException("Declarative rule " + key + " has an invalid element name: " + element);
+            }
+            elements.add(element.getAsString());
+        }
+
+        List<DeclarativeRule.Condition> conditions = new ArrayList<>();
+        for (JsonElement attribute : array(json, "attributes", key)) {
+            conditions.add(condition(object(attribute, key), key));
+        }
+
+        return new DeclarativeRule(key, message, elements, conditions);
+    }
+
+    private static DeclarativeRule.Condition condition(JsonObject json, String key) {
+        String name = string(json, "name", key);
+        JsonElement present = field(json, "present");
+        JsonElement value = field(json, "value");
+        JsonElement notValue = field(json, "notValue");
+
+        int kinds = (present == null ? 0 : 1) + (value == null ? 0 : 1) + (notValue == null ? 0 : 1);
+        if (kinds != 1) {
+            throw new IllegalStateException("Condition on attribute " + name + " of declarative rule " + key
+                    + " must have exactly one of present, value or notValue");
+        }
+        if (present != null && present.isJsonPrimitive() && present.getAsJsonPrimitive().isBoolean()) {
+            return present.getAsBoolean() ? DeclarativeRule.Condition.present(name) : DeclarativeRule.Condition.absent(name);
+        }
+        if (isString(value)) {
+            return DeclarativeRule.Condition.equalTo(name, value.getAsString());
+        }
+        if (isString(notValue)) {
+            return DeclarativeRule.Condition.notEqualTo(name, notValue.getAsString());
+        }
+        throw new IllegalStateException("Condition on attribute " + name + " of declarative rule " + key + " has a value of the wrong type");
+    }
+
+    private static JsonObject object(JsonElement json, String context) {
+        if (!json.isJsonObject()) {
+            throw new IllegalStateException("Expected an object in declarative rule " + context + " but got: " + json);
+        }
+        return json.getAsJsonObject();
+    }
+
+    private static String string(JsonObject json, String field, String context) {
+        JsonElement value = json.get(field);
+        if (!isString(value) || value.getAsString().isBlank()) {
+            throw new IllegalStateException("Declarative rule " + context + " has no " + field);
+        }
+        return value.getAsString();
+    }
+
+    private static JsonArray array(JsonObject json, String field, String context) {
+        JsonElement value = field(json, field);
+        if (value == null) {
+            return new JsonArray();
+        }
+        if (!value.isJsonArray()) {
+            throw new IllegalStateException("Field " + field + " of declarative rule " + context + " must be an array");
+        }
+        return value.getAsJsonArray();
+    }
+
+    /**
+     * @return the value of the field, {@code null} when it is missing or null
+     */
+    @CheckForNull
+    private static JsonElement field(JsonObject json, String field) {
+        JsonElement value = json.get(field);
+        return value == null || value.isJsonNull() ? null : value;
+    }
+
+    private static boolean isString(@CheckForNull JsonElement json) {
+        return json != null && json.isJsonPrimitive() && json.getAsJsonPrimitive().isString();
+    }
+
+}
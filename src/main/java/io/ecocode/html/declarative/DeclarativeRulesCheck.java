@@ -0,0 +1,53 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.declarative;
+
+import io.ecocode.html.prefilter.TriggerTokenSource;
+import org.sonar.plugins.html.checks.AbstractPageCheck;
+import org.sonar.plugins.html.node.TagNode;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Single visitor checking all the active declarative rules, so that activating more of them does not add visitors:
+ * each element is matched once by the {@link DeclarativeMatcher}, which raises issues with the key of each matching rule.
+ * <p>
+ * Its own rule key only names the visitor in profiling reports and Java Flight Recorder events.
+ */
+public class DeclarativeRulesCheck extends AbstractPageCheck implements TriggerTokenSource {
+
+    public static final String KEY = "declarative-rules";
+
+    private final DeclarativeMatcher matcher;
+
+    public DeclarativeRulesCheck(DeclarativeMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    @Override
+    public void startElement(TagNode node) {
+        matcher.match(node, getHtmlSourceCode());
+    }
+
+    @CheckForNull
+    @Override
+    public String[] triggerTokens() {
+        return matcher.triggerTokens();
+    }
+
+}
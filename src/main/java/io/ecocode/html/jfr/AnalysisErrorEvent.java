@@ -0,0 +1,51 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * File whose analysis failed or was abandoned after exceeding its time budget.
+ */
+@Name(AnalysisErrorEvent.NAME)
+@Label("Analysis Error")
+@Description("HTML file whose analysis failed or exceeded its time budget")
+@Category({"ecoCode", "HTML"})
+@StackTrace(false)
+public class AnalysisErrorEvent extends Event {
+
+    public static final String NAME = "io.ecocode.html.AnalysisError";
+
+    @Label("File")
+    public String path;
+
+    @Label("Error")
+    public Class<?> error;
+
+    @Label("Message")
+    public String message;
+
+    @Label("Timeout")
+    public boolean timeout;
+
+}
@@ -0,0 +1,58 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Visit of a file by a check, spanning the visit of the whole file by all the checks: the time spent in the check itself
+ * is {@link #visitTime}. Checks are only timed while this event is recorded.
+ */
+@Name(CheckVisitEvent.NAME)
+@Label("Check Visit")
+@Description("Visit of an HTML file by a check, the time spent in the check being measured while the event is recorded")
+@Category({"ecoCode", "HTML"})
+@StackTrace(false)
+public class CheckVisitEvent extends Event {
+
+    public static final String NAME = "io.ecocode.html.CheckVisit";
+
+    @Label("File")
+    public String path;
+
+    @Label("Rule")
+    public String rule;
+
+    @Label("Check")
+    public Class<?> check;
+
+    @Label("Visit Time")
+    @Timespan
+    public long visitTime;
+
+    @Label("Notifications")
+    @Description("Number of times the check was notified of the document or of one of its nodes")
+    public long notifications;
+
+}
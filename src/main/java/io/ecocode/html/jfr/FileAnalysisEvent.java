@@ -0,0 +1,61 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Analysis of a file by {@link io.ecocode.html.HtmlFileAnalyzer}, from the reading of its content to the visit of its nodes.
+ */
+@Name(FileAnalysisEvent.NAME)
+@Label("File Analysis")
+@Description("Analysis of an HTML file, from the reading of its content to the visit of its nodes")
+@Category({"ecoCode", "HTML"})
+@StackTrace(false)
+public class FileAnalysisEvent extends Event {
+
+    public static final String NAME = "io.ecocode.html.FileAnalysis";
+
+    @Label("File")
+    public String path;
+
+    @Label("Language")
+    public String language;
+
+    @Label("Size")
+    @DataAmount
+    public long size;
+
+    @Label("Lexer")
+    @Description("Lexer which parsed the file, empty when the file was not lexed")
+    public String lexer;
+
+    @Label("Action")
+    @Description("What was done with the file: analyzed, analyzed by chunks, read from the cache, filtered or skipped")
+    public String action;
+
+    @Label("Issues")
+    public int issues;
+
+}
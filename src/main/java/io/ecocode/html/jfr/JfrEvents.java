@@ -0,0 +1,68 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.jfr;
+
+import jdk.jfr.EventType;
+
+/**
+ * Tells whether the events of the plugin are recorded, so that they are only created while a recording enables them:
+ * no event is allocated otherwise, and the event classes are not even loaded when the {@code jdk.jfr} module is absent
+ * from the runtime, recording then being a no-op.
+ */
+public final class JfrEvents {
+
+    private static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    private JfrEvents() {
+    }
+
+    public static boolean isFileAnalysisEnabled() {
+        return AVAILABLE && EventTypes.FILE_ANALYSIS.isEnabled();
+    }
+
+    public static boolean isCheckVisitEnabled() {
+        return AVAILABLE && EventTypes.CHECK_VISIT.isEnabled();
+    }
+
+    public static boolean isSaveMetricsEnabled() {
+        return AVAILABLE && EventTypes.SAVE_METRICS.isEnabled();
+    }
+
+    public static boolean isAnalysisErrorEnabled() {
+        return AVAILABLE && EventTypes.ANALYSIS_ERROR.isEnabled();
+    }
+
+    /**
+     * Only initialized once the {@code jdk.jfr} module is known to be present.
+     */
+    private static final class EventTypes {
+
+        static final EventType FILE_ANALYSIS = EventType.getEventType(FileAnalysisEvent.class);
+
+        static final EventType CHECK_VISIT = EventType.getEventType(CheckVisitEvent.class);
+
+        static final EventType SAVE_METRICS = EventType.getEventType(SaveMetricsEvent.class);
+
+        static final EventType ANALYSIS_ERROR = EventType.getEventType(AnalysisErrorEvent.class);
+
+        private EventTypes() {
+        }
+
+    }
+
+}
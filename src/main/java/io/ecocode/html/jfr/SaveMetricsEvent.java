@@ -0,0 +1,52 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Measures and issues of a file saved by {@link io.ecocode.html.HtmlMetricsSaver}.
+ */
+@Name(SaveMetricsEvent.NAME)
+@Label("Save Metrics")
+@Description("Measures and issues of an HTML file saved on the sensor context")
+@Category({"ecoCode", "HTML"})
+@StackTrace(false)
+public class SaveMetricsEvent extends Event {
+
+    public static final String NAME = "io.ecocode.html.SaveMetrics";
+
+    @Label("File")
+    public String path;
+
+    @Label("Measures")
+    public int measures;
+
+    @Label("Raised Issues")
+    public int raisedIssues;
+
+    @Label("Saved Issues")
+    @Description("Issues saved once duplicates are removed and the maximum number of issues per rule is applied")
+    public int savedIssues;
+
+}
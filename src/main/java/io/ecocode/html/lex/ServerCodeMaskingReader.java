@@ -0,0 +1,289 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.lex;
+
+import javax.annotation.Nonnull;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Replaces server side code inside tags by spaces while it is read, so that the lexer only walks the markup of the tags:
+ * code in attribute values or between attributes, such as {@code <div class="<?= $a > 1 ? 'a' : 'b' ?>">}, no longer
+ * ends tags early or produces nodes waking up the checks.
+ * <p>
+ * Code between tags is left as is, so that the lexer still emits its expression and directive nodes, and the characters
+ * of that code never start a tag. Delimiters are masked along with the code, while line breaks are kept so that nodes
+ * keep their line and column.
+ */
+public class ServerCodeMaskingReader extends FilterReader {
+
+    /**
+     * Number of characters which must be available after a position to decide whether server side code starts or ends there.
+     */
+    private static final int LOOKAHEAD = 5;
+
+    public static final int BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * Server side languages embedded in pages.
+     */
+    public enum Syntax {
+        /**
+         * {@code <?php ... ?>}, {@code <?= ... ?>} and short tags {@code <? ... ?>}, XML declarations excepted.
+         */
+        PHP,
+        /**
+         * {@code <% ... %>} scriptlets, expressions, declarations and directives, and {@code <%-- ... --%>} comments.
+         */
+        JSP
+    }
+
+    private final Syntax syntax;
+
+    private final char[] buffer;
+
+    private final char[] single = new char[1];
+
+    /**
+     * Characters read but not masked yet are between {@link #start} and {@link #limit}.
+     */
+    private int start;
+
+    private int limit;
+
+    /**
+     * Number of characters after {@link #start} which were already masked.
+     */
+    private int maskedLength;
+
+    private boolean endOfStream;
+
+    /**
+     * Delimiter ending the server side code being read, or null outside of server side code.
+     */
+    private String end;
+
+    /**
+     * Whether the server side code being read is inside a tag, and then masked.
+     */
+    private boolean masking;
+
+    private boolean inTag;
+
+    /**
+     * Quote of the attribute value being read, or 0 outside of quoted attribute values.
+     */
+    private char quote;
+
+    public ServerCodeMaskingReader(Reader in, Syntax syntax) {
+        this(in, syntax, new char[BUFFER_SIZE]);
+    }
+
+    /**
+     * @param buffer buffer of at least {@value #BUFFER_SIZE} characters, which may be reused once this reader is no longer read
+     */
+    public ServerCodeMaskingReader(Reader in, Syntax syntax, char[] buffer) {
+        super(in);
+        if (buffer.length < BUFFER_SIZE) {
+            throw new IllegalArgumentException("Buffer of " + buffer.length + " characters is smaller than " + BUFFER_SIZE);
+        }
+        this.syntax = syntax;
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == -1 ? -1 : single[0];
+    }
+
+    @Override
+    public int read(@Nonnull char[] destination, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        int masked = mask();
+        while (masked == 0 && !endOfStream) {
+            fill();
+            masked = mask();
+        }
+        if (masked == 0) {
+            return -1;
+        }
+
+        int count = Math.min(length, masked);
+        System.arraycopy(buffer, start, destination, offset, count);
+        start += count;
+        maskedLength -= count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        char[] skipped = new char[(int) Math.min(n, 512)];
+        long remaining = n;
+        while (remaining > 0) {
+            int read = read(skipped, 0, (int) Math.min(remaining, skipped.length));
+            if (read == -1) {
+                break;
+            }
+            remaining -= read;
+        }
+        return n - remaining;
+    }
+
+    @Override
+    public boolean ready() {
+        return false;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Masks the available characters which can be decided on.
+     *
+     * @return the number of masked characters available from {@link #start}
+     */
+    private int mask() {
+        int decidable = endOfStream ? limit : limit - LOOKAHEAD;
+        int i = start + maskedLength;
+        while (i < decidable) {
+            if (end != null) {
+                if (matches(i, end)) {
+                    i = skipCode(i, end.length());
+                    end = null;
+                } else {
+                    i = skipCode(i, 1);
+                }
+                continue;
+            }
+
+            String codeStart = codeStart(i);
+            if (codeStart != null) {
+                end = codeStart.startsWith("<%--") ? "--%>" : syntax == Syntax.JSP ? "%>" : "?>";
+                masking = inTag;
+                i = skipCode(i, codeStart.length());
+                continue;
+            }
+
+            char c = buffer[i];
+            if (!inTag) {
+                inTag = c == '<' && startsTag(i + 1);
+            } else if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                inTag = false;
+            }
+            i++;
+        }
+        maskedLength = i - start;
+        return maskedLength;
+    }
+
+    /**
+     * @return whether the characters from the given position start the name of a tag, an end tag included
+     */
+    private boolean startsTag(int i) {
+        int name = i < limit && buffer[i] == '/' ? i + 1 : i;
+        return name < limit && Character.isLetter(buffer[name]);
+    }
+
+    /**
+     * @return the position following the server side code read, which is blanked when inside a tag
+     */
+    private int skipCode(int i, int count) {
+        return masking ? blank(i, count) : Math.min(i + count, limit);
+    }
+
+    private String codeStart(int i) {
+        if (buffer[i] != '<' || i + 1 >= limit) {
+            return null;
+        }
+        if (syntax == Syntax.JSP) {
+            if (buffer[i + 1] != '%') {
+                return null;
+            }
+            return matches(i, "<%--") ? "<%--" : "<%";
+        }
+        if (buffer[i + 1] != '?') {
+            return null;
+        }
+        return matchesIgnoreCase(i, "<?xml") ? null : "<?";
+    }
+
+    /**
+     * @return the position following the blanked characters, which are kept when they are line breaks
+     */
+    private int blank(int i, int count) {
+        int blankEnd = Math.min(i + count, limit);
+        for (int j = i; j < blankEnd; j++) {
+            if (buffer[j] != '\n' && buffer[j] != '\r') {
+                buffer[j] = ' ';
+            }
+        }
+        return blankEnd;
+    }
+
+    private boolean matches(int i, String value) {
+        if (i + value.length() > limit) {
+            return false;
+        }
+        for (int j = 0; j < value.length(); j++) {
+            if (buffer[i + j] != value.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matchesIgnoreCase(int i, String value) {
+        if (i + value.length() > limit) {
+            return false;
+        }
+        for (int j = 0; j < value.length(); j++) {
+            if (Character.toLowerCase(buffer[i + j]) != value.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads more characters, after moving the pending ones to the beginning of the buffer.
+     */
+    private void fill() throws IOException {
+        System.arraycopy(buffer, start, buffer, 0, limit - start);
+        limit -= start;
+        start = 0;
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read == -1) {
+            endOfStream = true;
+        } else {
+            limit += read;
+        }
+    }
+
+}
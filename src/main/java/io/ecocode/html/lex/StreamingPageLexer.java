@@ -0,0 +1,358 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.lex;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.html.lex.PageLexer;
+import org.sonar.plugins.html.node.Node;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Lexes a document by chunks, so that only a bounded part of it is held in memory at once.
+ * <p>
+ * The document is cut right before a tag when the current chunk is large enough, but never inside a tag, a comment,
+ * a CDATA section, server side code, a template expression or the content of a raw text element (script, style, textarea),
+ * unless the chunk grows beyond a maximum size, {@value #MAX_CHUNK_FACTOR} times the chunk size by default: it is then cut where it stands,
+ * so that memory stays bounded at the cost of lexing the markup around the cut incorrectly.
+ * Each chunk is lexed by the given {@link PageLexer}, then its nodes are moved to their position in the whole document
+ * and passed to the consumer in document order.
+ * <p>
+ * Since chunks are lexed separately, elements opened in a chunk and closed in another one are not linked together.
+ */
+public class StreamingPageLexer {
+
+    private static final Logger LOG = Loggers.get(StreamingPageLexer.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Chunks are cut wherever they are once they reach this many times the chunk size, by default.
+     */
+    static final int MAX_CHUNK_FACTOR = 16;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * Number of characters which must be available after a position to decide what starts there.
+     */
+    private static final int LOOKAHEAD = 12;
+
+    private static final String[] RAW_TEXT_ELEMENTS = {"script", "style", "textarea"};
+
+    private final PageLexer lexer;
+
+    private final int chunkSize;
+
+    private final int maxChunkSize;
+
+    public StreamingPageLexer(PageLexer lexer) {
+        this(lexer, DEFAULT_CHUNK_SIZE);
+    }
+
+    public StreamingPageLexer(PageLexer lexer, int chunkSize) {
+        this(lexer, chunkSize, chunkSize * MAX_CHUNK_FACTOR);
+    }
+
+    /**
+     * @param maxChunkSize size from which a chunk is cut even inside markup
+     */
+    public StreamingPageLexer(PageLexer lexer, int chunkSize, int maxChunkSize) {
+        this.lexer = lexer;
+        this.chunkSize = chunkSize;
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    public void parse(Reader reader, Consumer<Node> consumer) throws IOException {
+        parse(reader, false, consumer);
+    }
+
+    /**
+     * @param templateExpressions whether the document is written in a template syntax whose {@code {{ }}} expressions
+     *                            must not be cut, like Twig or Handlebars
+     */
+    public void parse(Reader reader, boolean templateExpressions, Consumer<Node> consumer) throws IOException {
+        ChunkBoundaries boundaries = new ChunkBoundaries(chunkSize, maxChunkSize, templateExpressions);
+        StringBuilder pending = new StringBuilder();
+        char[] buffer = new char[BUFFER_SIZE];
+        // position in the document of the first pending character
+        int line = 1;
+        int column = 0;
+
+        boolean endOfStream = false;
+        while (!endOfStream) {
+            int read = reader.read(buffer);
+            if (read == -1) {
+                endOfStream = true;
+            } else {
+                pending.append(buffer, 0, read);
+            }
+
+            int cut = boundaries.next(pending, endOfStream);
+            while (cut > 0 || (endOfStream && pending.length() > 0)) {
+                int end = cut > 0 ? cut : pending.length();
+                if (boundaries.forced()) {
+                    LOG.warn("No chunk boundary found in the {} characters from line {}, cutting them inside markup which may be lexed incorrectly",
+                            end, line);
+                }
+                String chunk = pending.substring(0, end);
+                pending.delete(0, end);
+                boundaries.consumed(end);
+
+                for (Node node : lexer.parse(new StringReader(chunk))) {
+                    moveTo(node, line, column);
+                    consumer.accept(node);
+                }
+
+                for (int i = 0; i < chunk.length(); i++) {
+                    char c = chunk.charAt(i);
+                    boolean crlf = c == '\r' && (i + 1 < chunk.length() ? chunk.charAt(i + 1) : peek(pending)) == '\n';
+                    if (c == '\n' || (c == '\r' && !crlf)) {
+                        line++;
+                        column = 0;
+                    } else {
+                        column++;
+                    }
+                }
+
+                cut = boundaries.next(pending, endOfStream);
+            }
+        }
+    }
+
+    private static char peek(CharSequence pending) {
+        return pending.length() > 0 ? pending.charAt(0) : 0;
+    }
+
+    /**
+     * Moves a node lexed from a chunk starting at the given line and column of the document.
+     * Lines start at 1 and columns at 0, as for the nodes created by {@link PageLexer}.
+     */
+    static void moveTo(Node node, int line, int column) {
+        if (node.getStartLinePosition() == 1) {
+            node.setStartColumnPosition(node.getStartColumnPosition() + column);
+        }
+        if (node.getEndLinePosition() == 1) {
+            node.setEndColumnPosition(node.getEndColumnPosition() + column);
+        }
+        node.setStartLinePosition(node.getStartLinePosition() + line - 1);
+        node.setEndLinePosition(node.getEndLinePosition() + line - 1);
+    }
+
+    /**
+     * Finds the positions where a document can be cut, following the few lexical states that matter for that.
+     */
+    static class ChunkBoundaries {
+
+        private enum State {
+            TEXT, TAG, DELIMITED, RAW_TEXT
+        }
+
+        private final int chunkSize;
+
+        private final int maxChunkSize;
+
+        private final boolean templateExpressions;
+
+        private State state = State.TEXT;
+
+        private int position;
+
+        private String delimiter;
+
+        private String rawTextElement;
+
+        private char quote;
+
+        private boolean attributeValue;
+
+        private boolean forced;
+
+        ChunkBoundaries(int chunkSize) {
+            this(chunkSize, Integer.MAX_VALUE, false);
+        }
+
+        ChunkBoundaries(int chunkSize, int maxChunkSize, boolean templateExpressions) {
+            this.chunkSize = chunkSize;
+            this.maxChunkSize = maxChunkSize;
+            this.templateExpressions = templateExpressions;
+        }
+
+        /**
+         * @return the position before which the text can be cut, or -1 when more text is needed
+         */
+        int next(CharSequence text, boolean endOfStream) {
+            forced = false;
+            while (position < text.length()) {
+                if (!endOfStream && text.length() - position < LOOKAHEAD) {
+                    return -1;
+                }
+                if (position >= maxChunkSize && !Character.isLowSurrogate(text.charAt(position))) {
+                    forced = true;
+                    return position;
+                }
+                switch (state) {
+                    case TEXT:
+                        if (startsMarkup(text, position)) {
+                            if (position >= chunkSize) {
+                                return position;
+                            }
+                            enterMarkup(text);
+                        } else if (templateExpressions && startsWith(text, position, "{{")) {
+                            enterDelimited("}}", 2);
+                        } else {
+                            position++;
+                        }
+                        break;
+                    case TAG:
+                        tag(text.charAt(position));
+                        break;
+                    case DELIMITED:
+                        if (startsWith(text, position, delimiter)) {
+                            position += delimiter.length();
+                            state = State.TEXT;
+                        } else {
+                            position++;
+                        }
+                        break;
+                    case RAW_TEXT:
+                        if (startsEndTag(text, position, rawTextElement)) {
+                            position += 2 + rawTextElement.length();
+                            rawTextElement = null;
+                            state = State.TAG;
+                        } else {
+                            position++;
+                        }
+                        break;
+                    default:
+                        throw new IllegalStateException("Unexpected state " + state);
+                }
+            }
+            return -1;
+        }
+
+        void consumed(int length) {
+            position -= length;
+        }
+
+        /**
+         * @return whether the last position returned by {@link #next(CharSequence, boolean)} is inside markup
+         */
+        boolean forced() {
+            return forced;
+        }
+
+        /**
+         * @return whether the end tag of the element starts at the index, its name not being the start of a longer one
+         */
+        private static boolean startsEndTag(CharSequence text, int index, String name) {
+            int nameEnd = index + 2 + name.length();
+            return startsWith(text, index, "</" + name) && (nameEnd >= text.length() || !isNameChar(text.charAt(nameEnd)));
+        }
+
+        private static boolean startsMarkup(CharSequence text, int index) {
+            if (text.charAt(index) != '<' || index + 1 >= text.length()) {
+                return false;
+            }
+            char next = text.charAt(index + 1);
+            return Character.isLetter(next) || next == '/' || next == '!' || next == '%' || next == '?';
+        }
+
+        private void enterMarkup(CharSequence text) {
+            if (startsWith(text, position, "<!--")) {
+                enterDelimited("-->", 4);
+            } else if (startsWith(text, position, "<![CDATA[")) {
+                enterDelimited("]]>", 9);
+            } else if (startsWith(text, position, "<%")) {
+                enterDelimited("%>", 2);
+            } else if (startsWith(text, position, "<?")) {
+                enterDelimited("?>", 2);
+            } else {
+                position++;
+                boolean endTag = text.charAt(position) == '/';
+                int nameStart = endTag ? position + 1 : position;
+                int nameEnd = nameStart;
+                while (nameEnd < text.length() && isNameChar(text.charAt(nameEnd))) {
+                    nameEnd++;
+                }
+                String name = text.subSequence(nameStart, nameEnd).toString().toLowerCase(Locale.ENGLISH);
+                rawTextElement = !endTag && isRawTextElement(name) ? name : null;
+                position = nameEnd;
+                quote = 0;
+                attributeValue = false;
+                state = State.TAG;
+            }
+        }
+
+        private void enterDelimited(String end, int length) {
+            delimiter = end;
+            position += length;
+            state = State.DELIMITED;
+        }
+
+        private void tag(char c) {
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '>') {
+                state = rawTextElement != null ? State.RAW_TEXT : State.TEXT;
+            } else if (c == '=') {
+                attributeValue = true;
+            } else if (attributeValue && (c == '"' || c == '\'')) {
+                quote = c;
+                attributeValue = false;
+            } else if (!Character.isWhitespace(c)) {
+                attributeValue = false;
+            }
+            position++;
+        }
+
+        private static boolean isNameChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '-' || c == ':' || c == '_' || c == '.';
+        }
+
+        private static boolean isRawTextElement(String name) {
+            for (String element : RAW_TEXT_ELEMENTS) {
+                if (element.equals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean startsWith(CharSequence text, int index, String prefix) {
+            if (index + prefix.length() > text.length()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (Character.toLowerCase(text.charAt(index + i)) != Character.toLowerCase(prefix.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
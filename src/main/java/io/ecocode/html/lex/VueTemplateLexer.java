@@ -0,0 +1,247 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.lex;
+
+import io.ecocode.html.prefilter.ContentPreFilter;
+import org.sonar.plugins.html.lex.VueLexer;
+import org.sonar.plugins.html.node.Node;
+
+import javax.annotation.CheckForNull;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Lexes only the template block of a Vue single file component, since the script and style blocks are not visited.
+ * <p>
+ * The block is located on the encoded bytes, skipping comments and the content of the top level script and style blocks,
+ * and matching the nested templates up to the end tag of the block, ignoring the quoted attribute values of the other tags.
+ * Only the bytes of the block are then decoded and lexed by the {@link VueLexer}, and the nodes are moved to their position
+ * in the whole file.
+ */
+public class VueTemplateLexer {
+
+    private static final byte[] TEMPLATE = ascii("template");
+
+    private static final byte[] SCRIPT = ascii("script");
+
+    private static final byte[] STYLE = ascii("style");
+
+    private static final byte[] COMMENT_START = ascii("<!--");
+
+    private static final byte[] COMMENT_END = ascii("-->");
+
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final VueLexer lexer = new VueLexer();
+
+    /**
+     * @return the nodes of the template block, or null when the block cannot be located on the bytes,
+     * in which case the whole file must be lexed
+     */
+    @CheckForNull
+    public List<Node> parse(ByteBuffer content, Charset charset) {
+        if (!ContentPreFilter.isAsciiCompatible(charset)) {
+            return null;
+        }
+
+        ByteBuffer bytes = content.slice();
+        int start = templateStart(bytes);
+        int end = start < 0 ? -1 : templateEnd(bytes, start);
+        if (end < 0) {
+            return null;
+        }
+
+        int line = 1;
+        int lineStart = 0;
+        for (int i = 0; i < start; i++) {
+            byte b = bytes.get(i);
+            if (b == '\n' || (b == '\r' && bytes.get(i + 1) != '\n')) {
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        String linePrefix = decode(bytes, lineStart, start, charset);
+        int column = lineStart == 0 && !linePrefix.isEmpty() && linePrefix.charAt(0) == BYTE_ORDER_MARK
+                ? linePrefix.length() - 1
+                : linePrefix.length();
+
+        List<Node> nodes = lexer.parse(new StringReader(decode(bytes, start, end, charset)));
+        for (Node node : nodes) {
+            StreamingPageLexer.moveTo(node, line, column);
+        }
+        return nodes;
+    }
+
+    /**
+     * @return the offset of the start tag of the top level template block, or -1
+     */
+    private static int templateStart(ByteBuffer bytes) {
+        int i = 0;
+        while (i < bytes.limit()) {
+            if (bytes.get(i) != '<') {
+                i++;
+            } else if (startsWith(bytes, i, COMMENT_START)) {
+                i = skip(bytes, i + COMMENT_START.length, COMMENT_END);
+            } else if (isTag(bytes, i + 1, TEMPLATE)) {
+                return i;
+            } else if (isTag(bytes, i + 1, SCRIPT)) {
+                i = skipRawText(bytes, i, SCRIPT);
+            } else if (isTag(bytes, i + 1, STYLE)) {
+                i = skipRawText(bytes, i, STYLE);
+            } else {
+                i++;
+            }
+            if (i < 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the offset following the end tag of the template block, or -1
+     */
+    private static int templateEnd(ByteBuffer bytes, int start) {
+        int depth = 0;
+        int i = start;
+        while (i >= 0 && i < bytes.limit()) {
+            if (bytes.get(i) != '<') {
+                i++;
+            } else if (startsWith(bytes, i, COMMENT_START)) {
+                i = skip(bytes, i + COMMENT_START.length, COMMENT_END);
+            } else if (isTag(bytes, i + 1, TEMPLATE)) {
+                int tagEnd = tagEnd(bytes, i);
+                if (tagEnd > 0 && bytes.get(tagEnd - 2) != '/') {
+                    depth++;
+                }
+                i = tagEnd;
+            } else if (i + 1 < bytes.limit() && bytes.get(i + 1) == '/' && isTag(bytes, i + 2, TEMPLATE)) {
+                depth--;
+                i = tagEnd(bytes, i);
+                if (depth == 0) {
+                    return i;
+                }
+            } else if (isTagStart(bytes, i + 1)) {
+                // the quoted attribute values of the other tags may contain template tags
+                i = tagEnd(bytes, i);
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the offset following the end tag of the raw text element, or -1
+     */
+    private static int skipRawText(ByteBuffer bytes, int start, byte[] name) {
+        for (int i = tagEnd(bytes, start); i >= 0 && i < bytes.limit(); i++) {
+            if (bytes.get(i) == '<' && i + 1 < bytes.limit() && bytes.get(i + 1) == '/' && isTag(bytes, i + 2, name)) {
+                return tagEnd(bytes, i);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the offset following the tag starting at the given offset, ignoring the '>' in quoted attribute values, or -1
+     */
+    private static int tagEnd(ByteBuffer bytes, int start) {
+        byte quote = 0;
+        for (int i = start + 1; i < bytes.limit(); i++) {
+            byte b = bytes.get(i);
+            if (quote != 0) {
+                quote = b == quote ? 0 : quote;
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the offset following the next occurrence of the delimiter, or -1
+     */
+    private static int skip(ByteBuffer bytes, int start, byte[] delimiter) {
+        for (int i = start; i + delimiter.length <= bytes.limit(); i++) {
+            if (startsWith(bytes, i, delimiter)) {
+                return i + delimiter.length;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return true when the tag name at the given offset is the given lower case name, ignoring case
+     */
+    private static boolean isTag(ByteBuffer bytes, int offset, byte[] name) {
+        if (offset + name.length > bytes.limit()) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if ((bytes.get(offset + i) | 0x20) != name[i]) {
+                return false;
+            }
+        }
+        if (offset + name.length == bytes.limit()) {
+            return true;
+        }
+        byte next = bytes.get(offset + name.length);
+        return next == '>' || next == '/' || next == ' ' || next == '\t' || next == '\n' || next == '\r' || next == '\f';
+    }
+
+    /**
+     * @return true when a start or end tag name begins at the given offset
+     */
+    private static boolean isTagStart(ByteBuffer bytes, int offset) {
+        int nameStart = offset < bytes.limit() && bytes.get(offset) == '/' ? offset + 1 : offset;
+        if (nameStart >= bytes.limit()) {
+            return false;
+        }
+        int b = bytes.get(nameStart) | 0x20;
+        return b >= 'a' && b <= 'z';
+    }
+
+    private static boolean startsWith(ByteBuffer bytes, int offset, byte[] prefix) {
+        if (offset + prefix.length > bytes.limit()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes.get(offset + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String decode(ByteBuffer bytes, int start, int end, Charset charset) {
+        ByteBuffer region = bytes.duplicate();
+        region.position(start).limit(end);
+        return charset.decode(region).toString();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.prefilter;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tells whether a file may raise an issue, from its raw content and the {@link TriggerTokens} of the active checks,
+ * or the tokens of the visitors implementing {@link TriggerTokenSource}.
+ * <p>
+ * A file is only rejected when none of the tokens of any check appears in it. Files whose encoding does not write
+ * ASCII characters as single bytes, like UTF-16, are never rejected, nor are files when one of the checks has no trigger tokens.
+ */
+public final class ContentPreFilter {
+
+    private static final ContentPreFilter ACCEPT_ALL = new ContentPreFilter(null);
+
+    private static final String ASCII_SAMPLE = "<azAZ09-:/!=\"' \t\r\n>";
+
+    @Nullable
+    private final TokenMatcher matcher;
+
+    private ContentPreFilter(@Nullable TokenMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    public static ContentPreFilter acceptAll() {
+        return ACCEPT_ALL;
+    }
+
+    /**
+     * @param checks classes of the active checks
+     */
+    static ContentPreFilter create(Collection<Class<?>> checks) {
+        List<String[]> tokens = new ArrayList<>(checks.size());
+        for (Class<?> check : checks) {
+            tokens.add(tokens(check));
+        }
+        return compile(tokens);
+    }
+
+    /**
+     * @param visitors the active visitors
+     */
+    public static ContentPreFilter forVisitors(Collection<?> visitors) {
+        List<String[]> tokens = new ArrayList<>(visitors.size());
+        for (Object visitor : visitors) {
+            tokens.add(visitor instanceof TriggerTokenSource ? ((TriggerTokenSource) visitor).triggerTokens() : tokens(visitor.getClass()));
+        }
+        return compile(tokens);
+    }
+
+    private static ContentPreFilter compile(List<String[]> checksTokens) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String[] checkTokens : checksTokens) {
+            if (checkTokens == null) {
+                return ACCEPT_ALL;
+            }
+            tokens.addAll(Arrays.asList(checkTokens));
+        }
+        return new ContentPreFilter(TokenMatcher.compile(tokens));
+    }
+
+    @CheckForNull
+    private static String[] tokens(Class<?> check) {
+        TriggerTokens triggerTokens = check.getAnnotation(TriggerTokens.class);
+        return triggerTokens == null || triggerTokens.value().length == 0 ? null : triggerTokens.value();
+    }
+
+    /**
+     * @return false when no active check can raise an issue on the content
+     */
+    public boolean accepts(ByteBuffer content, Charset charset) {
+        return matcher == null || !isAsciiCompatible(charset) || matcher.matches(content);
+    }
+
+    /**
+     * @return true when the charset encodes the ASCII characters of markup as single ASCII bytes,
+     * so that markup can be searched in the encoded content
+     */
+    public static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8)
+                || (charset.canEncode() && Arrays.equals(ASCII_SAMPLE.getBytes(charset), ASCII_SAMPLE.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.prefilter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Locale;
+
+/**
+ * Finds whether any of a set of ASCII tokens appears in raw bytes, ignoring case, with a single pass over the bytes.
+ * <p>
+ * The tokens are compiled into an Aho-Corasick automaton whose transitions are fully computed,
+ * so that each byte costs a single table lookup.
+ */
+public final class TokenMatcher {
+
+    private static final int ALPHABET = 256;
+
+    private final int[][] transitions;
+
+    private final boolean[] accepting;
+
+    private TokenMatcher(int[][] transitions, boolean[] accepting) {
+        this.transitions = transitions;
+        this.accepting = accepting;
+    }
+
+    /**
+     * @throws IllegalArgumentException when a token is empty or not ASCII
+     */
+    public static TokenMatcher compile(Collection<String> tokens) {
+        int maxStates = 1;
+        for (String token : tokens) {
+            if (token.isEmpty() || !StandardCharsets.US_ASCII.newEncoder().canEncode(token)) {
+                throw new IllegalArgumentException("Invalid token \"" + token + "\"");
+            }
+            maxStates += token.length();
+        }
+
+        int[][] transitions = new int[maxStates][];
+        boolean[] accepting = new boolean[maxStates];
+        transitions[0] = new int[ALPHABET];
+        int states = 1;
+
+        // trie of the folded tokens, 0 meaning no transition yet
+        for (String token : tokens) {
+            int state = 0;
+            for (byte b : token.toLowerCase(Locale.ENGLISH).getBytes(StandardCharsets.US_ASCII)) {
+                if (transitions[state][b] == 0) {
+                    transitions[states] = new int[ALPHABET];
+                    transitions[state][b] = states++;
+                }
+                state = transitions[state][b];
+            }
+            accepting[state] = true;
+        }
+
+        // breadth-first completion of the transitions with the ones of the longest proper suffix
+        int[] fallback = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int b = 0; b < ALPHABET; b++) {
+            if (transitions[0][b] != 0) {
+                queue.add(transitions[0][b]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            accepting[state] |= accepting[fallback[state]];
+            for (int b = 0; b < ALPHABET; b++) {
+                int next = transitions[state][b];
+                if (next != 0) {
+                    fallback[next] = transitions[fallback[state]][b];
+                    queue.add(next);
+                } else {
+                    transitions[state][b] = transitions[fallback[state]][b];
+                }
+            }
+        }
+
+        // upper case letters lead to the same states as lower case ones
+        for (int state = 0; state < states; state++) {
+            for (int b = 'A'; b <= 'Z'; b++) {
+                transitions[state][b] = transitions[state][b + ('a' - 'A')];
+            }
+        }
+
+        int[][] compiled = new int[states][];
+        System.arraycopy(transitions, 0, compiled, 0, states);
+        boolean[] compiledAccepting = new boolean[states];
+        System.arraycopy(accepting, 0, compiledAccepting, 0, states);
+        return new TokenMatcher(compiled, compiledAccepting);
+    }
+
+    /**
+     * @return whether one of the tokens appears in the remaining bytes of the buffer, whose position is left unchanged
+     */
+    public boolean matches(ByteBuffer bytes) {
+        int state = 0;
+        if (bytes.hasArray()) {
+            byte[] array = bytes.array();
+            int end = bytes.arrayOffset() + bytes.limit();
+            for (int i = bytes.arrayOffset() + bytes.position(); i < end; i++) {
+                state = transitions[state][array[i] & 0xFF];
+                if (accepting[state]) {
+                    return true;
+                }
+            }
+        } else {
+            for (int i = bytes.position(); i < bytes.limit(); i++) {
+                state = transitions[state][bytes.get(i) & 0xFF];
+                if (accepting[state]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.prefilter;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Implemented by the visitors whose trigger tokens depend on their configuration rather than on their class,
+ * in which case {@link TriggerTokens} is not read.
+ */
+public interface TriggerTokenSource {
+
+    /**
+     * @return the tokens without which the visitor cannot raise an issue, or null when it may raise an issue on any file
+     */
+    @CheckForNull
+    String[] triggerTokens();
+
+}
@@ -0,0 +1,47 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.visitor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Restricts the elements a visitor is notified of by {@link HtmlNodeDispatcher}, to avoid calling every check
+ * for every element of every file. Names are case-insensitive.
+ * <p>
+ * Other kinds of nodes (text, comments, expressions, directives) are not filtered.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ElementSubscription {
+
+    /**
+     * Names of the elements the visitor is notified of, both on start and on end.
+     */
+    String[] tags();
+
+    /**
+     * When not empty, the visitor is notified of the start of a subscribed element only if it has one of these attributes.
+     */
+    String[] attributes() default {};
+
+}
@@ -0,0 +1,302 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.visitor;
+
+import io.ecocode.html.jfr.CheckVisitEvent;
+import io.ecocode.html.jfr.JfrEvents;
+import org.sonar.plugins.html.checks.AbstractPageCheck;
+import org.sonar.plugins.html.node.CommentNode;
+import org.sonar.plugins.html.node.DirectiveNode;
+import org.sonar.plugins.html.node.ExpressionNode;
+import org.sonar.plugins.html.node.Node;
+import org.sonar.plugins.html.node.NodeType;
+import org.sonar.plugins.html.node.TagNode;
+import org.sonar.plugins.html.node.TextNode;
+import org.sonar.plugins.html.visitor.DefaultNodeVisitor;
+import org.sonar.plugins.html.visitor.HtmlSourceCode;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Notifies visitors of the nodes of a document, like {@link org.sonar.plugins.html.visitor.HtmlAstScanner} does,
+ * but node by node so that a document does not need to be fully lexed before being visited.
+ * <p>
+ * Visitors annotated with {@link ElementSubscription} are only notified of the elements they subscribed to:
+ * the visitors of an element are found by the id of its {@link Symbol}, looked up without folding the element name.
+ * <p>
+ * While {@link CheckVisitEvent} is recorded by Java Flight Recorder, the time spent in each visitor is measured
+ * and recorded at the end of each document.
+ */
+public class HtmlNodeDispatcher {
+
+    private static final Subscriber[] NO_SUBSCRIBERS = new Subscriber[0];
+
+    private final List<DefaultNodeVisitor> visitors = new ArrayList<>();
+
+    @Nullable
+    private Subscriber[][] elementSubscribers;
+
+    private Subscriber[] otherElementSubscribers = NO_SUBSCRIBERS;
+
+    /**
+     * Events of the visitors for the current document, or null when they are not recorded.
+     */
+    @Nullable
+    private CheckVisitEvent[] visitEvents;
+
+    public void addVisitor(DefaultNodeVisitor visitor) {
+        visitors.add(visitor);
+        elementSubscribers = null;
+    }
+
+    /**
+     * @return the visitors in the order they were added, the ones wrapped in a {@link TimedVisitor} being unwrapped
+     */
+    public List<DefaultNodeVisitor> visitors() {
+        List<DefaultNodeVisitor> unwrapped = new ArrayList<>(visitors.size());
+        for (DefaultNodeVisitor visitor : visitors) {
+            unwrapped.add(unwrap(visitor));
+        }
+        return unwrapped;
+    }
+
+    /**
+     * @return the time spent in the visitors wrapped in a {@link TimedVisitor} since they were added
+     */
+    public long visitorNanos() {
+        long nanos = 0;
+        for (DefaultNodeVisitor visitor : visitors) {
+            if (visitor instanceof TimedVisitor) {
+                nanos += ((TimedVisitor) visitor).nanos();
+            }
+        }
+        return nanos;
+    }
+
+    public void scan(List<Node> nodes, HtmlSourceCode sourceCode) {
+        startDocument(sourceCode, nodes);
+        for (Node node : nodes) {
+            visit(node);
+        }
+        endDocument();
+    }
+
+    /**
+     * @param nodes all the nodes of the document, or an empty list when the document is streamed
+     */
+    public void startDocument(HtmlSourceCode sourceCode, List<Node> nodes) {
+        visitEvents = startVisitEvents(sourceCode);
+        for (int i = 0; i < visitors.size(); i++) {
+            long start = startTiming();
+            visitors.get(i).startDocument(sourceCode, nodes);
+            stopTiming(i, start);
+        }
+    }
+
+    public void visit(Node node) {
+        if (node.getNodeType() == NodeType.TAG) {
+            visitElement((TagNode) node);
+        } else {
+            for (int i = 0; i < visitors.size(); i++) {
+                long start = startTiming();
+                visit(visitors.get(i), node);
+                stopTiming(i, start);
+            }
+        }
+    }
+
+    public void endDocument() {
+        for (int i = 0; i < visitors.size(); i++) {
+            long start = startTiming();
+            visitors.get(i).endDocument();
+            stopTiming(i, start);
+        }
+        IndexedElement.release();
+        commitVisitEvents();
+    }
+
+    private void visitElement(TagNode element) {
+        if (elementSubscribers == null) {
+            buildSubscriptions();
+        }
+
+        Symbol name = IndexedElement.of(element).name();
+        Subscriber[] subscribers = name == null || name.id() >= elementSubscribers.length || elementSubscribers[name.id()] == null
+                ? otherElementSubscribers
+                : elementSubscribers[name.id()];
+        for (Subscriber subscriber : subscribers) {
+            long start = startTiming();
+            if (element.isEndElement()) {
+                subscriber.visitor.endElement(element);
+            } else if (subscriber.accepts(element)) {
+                subscriber.visitor.startElement(element);
+                if (element.hasEnd()) {
+                    subscriber.visitor.endElement(element);
+                }
+            }
+            stopTiming(subscriber.index, start);
+        }
+    }
+
+    @Nullable
+    private CheckVisitEvent[] startVisitEvents(HtmlSourceCode sourceCode) {
+        if (!JfrEvents.isCheckVisitEnabled() || visitors.isEmpty()) {
+            return null;
+        }
+
+        CheckVisitEvent[] events = new CheckVisitEvent[visitors.size()];
+        String path = sourceCode.inputFile().toString();
+        for (int i = 0; i < events.length; i++) {
+            CheckVisitEvent event = new CheckVisitEvent();
+            DefaultNodeVisitor visitor = unwrap(visitors.get(i));
+            event.path = path;
+            event.check = visitor.getClass();
+            if (visitor instanceof AbstractPageCheck && ((AbstractPageCheck) visitor).getRuleKey() != null) {
+                event.rule = ((AbstractPageCheck) visitor).getRuleKey().toString();
+            }
+            event.begin();
+            events[i] = event;
+        }
+        return events;
+    }
+
+    private long startTiming() {
+        return visitEvents == null ? 0 : System.nanoTime();
+    }
+
+    private void stopTiming(int visitorIndex, long start) {
+        if (visitEvents != null) {
+            CheckVisitEvent event = visitEvents[visitorIndex];
+            event.visitTime += System.nanoTime() - start;
+            event.notifications++;
+        }
+    }
+
+    private void commitVisitEvents() {
+        if (visitEvents == null) {
+            return;
+        }
+        for (CheckVisitEvent event : visitEvents) {
+            event.commit();
+        }
+        visitEvents = null;
+    }
+
+    /**
+     * Builds the visitors of each subscribed element, and of all other elements, keeping the order in which visitors were added.
+     */
+    private void buildSubscriptions() {
+        List<Symbol> subscribedTags = new ArrayList<>();
+        for (DefaultNodeVisitor visitor : visitors) {
+            ElementSubscription subscription = subscription(visitor);
+            if (subscription != null) {
+                for (String tag : subscription.tags()) {
+                    subscribedTags.add(Symbols.intern(tag));
+                }
+            }
+        }
+
+        Subscriber[][] subscribers = new Subscriber[Symbols.size()][];
+        for (Symbol tag : subscribedTags) {
+            subscribers[tag.id()] = subscribers(tag);
+        }
+        elementSubscribers = subscribers;
+        otherElementSubscribers = subscribers(null);
+    }
+
+    private Subscriber[] subscribers(@Nullable Symbol tag) {
+        List<Subscriber> subscribers = new ArrayList<>();
+        for (int i = 0; i < visitors.size(); i++) {
+            DefaultNodeVisitor visitor = visitors.get(i);
+            ElementSubscription subscription = subscription(visitor);
+            if (subscription == null) {
+                subscribers.add(new Subscriber(visitor, i, null));
+            } else if (tag != null && Arrays.stream(subscription.tags()).map(Symbols::intern).anyMatch(tag::equals)) {
+                subscribers.add(new Subscriber(visitor, i, subscription.attributes().length == 0
+                        ? null
+                        : Arrays.stream(subscription.attributes()).map(Symbols::intern).toArray(Symbol[]::new)));
+            }
+        }
+        return subscribers.toArray(NO_SUBSCRIBERS);
+    }
+
+    @Nullable
+    private static ElementSubscription subscription(DefaultNodeVisitor visitor) {
+        return unwrap(visitor).getClass().getAnnotation(ElementSubscription.class);
+    }
+
+    private static DefaultNodeVisitor unwrap(DefaultNodeVisitor visitor) {
+        return visitor instanceof TimedVisitor ? ((TimedVisitor) visitor).delegate() : visitor;
+    }
+
+    private static void visit(DefaultNodeVisitor visitor, Node node) {
+        switch (node.getNodeType()) {
+            case TEXT:
+                visitor.characters((TextNode) node);
+                break;
+            case COMMENT:
+                visitor.comment((CommentNode) node);
+                break;
+            case EXPRESSION:
+                visitor.expression((ExpressionNode) node);
+                break;
+            case DIRECTIVE:
+                visitor.directive((DirectiveNode) node);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static final class Subscriber {
+
+        private final DefaultNodeVisitor visitor;
+
+        /**
+         * Index of the visitor in the visitors of the dispatcher.
+         */
+        private final int index;
+
+        @Nullable
+        private final Symbol[] attributes;
+
+        private Subscriber(DefaultNodeVisitor visitor, int index, @Nullable Symbol[] attributes) {
+            this.visitor = visitor;
+            this.index = index;
+            this.attributes = attributes;
+        }
+
+        private boolean accepts(TagNode element) {
+            if (attributes == null) {
+                return true;
+            }
+            IndexedElement indexedElement = IndexedElement.of(element);
+            for (Symbol attribute : attributes) {
+                if (indexedElement.hasAttribute(attribute)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.visitor;
+
+import org.sonar.plugins.html.node.Attribute;
+import org.sonar.plugins.html.node.TagNode;
+
+import javax.annotation.CheckForNull;
+import java.util.Arrays;
+
+/**
+ * View of an element comparing its name and attribute names with {@link Symbol symbols} rather than strings.
+ * The symbols of the attributes are looked up once per element, on first use, and shared by all the checks visiting the element.
+ * <p>
+ * An instance is reused for the next element visited on the same thread, so it must not be kept after a callback.
+ */
+public final class IndexedElement {
+
+    private static final ThreadLocal<IndexedElement> CURRENT = ThreadLocal.withInitial(IndexedElement::new);
+
+    private TagNode node;
+
+    @CheckForNull
+    private Symbol name;
+
+    private boolean nameIndexed;
+
+    private long[] attributes = new long[1];
+
+    private int indexedSymbols = -1;
+
+    private IndexedElement() {
+    }
+
+    public static IndexedElement of(TagNode node) {
+        IndexedElement element = CURRENT.get();
+        if (element.node != node) {
+            element.node = node;
+            element.nameIndexed = false;
+            element.indexedSymbols = -1;
+        }
+        return element;
+    }
+
+    /**
+     * Drops the reference to the last element visited on this thread, so that its document can be garbage collected.
+     */
+    static void release() {
+        CURRENT.get().node = null;
+    }
+
+    public TagNode node() {
+        return node;
+    }
+
+    /**
+     * @return the symbol of the element name, without the slash of an end element, or null when it was not interned
+     */
+    @CheckForNull
+    public Symbol name() {
+        if (!nameIndexed) {
+            String nodeName = node.getNodeName();
+            name = nodeName == null ? null : Symbols.lookup(nodeName, nodeName.startsWith("/") ? 1 : 0);
+            nameIndexed = true;
+        }
+        return name;
+    }
+
+    public boolean is(Symbol symbol) {
+        return name() == symbol;
+    }
+
+    public boolean hasAttribute(Symbol symbol) {
+        // symbols interned after the attributes were indexed require indexing them again
+        if (symbol.id() >= indexedSymbols) {
+            indexAttributes();
+        }
+        int word = symbol.id() >>> 6;
+        return word < attributes.length && (attributes[word] & (1L << symbol.id())) != 0;
+    }
+
+    private void indexAttributes() {
+        indexedSymbols = Symbols.size();
+        int words = (indexedSymbols + 63) >>> 6;
+        if (attributes.length < words) {
+            attributes = new long[words];
+        } else {
+            Arrays.fill(attributes, 0);
+        }
+
+        for (Attribute attribute : node.getAttributes()) {
+            Symbol symbol = attribute.getName() == null ? null : Symbols.lookup(attribute.getName(), 0);
+            if (symbol != null) {
+                attributes[symbol.id() >>> 6] |= 1L << symbol.id();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.visitor;
+
+/**
+ * Case-folded name of an element or of an attribute, interned by {@link Symbols}:
+ * two symbols are equal only if they are the same instance.
+ */
+public final class Symbol {
+
+    private final int id;
+
+    private final String name;
+
+    Symbol(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    /**
+     * @return a small integer, unique for each symbol and allocated in sequence from 0
+     */
+    public int id() {
+        return id;
+    }
+
+    /**
+     * @return the case-folded name
+     */
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.visitor;
+
+import javax.annotation.CheckForNull;
+import java.util.Arrays;
+
+/**
+ * Table of the element and attribute names the checks look for, folded to lower case.
+ * <p>
+ * Names are interned once, typically in constants of the checks, and the names of the nodes are looked up without
+ * folding them into new strings. Names nobody interned are not added to the table, so that it does not grow
+ * with the content of the analyzed files.
+ */
+public final class Symbols {
+
+    private static final Object LOCK = new Object();
+
+    private static volatile Table table = new Table(new Symbol[16], 0);
+
+    private Symbols() {
+    }
+
+    /**
+     * @return the symbol of the name, created when the name was not interned yet
+     */
+    public static Symbol intern(String name) {
+        synchronized (LOCK) {
+            Symbol symbol = table.lookup(name, 0);
+            if (symbol == null) {
+                symbol = new Symbol(table.size, fold(name));
+                table = table.with(symbol);
+            }
+            return symbol;
+        }
+    }
+
+    /**
+     * @param from index of the first character of the name, for instance 1 to skip the slash of an end element
+     * @return the symbol of the name, or null when it was not interned
+     */
+    @CheckForNull
+    public static Symbol lookup(String name, int from) {
+        return table.lookup(name, from);
+    }
+
+    /**
+     * @return the number of interned symbols, which is greater than the id of any symbol
+     */
+    public static int size() {
+        return table.size;
+    }
+
+    private static String fold(String name) {
+        char[] folded = new char[name.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = fold(name.charAt(i));
+        }
+        return new String(folded);
+    }
+
+    private static char fold(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    private static int hash(String name, int from) {
+        int hash = 0;
+        for (int i = from; i < name.length(); i++) {
+            hash = 31 * hash + fold(name.charAt(i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Immutable open-addressing hash table, replaced as a whole when a symbol is interned.
+     */
+    private static final class Table {
+
+        private final Symbol[] slots;
+
+        private final int size;
+
+        private Table(Symbol[] slots, int size) {
+            this.slots = slots;
+            this.size = size;
+        }
+
+        @CheckForNull
+        private Symbol lookup(String name, int from) {
+            int mask = slots.length - 1;
+            for (int slot = hash(name, from) & mask; slots[slot] != null; slot = (slot + 1) & mask) {
+                if (matches(slots[slot].name(), name, from)) {
+                    return slots[slot];
+                }
+            }
+            return null;
+        }
+
+        private Table with(Symbol symbol) {
+            Symbol[] newSlots = (size + 1) * 2 > slots.length ? new Symbol[slots.length * 2] : Arrays.copyOf(slots, slots.length);
+            if (newSlots.length != slots.length) {
+                for (Symbol existing : slots) {
+                    if (existing != null) {
+                        insert(newSlots, existing);
+                    }
+                }
+            }
+            insert(newSlots, symbol);
+            return new Table(newSlots, size + 1);
+        }
+
+        private static void insert(Symbol[] slots, Symbol symbol) {
+            int mask = slots.length - 1;
+            int slot = hash(symbol.name(), 0) & mask;
+            while (slots[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = symbol;
+        }
+
+        private static boolean matches(String folded, String name, int from) {
+            if (folded.length() != name.length() - from) {
+                return false;
+            }
+            for (int i = 0; i < folded.length(); i++) {
+                if (folded.charAt(i) != fold(name.charAt(from + i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
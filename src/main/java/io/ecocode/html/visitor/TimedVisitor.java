@@ -0,0 +1,114 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.visitor;
+
+import org.sonar.plugins.html.node.CommentNode;
+import org.sonar.plugins.html.node.DirectiveNode;
+import org.sonar.plugins.html.node.ExpressionNode;
+import org.sonar.plugins.html.node.Node;
+import org.sonar.plugins.html.node.TagNode;
+import org.sonar.plugins.html.node.TextNode;
+import org.sonar.plugins.html.visitor.DefaultNodeVisitor;
+import org.sonar.plugins.html.visitor.HtmlSourceCode;
+
+import java.util.List;
+
+/**
+ * Measures the time spent in the callbacks of a visitor. Like the visitor itself, an instance must not be shared between threads.
+ * <p>
+ * The {@link HtmlNodeDispatcher} notifies a timed visitor of the elements its delegate subscribed to.
+ */
+public class TimedVisitor extends DefaultNodeVisitor {
+
+    private final DefaultNodeVisitor delegate;
+
+    private long nanos;
+
+    public TimedVisitor(DefaultNodeVisitor delegate) {
+        this.delegate = delegate;
+    }
+
+    public DefaultNodeVisitor delegate() {
+        return delegate;
+    }
+
+    /**
+     * @return the time spent in the delegate since this visitor was created
+     */
+    public long nanos() {
+        return nanos;
+    }
+
+    @Override
+    public void startDocument(HtmlSourceCode htmlSourceCode, List<Node> nodes) {
+        super.startDocument(htmlSourceCode, nodes);
+        long start = System.nanoTime();
+        delegate.startDocument(htmlSourceCode, nodes);
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public void endDocument() {
+        long start = System.nanoTime();
+        delegate.endDocument();
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public void startElement(TagNode node) {
+        long start = System.nanoTime();
+        delegate.startElement(node);
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public void endElement(TagNode node) {
+        long start = System.nanoTime();
+        delegate.endElement(node);
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public void characters(TextNode textNode) {
+        long start = System.nanoTime();
+        delegate.characters(textNode);
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public void comment(CommentNode node) {
+        long start = System.nanoTime();
+        delegate.comment(node);
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public void directive(DirectiveNode node) {
+        long start = System.nanoTime();
+        delegate.directive(node);
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public void expression(ExpressionNode node) {
+        long start = System.nanoTime();
+        delegate.expression(node);
+        nanos += System.nanoTime() - start;
+    }
+
+}
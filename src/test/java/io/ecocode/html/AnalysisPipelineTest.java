@@ -0,0 +1,190 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import io.ecocode.html.visitor.HtmlNodeDispatcher;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.SonarEdition;
+import org.sonar.api.SonarQubeSide;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.internal.SonarRuntimeImpl;
+import org.sonar.api.utils.Version;
+import org.sonar.plugins.html.node.TagNode;
+import org.sonar.plugins.html.visitor.DefaultNodeVisitor;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnalysisPipelineTest {
+
+    private final Set<String> analysisThreads = ConcurrentHashMap.newKeySet();
+
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+    @Test
+    void resultsSavedInOrderOfFiles() {
+        List<InputFile> inputFiles = inputFiles(50);
+        List<String> saved = new ArrayList<>();
+
+        pipeline().run(inputFiles, () -> false, result -> saved.add(result.sourceCode().inputFile().filename()),
+                (inputFile, e) -> saved.add("error " + inputFile));
+
+        assertThat(saved).isEqualTo(inputFiles.stream().map(InputFile::filename).collect(Collectors.toList()));
+        assertThat(analysisThreads).hasSize(1).doesNotContain(Thread.currentThread().getName());
+    }
+
+    @Test
+    void filesReadAheadUpToTheQueueCapacity() throws Exception {
+        CountingFiles inputFiles = new CountingFiles(inputFiles(100));
+        CountDownLatch firstSaved = new CountDownLatch(1);
+        List<InputFile> saved = new ArrayList<>();
+
+        pipeline().run(inputFiles, () -> false, result -> {
+            if (saved.isEmpty()) {
+                firstSaved.countDown();
+                sleep();
+                // the stages wait for the saving of the first result, each one holding at most a file
+                assertThat(inputFiles.pulled.get())
+                        .isLessThanOrEqualTo(AnalysisPipeline.PREFETCHED_FILES + AnalysisPipeline.PENDING_RESULTS + 3);
+            }
+            saved.add(result.sourceCode().inputFile());
+        }, (inputFile, e) -> saved.add(inputFile));
+
+        assertThat(firstSaved.await(0, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(saved).hasSize(100);
+    }
+
+    @Test
+    void errorsReportedInOrderOfFiles() {
+        List<InputFile> inputFiles = new ArrayList<>(inputFiles(3));
+        inputFiles.add(1, new TestInputFileBuilder("key", "missing.html")
+                .setModuleBaseDir(Paths.get("does-not-exist"))
+                .build());
+        List<String> saved = new ArrayList<>();
+
+        pipeline().run(inputFiles, () -> false, result -> saved.add(result.sourceCode().inputFile().filename()),
+                (inputFile, e) -> saved.add("error " + inputFile.filename()));
+
+        assertThat(saved).containsExactly("file0.html", "error missing.html", "file1.html", "file2.html");
+    }
+
+    @Test
+    void stopsWhenCancelled() {
+        List<InputFile> saved = new ArrayList<>();
+
+        pipeline().run(inputFiles(100), () -> saved.size() >= 3, result -> saved.add(result.sourceCode().inputFile()), (inputFile, e) -> {
+        });
+
+        assertThat(saved).hasSize(3);
+        assertThat(threads).hasSize(2).allMatch(AnalysisPipelineTest::exits);
+    }
+
+    private AnalysisPipeline pipeline() {
+        HtmlAnalysisSettings settings = new HtmlAnalysisSettings(new MapSettings().asConfig(),
+                SonarRuntimeImpl.forSonarQube(Version.create(9, 9), SonarQubeSide.SCANNER, SonarEdition.COMMUNITY));
+        HtmlNodeDispatcher dispatcher = new HtmlNodeDispatcher();
+        dispatcher.addVisitor(new DefaultNodeVisitor() {
+            @Override
+            public void startElement(TagNode element) {
+                analysisThreads.add(Thread.currentThread().getName());
+            }
+        });
+        return new AnalysisPipeline(new HtmlFileAnalyzer(dispatcher, settings, HtmlAnalysisCache.disabled()), false, runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-test");
+            thread.setDaemon(true);
+            threads.add(thread);
+            return thread;
+        }, MemoryBudget.unlimited());
+    }
+
+    private static List<InputFile> inputFiles(int count) {
+        List<InputFile> inputFiles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            inputFiles.add(new TestInputFileBuilder("key", "file" + i + ".html")
+                    .setCharset(StandardCharsets.UTF_8)
+                    .setContents("<p>" + i + "</p>")
+                    .build());
+        }
+        return Collections.unmodifiableList(inputFiles);
+    }
+
+    /**
+     * The tasks of the threads are over once the pipeline returns, the threads themselves may take a moment to exit.
+     */
+    private static boolean exits(Thread thread) {
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !thread.isAlive();
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(200);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class CountingFiles implements Iterable<InputFile> {
+
+        private final List<InputFile> inputFiles;
+
+        private final AtomicInteger pulled = new AtomicInteger();
+
+        private CountingFiles(List<InputFile> inputFiles) {
+            this.inputFiles = inputFiles;
+        }
+
+        @Override
+        public Iterator<InputFile> iterator() {
+            Iterator<InputFile> iterator = inputFiles.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public InputFile next() {
+                    pulled.incrementAndGet();
+                    return iterator.next();
+                }
+            };
+        }
+
+    }
+
+}
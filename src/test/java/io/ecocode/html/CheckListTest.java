@@ -17,7 +17,16 @@
  */
 package io.ecocode.html;
 
+import io.ecocode.html.checks.AvoidAutoplayCheck;
 import org.junit.jupiter.api.Test;
+import org.sonar.check.Rule;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -28,4 +37,45 @@ class CheckListTest {
         assertThat(CheckList.getChecks()).isNotEmpty();
     }
 
+    @Test
+    void allAnnotatedChecksListed() throws Exception {
+        Path classes = Paths.get(AvoidAutoplayCheck.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        List<Class<?>> annotatedChecks;
+        try (Stream<Path> files = Files.walk(classes.resolve("io/ecocode/html/checks"))) {
+            annotatedChecks = files
+                    .map(file -> classes.relativize(file).toString())
+                    .filter(file -> file.endsWith(".class") && !file.contains("$"))
+                    .map(CheckListTest::loadClass)
+                    .filter(check -> check.isAnnotationPresent(Rule.class))
+                    .collect(Collectors.toList());
+        }
+
+        assertThat(CheckList.getChecks()).doesNotHaveDuplicates();
+        assertThat(annotatedChecks).isNotEmpty().containsExactlyInAnyOrderElementsOf(CheckList.getChecks());
+    }
+
+    @Test
+    void instancesAndKeysFollowTheChecks() {
+        assertThat(CheckList.newChecks()).extracting(Object::getClass).containsExactlyElementsOf(CheckList.getChecks());
+        assertThat(CheckList.ruleKeys())
+                .containsExactlyElementsOf(CheckList.getChecks().stream().map(check -> check.getAnnotation(Rule.class).key()).collect(Collectors.toList()));
+    }
+
+    @Test
+    void metadataOfEachRule() {
+        for (String key : CheckList.ruleKeys()) {
+            assertThat(CheckList.class.getClassLoader().getResource(HtmlRulesDefinition.METADATA_LOCATION + "/" + key + ".json")).isNotNull();
+            assertThat(CheckList.class.getClassLoader().getResource(HtmlRulesDefinition.METADATA_LOCATION + "/" + key + ".html")).isNotNull();
+        }
+    }
+
+    private static Class<?> loadClass(String file) {
+        String name = file.substring(0, file.length() - ".class".length()).replace('/', '.').replace('\\', '.');
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
 }
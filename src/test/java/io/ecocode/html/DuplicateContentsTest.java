@@ -0,0 +1,165 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.html.checks.PreciseHtmlIssue;
+import org.sonar.plugins.html.visitor.HtmlSourceCode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DuplicateContentsTest {
+
+    @TempDir
+    Path baseDir;
+
+    @Test
+    void identicalFilesGrouped() throws IOException {
+        InputFile original = inputFile("a.html", "<video autoplay>");
+        InputFile copy = inputFile("b.html", "<video autoplay>");
+        InputFile sameSize = inputFile("c.html", "<audio autoplay>");
+        InputFile otherSize = inputFile("d.html", "<p>");
+
+        DuplicateContents duplicates = DuplicateContents.find(Arrays.asList(original, copy, sameSize, otherSize));
+
+        assertThat(duplicates.isCandidate(original)).isTrue();
+        assertThat(duplicates.isCandidate(sameSize)).isTrue();
+        assertThat(duplicates.isCandidate(otherSize)).isFalse();
+        DuplicateContents.Group group = duplicates.group(original, contentHash(original));
+        assertThat(group).isNotNull();
+        assertThat(duplicates.group(sameSize, contentHash(sameSize))).isNotNull().isNotSameAs(group);
+        assertThat(duplicates.group(copy, contentHash(copy))).isSameAs(group);
+        assertThat(duplicates.group(otherSize, contentHash(otherSize))).isNull();
+        assertThat(DuplicateContents.find(Arrays.asList(sameSize, otherSize)).isCandidate(sameSize)).isFalse();
+    }
+
+    @Test
+    void identicalFilesAnalyzedDifferentlyNotGrouped() throws IOException {
+        InputFile html = inputFile("a.html", "<video autoplay>");
+        InputFile php = inputFile("a.php", "<video autoplay>");
+        InputFile vue = inputFile("a.vue", "<video autoplay>");
+        Files.writeString(baseDir.resolve("b.html"), "<video autoplay>");
+        InputFile latin1 = new TestInputFileBuilder("key", "b.html")
+                .setModuleBaseDir(baseDir)
+                .setCharset(StandardCharsets.ISO_8859_1)
+                .build();
+
+        DuplicateContents duplicates = DuplicateContents.find(Arrays.asList(html, php, vue, latin1));
+
+        DuplicateContents.Group group = duplicates.group(html, contentHash(html));
+        assertThat(group).isNotNull();
+        assertThat(duplicates.group(php, contentHash(php))).isNotNull().isNotSameAs(group);
+        assertThat(duplicates.group(vue, contentHash(vue))).isNotNull().isNotSameAs(group);
+        assertThat(duplicates.group(latin1, contentHash(latin1))).isNotNull().isNotSameAs(group);
+    }
+
+    @Test
+    void resultReleasedOnceEveryFileGotIt() throws IOException {
+        InputFile original = inputFile("a.html", "<p>");
+        InputFile copy = inputFile("b.html", "<p>");
+        InputFile sameSize = inputFile("c.html", "<b>");
+        DuplicateContents duplicates = DuplicateContents.find(Arrays.asList(original, copy, sameSize));
+        DuplicateContents.Group group = duplicates.group(original, contentHash(original));
+
+        group.claim();
+        group.publish(new HtmlSourceCode(original));
+        // the copy may still join the group
+        assertThat(duplicates.group(copy, contentHash(copy)).replay(copy, () -> false)).isNotNull();
+        duplicates.group(sameSize, contentHash(sameSize));
+
+        // released once the last file of the same size was read
+        assertThat(group.replay(copy, () -> false)).isNull();
+    }
+
+    @Test
+    void analysisReplayedOnOtherFiles() throws IOException {
+        InputFile original = inputFile("a.html", "<p>\n<video autoplay>");
+        InputFile copy = inputFile("b.html", "<p>\n<video autoplay>");
+        DuplicateContents.Group group = group(original, copy);
+
+        assertThat(group.claim()).isTrue();
+        assertThat(group.claim()).isFalse();
+        HtmlSourceCode analyzed = new HtmlSourceCode(original);
+        analyzed.addMeasure(CoreMetrics.NCLOC, 2);
+        analyzed.addIssue(new PreciseHtmlIssue(RuleKey.of("repository", "rule"), 2, "message", 0, 2, 16));
+        group.publish(analyzed);
+
+        HtmlSourceCode replayed = group.replay(copy, () -> false);
+        assertThat(replayed).isNotNull();
+        assertThat(replayed.inputFile()).isSameAs(copy);
+        assertThat(replayed.getIssues()).containsExactlyElementsOf(analyzed.getIssues());
+        assertThat(replayed.getMeasures()).isEqualTo(analyzed.getMeasures());
+    }
+
+    @Test
+    void filesAnalyzedOnTheirOwnWhenTheFirstOneIsNot() throws IOException {
+        InputFile original = inputFile("a.html", "<p>");
+        InputFile copy = inputFile("b.html", "<p>");
+        DuplicateContents.Group group = group(original, copy);
+
+        group.claim();
+        group.publish(null);
+
+        assertThat(group.replay(copy, () -> false)).isNull();
+    }
+
+    @Test
+    void waitCancelled() throws IOException {
+        InputFile original = inputFile("a.html", "<p>");
+        InputFile copy = inputFile("b.html", "<p>");
+        DuplicateContents.Group group = group(original, copy);
+
+        group.claim();
+
+        assertThatThrownBy(() -> group.replay(copy, () -> true)).isInstanceOf(CancellationException.class);
+    }
+
+    private static DuplicateContents.Group group(InputFile original, InputFile copy) throws IOException {
+        DuplicateContents duplicates = DuplicateContents.find(Arrays.asList(original, copy));
+        DuplicateContents.Group group = duplicates.group(original, contentHash(original));
+        assertThat(duplicates.group(copy, contentHash(copy))).isSameAs(group);
+        return group;
+    }
+
+    private static String contentHash(InputFile inputFile) throws IOException {
+        return HtmlAnalysisCache.contentHash(HtmlFileContent.read(inputFile, true).bytes());
+    }
+
+    private InputFile inputFile(String filename, String content) throws IOException {
+        Files.writeString(baseDir.resolve(filename), content);
+        return new TestInputFileBuilder("key", filename)
+                .setModuleBaseDir(baseDir)
+                .setCharset(StandardCharsets.UTF_8)
+                .initMetadata(content)
+                .build();
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileAnalysisBudgetTest {
+
+    private static final InputFile INPUT_FILE = new TestInputFileBuilder("key", "index.html").build();
+
+    @Test
+    void taskRunWithinTheBudget() throws Exception {
+        FileAnalysisBudget budget = FileAnalysisBudget.start(INPUT_FILE, 10_000, () -> false);
+        Reader reader = budget.reader(new StringReader("<p>"));
+
+        assertThat(budget.run(() -> (char) reader.read())).isEqualTo('<');
+        assertThat(reader.read()).isEqualTo('p');
+    }
+
+    @Test
+    void readsFailOnceTheTaskIsAbandoned() throws Exception {
+        FileAnalysisBudget budget = FileAnalysisBudget.start(INPUT_FILE, 20, () -> false);
+        Reader reader = budget.reader(new StringReader("<p>"));
+        CountDownLatch released = new CountDownLatch(1);
+        CompletableFuture<Throwable> failure = new CompletableFuture<>();
+
+        assertThatThrownBy(() -> budget.run(() -> {
+            awaitUninterruptibly(released);
+            try {
+                return reader.read();
+            } catch (RuntimeException e) {
+                failure.complete(e);
+                throw e;
+            }
+        })).isInstanceOf(AnalysisTimeoutException.class);
+        released.countDown();
+
+        assertThat(failure.get(10, TimeUnit.SECONDS))
+                .isInstanceOf(CancellationException.class)
+                .hasMessageContaining("abandoned");
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import io.ecocode.html.checks.AvoidAutoplayCheck;
+import io.ecocode.html.util.TestCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.SonarProduct;
+import org.sonar.api.SonarRuntime;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.rule.CheckFactory;
+import org.sonar.api.batch.rule.Checks;
+import org.sonar.api.batch.rule.internal.DefaultActiveRules;
+import org.sonar.api.batch.rule.internal.NewActiveRule;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.Version;
+import org.sonar.plugins.html.api.HtmlConstants;
+import org.sonar.plugins.html.checks.HtmlIssue;
+import org.sonar.plugins.html.checks.PreciseHtmlIssue;
+import org.sonar.plugins.html.visitor.HtmlSourceCode;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HtmlAnalysisCacheTest {
+
+    private static final RuleKey RULE_KEY = RuleKey.of(HtmlRulesDefinition.REPOSITORY_KEY, AvoidAutoplayCheck.KEY);
+
+    private SonarRuntime sonarRuntime;
+
+    private SensorContextTester context;
+
+    private final InputFile inputFile = new TestInputFileBuilder("key", "index.html").setCharset(StandardCharsets.UTF_8).build();
+
+    @BeforeEach
+    void setup() {
+        sonarRuntime = mock(SonarRuntime.class);
+        when(sonarRuntime.getProduct()).thenReturn(SonarProduct.SONARQUBE);
+        when(sonarRuntime.getApiVersion()).thenReturn(Version.create(9, 9));
+
+        context = SensorContextTester.create(Paths.get("."));
+        context.setCacheEnabled(true);
+    }
+
+    @Test
+    void disabled() {
+        context.setCacheEnabled(false);
+        assertThat(HtmlAnalysisCache.create(context, sonarRuntime, checks()).isEnabled()).isFalse();
+
+        context.setCacheEnabled(true);
+        when(sonarRuntime.getApiVersion()).thenReturn(Version.create(9, 3));
+        assertThat(HtmlAnalysisCache.create(context, sonarRuntime, checks()).isEnabled()).isFalse();
+    }
+
+    @Test
+    void disabledWhenPluginBuildIsUnknown() {
+        assertThat(HtmlAnalysisCache.pluginBuild()).isNotNull();
+        assertThat(HtmlAnalysisCache.create(context, sonarRuntime, checks(), List.of(), "1.0 abc 2024").isEnabled()).isTrue();
+        assertThat(HtmlAnalysisCache.create(context, sonarRuntime, checks(), List.of(), null).isEnabled()).isFalse();
+    }
+
+    @Test
+    void pluginBuild() throws IOException {
+        assertThat(pluginBuild("version=1.0-SNAPSHOT\nbuild=abc123\ntimestamp=2024-01-01T00:00:00Z"))
+                .isEqualTo("1.0-SNAPSHOT abc123 2024-01-01T00:00:00Z");
+        assertThat(pluginBuild("version=1.0-SNAPSHOT\nbuild=abc123")).isNull();
+        assertThat(pluginBuild("version=1.0-SNAPSHOT\nbuild=${buildNumber}\ntimestamp=2024-01-01T00:00:00Z")).isNull();
+    }
+
+    @Test
+    void snapshotBuildsDoNotShareEntries() {
+        context.setPreviousCache(writeAnalysis("hash"));
+
+        assertThat(HtmlAnalysisCache.create(context, sonarRuntime, checks(), List.of(), "1.0-SNAPSHOT abc 2024-01-02T00:00:00Z")
+                .read(inputFile, "hash")).isNull();
+    }
+
+    @Test
+    void roundTrip() {
+        TestCache previousCache = writeAnalysis("hash");
+
+        context.setPreviousCache(previousCache);
+        HtmlAnalysisCache cache = HtmlAnalysisCache.create(context, sonarRuntime, checks());
+        assertThat(cache.read(inputFile, "other")).isNull();
+
+        HtmlSourceCode sourceCode = cache.read(inputFile, "hash");
+        assertThat(sourceCode).isNotNull();
+        assertThat(sourceCode.inputFile()).isSameAs(inputFile);
+
+        List<HtmlIssue> issues = sourceCode.getIssues();
+        assertThat(issues).hasSize(2);
+        assertThat(issues.get(0)).isInstanceOf(PreciseHtmlIssue.class);
+        assertThat(issues.get(0).ruleKey()).isEqualTo(RULE_KEY);
+        assertThat(issues.get(0).line()).isEqualTo(2);
+        assertThat(((PreciseHtmlIssue) issues.get(0)).startColumn()).isEqualTo(3);
+        assertThat(((PreciseHtmlIssue) issues.get(0)).endLine()).isEqualTo(4);
+        assertThat(((PreciseHtmlIssue) issues.get(0)).endColumn()).isEqualTo(5);
+        assertThat(issues.get(1).line()).isNull();
+        assertThat(issues.get(1).message()).isEqualTo("file message");
+        assertThat(issues.get(1).cost()).isEqualTo(2.0);
+    }
+
+    @Test
+    void filesAnalyzedDifferentlyDoNotShareEntries() {
+        context.setPreviousCache(writeAnalysis("hash"));
+        HtmlAnalysisCache cache = HtmlAnalysisCache.create(context, sonarRuntime, checks());
+
+        assertThat(cache.read(new TestInputFileBuilder("key", "other.html").setCharset(StandardCharsets.UTF_8).build(), "hash")).isNotNull();
+        for (String fileName : List.of("index.php", "index.jsp", "index.vue")) {
+            InputFile otherKind = new TestInputFileBuilder("key", fileName)
+                    .setLanguage(fileName.endsWith(".jsp") ? HtmlConstants.JSP_LANGUAGE_KEY : null)
+                    .setCharset(StandardCharsets.UTF_8)
+                    .build();
+            assertThat(cache.read(otherKind, "hash")).isNull();
+        }
+        assertThat(cache.read(new TestInputFileBuilder("key", "index.html").setCharset(StandardCharsets.ISO_8859_1).build(), "hash")).isNull();
+    }
+
+    @Test
+    void activeRulesInvalidateEntries() {
+        context.setPreviousCache(writeAnalysis("hash"));
+
+        Checks<Object> noChecks = new CheckFactory(new DefaultActiveRules(Collections.emptyList()))
+                .create(HtmlRulesDefinition.REPOSITORY_KEY)
+                .addAnnotatedChecks(CheckList.getChecks());
+        assertThat(HtmlAnalysisCache.create(context, sonarRuntime, noChecks).read(inputFile, "hash")).isNull();
+    }
+
+    @Test
+    void sameContentWrittenOnce() {
+        TestCache nextCache = new TestCache();
+        context.setNextCache(nextCache);
+        HtmlAnalysisCache cache = HtmlAnalysisCache.create(context, sonarRuntime, checks());
+
+        cache.write("hash", new HtmlSourceCode(inputFile), false);
+        cache.write("hash", new HtmlSourceCode(inputFile), false);
+        assertThat(nextCache.entries()).hasSize(1);
+    }
+
+    @Test
+    void inMemory() {
+        Map<String, byte[]> entries = new HashMap<>();
+        HtmlAnalysisCache cache = HtmlAnalysisCache.inMemory(entries, "rules");
+        HtmlSourceCode sourceCode = new HtmlSourceCode(inputFile);
+        sourceCode.addIssue(new HtmlIssue(RULE_KEY, 1, "message", null));
+
+        assertThat(cache.isEnabled()).isTrue();
+        assertThat(cache.read(inputFile, "hash")).isNull();
+        cache.write("hash", sourceCode, false);
+
+        assertThat(entries).hasSize(1);
+        assertThat(cache.read(inputFile, "hash")).isNotNull().extracting(HtmlSourceCode::getIssues).asList().hasSize(1);
+        assertThat(HtmlAnalysisCache.inMemory(entries, "other rules").read(inputFile, "hash")).isNull();
+    }
+
+    @Test
+    void contentHash() {
+        byte[] content = "<video autoplay>".getBytes(StandardCharsets.UTF_8);
+        assertThat(HtmlAnalysisCache.contentHash(ByteBuffer.wrap(content)))
+                .isEqualTo(HtmlAnalysisCache.contentHash(ByteBuffer.wrap(content.clone())))
+                .isNotEqualTo(HtmlAnalysisCache.contentHash(ByteBuffer.allocate(0)));
+    }
+
+    private TestCache writeAnalysis(String contentHash) {
+        TestCache nextCache = new TestCache();
+        context.setNextCache(nextCache);
+
+        HtmlSourceCode sourceCode = new HtmlSourceCode(inputFile);
+        sourceCode.addIssue(new PreciseHtmlIssue(RULE_KEY, 2, "precise message", 3, 4, 5));
+        sourceCode.addIssue(new HtmlIssue(RULE_KEY, null, "file message", 2.0));
+        HtmlAnalysisCache.create(context, sonarRuntime, checks()).write(contentHash, sourceCode, false);
+
+        return nextCache;
+    }
+
+    private static Checks<Object> checks() {
+        NewActiveRule rule = new NewActiveRule.Builder().setRuleKey(RULE_KEY).build();
+        return new CheckFactory(new DefaultActiveRules(List.of(rule)))
+                .create(HtmlRulesDefinition.REPOSITORY_KEY)
+                .addAnnotatedChecks(CheckList.getChecks());
+    }
+
+    private static String pluginBuild(String properties) throws IOException {
+        return HtmlAnalysisCache.pluginBuild(new ByteArrayInputStream(properties.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+}
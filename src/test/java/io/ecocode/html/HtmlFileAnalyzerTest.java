@@ -0,0 +1,156 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import io.ecocode.html.visitor.HtmlNodeDispatcher;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.SonarEdition;
+import org.sonar.api.SonarQubeSide;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.internal.SonarRuntimeImpl;
+import org.sonar.api.utils.Version;
+import org.sonar.plugins.html.node.TagNode;
+import org.sonar.plugins.html.visitor.DefaultNodeVisitor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HtmlFileAnalyzerTest {
+
+    private static final int ELEMENTS = 500;
+
+    private static final InputFile INPUT_FILE = new TestInputFileBuilder("key", "index.html")
+            .setCharset(StandardCharsets.UTF_8)
+            .setContents("<p></p>".repeat(ELEMENTS))
+            .build();
+
+    @Test
+    void analyzeWithoutTimeout() throws Exception {
+        SlowVisitor visitor = new SlowVisitor(0);
+
+        HtmlFileAnalyzer.Result result = analyzer(visitor, 0).analyze(INPUT_FILE);
+
+        assertThat(result.action()).isEqualTo(HtmlFileAnalyzer.Action.ANALYZED);
+        assertThat(visitor.elements).isEqualTo(ELEMENTS);
+    }
+
+    @Test
+    void abandonedAfterTimeout() {
+        SlowVisitor visitor = new SlowVisitor(1);
+        HtmlFileAnalyzer analyzer = analyzer(visitor, 20);
+
+        assertThatThrownBy(() -> analyzer.analyze(INPUT_FILE))
+                .isInstanceOf(AnalysisTimeoutException.class)
+                .hasMessageContaining("index.html")
+                .hasMessageContaining(HtmlAnalysisSettings.FILE_TIMEOUT_PROPERTY);
+        assertThat(visitor.elements).isLessThan(ELEMENTS);
+    }
+
+    @Test
+    void lexingAbandonedAfterTimeout() throws Exception {
+        // a single element with many attributes, whose lexing takes far longer than the timeout
+        InputFile inputFile = new TestInputFileBuilder("key", "attributes.html")
+                .setCharset(StandardCharsets.UTF_8)
+                .setContents("<p" + " a=\"b\"".repeat(150_000) + ">")
+                .build();
+        SlowVisitor visitor = new SlowVisitor(0);
+        long start = System.nanoTime();
+        analyzer(visitor, 0).analyze(inputFile);
+        long lexingNanos = System.nanoTime() - start;
+        assertThat(visitor.elements).isEqualTo(1);
+
+        HtmlFileAnalyzer analyzer = analyzer(visitor, 5);
+        long timeoutStart = System.nanoTime();
+        assertThatThrownBy(() -> analyzer.analyze(inputFile))
+                .isInstanceOf(AnalysisTimeoutException.class)
+                .hasMessageContaining("attributes.html");
+        assertThat(System.nanoTime() - timeoutStart).isLessThan(lexingNanos / 2);
+        assertThat(visitor.elements).isEqualTo(1);
+    }
+
+    @Test
+    void abandonedWhenCancelled() {
+        SlowVisitor visitor = new SlowVisitor(0);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        visitor.onElement = () -> cancelled.compareAndSet(false, visitor.elements == 10);
+        HtmlFileAnalyzer analyzer = analyzer(visitor, 0);
+
+        assertThatThrownBy(() -> analyzer.analyze(INPUT_FILE, cancelled::get)).isInstanceOf(CancellationException.class);
+        assertThat(visitor.elements).isLessThan(ELEMENTS);
+    }
+
+    @Test
+    void abandonedWhenInterrupted() {
+        SlowVisitor visitor = new SlowVisitor(0);
+        visitor.onElement = () -> Thread.currentThread().interrupt();
+        HtmlFileAnalyzer analyzer = analyzer(visitor, 0);
+
+        try {
+            assertThatThrownBy(() -> analyzer.analyze(INPUT_FILE)).isInstanceOf(CancellationException.class);
+            assertThat(visitor.elements).isLessThan(ELEMENTS);
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    private static HtmlFileAnalyzer analyzer(DefaultNodeVisitor visitor, long timeoutMillis) {
+        MapSettings settings = new MapSettings();
+        settings.setProperty(HtmlAnalysisSettings.FILE_TIMEOUT_PROPERTY, timeoutMillis);
+        HtmlAnalysisSettings analysisSettings = new HtmlAnalysisSettings(settings.asConfig(),
+                SonarRuntimeImpl.forSonarQube(Version.create(9, 9), SonarQubeSide.SCANNER, SonarEdition.COMMUNITY));
+
+        HtmlNodeDispatcher dispatcher = new HtmlNodeDispatcher();
+        dispatcher.addVisitor(visitor);
+        return new HtmlFileAnalyzer(dispatcher, analysisSettings, HtmlAnalysisCache.disabled());
+    }
+
+    private static class SlowVisitor extends DefaultNodeVisitor {
+
+        private final long sleepMillis;
+
+        private Runnable onElement = () -> {
+        };
+
+        private int elements;
+
+        private SlowVisitor(long sleepMillis) {
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public void startElement(TagNode element) {
+            elements++;
+            onElement.run();
+            if (sleepMillis > 0) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HtmlFileContentTest {
+
+    @TempDir
+    Path baseDir;
+
+    @Test
+    void readFromFileSystem() throws IOException {
+        InputFile inputFile = inputFile("<p>café</p>".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+
+        HtmlFileContent content = HtmlFileContent.read(inputFile, true);
+
+        assertThat(content.bytes().remaining()).isEqualTo(12);
+        assertThat(read(content)).isEqualTo("<p>café</p>");
+    }
+
+    @Test
+    void readThroughInputStream() throws IOException {
+        InputFile inputFile = new TestInputFileBuilder("key", "index.html")
+                .setCharset(StandardCharsets.ISO_8859_1)
+                .setContents("<p>café</p>")
+                .build();
+
+        assertThat(read(HtmlFileContent.read(inputFile, false))).isEqualTo("<p>café</p>");
+    }
+
+    @Test
+    void byteOrderMarkIsSkipped() throws IOException {
+        byte[] bytes = "\uFEFF<p></p>".getBytes(StandardCharsets.UTF_8);
+
+        HtmlFileContent content = HtmlFileContent.read(inputFile(bytes, StandardCharsets.UTF_8), true);
+
+        assertThat(content.bytes().remaining()).isEqualTo(bytes.length);
+        assertThat(read(content)).isEqualTo("<p></p>");
+    }
+
+    @Test
+    void contentDecodedOnce() throws IOException {
+        byte[] bytes = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, '<', 'p', '>', (byte) 0xE9, '<', '/', 'p', '>'};
+
+        HtmlFileContent content = HtmlFileContent.of(bytes, StandardCharsets.UTF_8);
+
+        assertThat(content.size()).isEqualTo(bytes.length);
+        assertThat(content.text()).isEqualTo("<p>\uFFFD</p>").isSameAs(content.text());
+        assertThat(read(content)).isEqualTo("<p>\uFFFD</p>");
+    }
+
+    @Test
+    void largeFilesAreMapped() throws IOException {
+        StringBuilder text = new StringBuilder("\uFEFF");
+        while (text.length() < HtmlFileContent.MAPPING_THRESHOLD) {
+            text.append("<p>été 🎵</p>\n");
+        }
+        InputFile inputFile = inputFile(text.toString().getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+
+        HtmlFileContent content = HtmlFileContent.read(inputFile, true);
+
+        assertThat(content.bytes().isDirect()).isTrue();
+        assertThat(read(content)).isEqualTo(text.substring(1));
+        try (Reader reader = content.reader()) {
+            StringBuilder charByChar = new StringBuilder();
+            for (int c = reader.read(); c >= 0; c = reader.read()) {
+                charByChar.append((char) c);
+            }
+            assertThat(charByChar).hasToString(text.substring(1));
+        }
+    }
+
+    @Test
+    void buffersReusedFromFileToFile() throws IOException {
+        HtmlFileContent.Buffers buffers = new HtmlFileContent.Buffers();
+        String large = "<p>été</p>\n".repeat(HtmlFileContent.Buffers.MAX_RETAINED_SIZE / 10);
+
+        HtmlFileContent first = HtmlFileContent.read(inputFile("\uFEFF<p>été 🎵</p>".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8), true, buffers);
+        assertThat(read(first)).isEqualTo("<p>été 🎵</p>");
+        HtmlFileContent second = HtmlFileContent.read(inputFile("<b>\u00e9</b>".getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1), true, buffers);
+        assertThat(read(second)).isEqualTo("<b>é</b>");
+
+        // buffers grown for a large file are not kept, the next files being read in the previous ones
+        HtmlFileContent third = HtmlFileContent.read(inputFile(large.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8), true, buffers);
+        assertThat(read(third)).isEqualTo(large);
+        HtmlFileContent fourth = HtmlFileContent.read(inputFile(new byte[] {'<', 'p', '>', (byte) 0xFF}, StandardCharsets.UTF_8), true, buffers);
+        assertThat(read(fourth)).isEqualTo("<p>\uFFFD");
+    }
+
+    private InputFile inputFile(byte[] bytes, Charset charset) throws IOException {
+        Files.write(baseDir.resolve("index.html"), bytes);
+        return new TestInputFileBuilder("key", "index.html")
+                .setModuleBaseDir(baseDir)
+                .setCharset(charset)
+                .build();
+    }
+
+    private static String read(HtmlFileContent content) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[1000];
+        try (Reader reader = content.reader()) {
+            for (int read = reader.read(buffer); read >= 0; read = reader.read(buffer)) {
+                text.append(buffer, 0, read);
+            }
+        }
+        return text.toString();
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.html.checks.HtmlIssue;
+import org.sonar.plugins.html.checks.PreciseHtmlIssue;
+import org.sonar.plugins.html.visitor.HtmlSourceCode;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HtmlMetricsSaverTest {
+
+    private static final RuleKey AUTOPLAY = RuleKey.of(HtmlRulesDefinition.REPOSITORY_KEY, "EC8000");
+
+    private static final RuleKey OTHER = RuleKey.of(HtmlRulesDefinition.REPOSITORY_KEY, "EC1");
+
+    private final SensorContextTester context = SensorContextTester.create(Paths.get("."));
+
+    private final InputFile inputFile = new TestInputFileBuilder("key", "index.html")
+            .initMetadata("<video autoplay></video>\n<audio autoplay></audio>\n<p>text</p>\n")
+            .build();
+
+    private final HtmlSourceCode sourceCode = new HtmlSourceCode(inputFile);
+
+    @Test
+    void measuresAndIssues() {
+        sourceCode.addMeasure(CoreMetrics.NCLOC, 3);
+        sourceCode.addIssue(new PreciseHtmlIssue(AUTOPLAY, 2, "audio", 0, 2, 16));
+        sourceCode.addIssue(new HtmlIssue(OTHER, null, "file", null));
+        sourceCode.addIssue(new HtmlIssue(AUTOPLAY, 1, "video", 2.0));
+
+        new HtmlMetricsSaver(0).saveMetrics(context, sourceCode);
+
+        assertThat(context.measure(inputFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(3);
+        assertThat(issues()).containsExactly(
+                "ecocode-html:EC1 file null",
+                "ecocode-html:EC8000 video Range[from [line=1, lineOffset=0] to [line=1, lineOffset=24]]",
+                "ecocode-html:EC8000 audio Range[from [line=2, lineOffset=0] to [line=2, lineOffset=16]]");
+        assertThat(context.allIssues()).extracting(Issue::gap).containsExactly(null, 2.0, null);
+    }
+
+    @Test
+    void identicalIssuesAreSavedOnce() {
+        sourceCode.addIssue(new PreciseHtmlIssue(AUTOPLAY, 2, "audio", 0, 2, 16));
+        sourceCode.addIssue(new HtmlIssue(AUTOPLAY, 1, "video", null));
+        sourceCode.addIssue(new PreciseHtmlIssue(AUTOPLAY, 2, "audio", 0, 2, 16));
+        sourceCode.addIssue(new HtmlIssue(AUTOPLAY, 1, "video", null));
+        sourceCode.addIssue(new HtmlIssue(AUTOPLAY, 1, "other video", null));
+        sourceCode.addIssue(new PreciseHtmlIssue(AUTOPLAY, 2, "audio", 1, 2, 16));
+
+        new HtmlMetricsSaver(0).saveMetrics(context, sourceCode);
+
+        assertThat(issues()).containsExactly(
+                "ecocode-html:EC8000 other video Range[from [line=1, lineOffset=0] to [line=1, lineOffset=24]]",
+                "ecocode-html:EC8000 video Range[from [line=1, lineOffset=0] to [line=1, lineOffset=24]]",
+                "ecocode-html:EC8000 audio Range[from [line=2, lineOffset=0] to [line=2, lineOffset=16]]",
+                "ecocode-html:EC8000 audio Range[from [line=2, lineOffset=1] to [line=2, lineOffset=16]]");
+    }
+
+    @Test
+    void issuesWithoutMessage() {
+        sourceCode.addIssue(new HtmlIssue(AUTOPLAY, 1, "video", null));
+        sourceCode.addIssue(new HtmlIssue(AUTOPLAY, 1, null, null));
+        sourceCode.addIssue(new HtmlIssue(AUTOPLAY, 1, null, null));
+
+        new HtmlMetricsSaver(0).saveMetrics(context, sourceCode);
+
+        assertThat(issues()).containsExactly(
+                "ecocode-html:EC8000 null Range[from [line=1, lineOffset=0] to [line=1, lineOffset=24]]",
+                "ecocode-html:EC8000 video Range[from [line=1, lineOffset=0] to [line=1, lineOffset=24]]");
+    }
+
+    @Test
+    void issuesPerRuleAreLimited() {
+        for (int column = 0; column < 5; column++) {
+            sourceCode.addIssue(new PreciseHtmlIssue(AUTOPLAY, 1, "video", column, 1, 10));
+        }
+        sourceCode.addIssue(new HtmlIssue(OTHER, 3, "text", null));
+
+        new HtmlMetricsSaver(2).saveMetrics(context, sourceCode);
+
+        assertThat(issues()).containsExactly(
+                "ecocode-html:EC1 text Range[from [line=3, lineOffset=0] to [line=3, lineOffset=11]]",
+                "ecocode-html:EC8000 video Range[from [line=1, lineOffset=0] to [line=1, lineOffset=10]]",
+                "ecocode-html:EC8000 video Range[from [line=1, lineOffset=1] to [line=1, lineOffset=10]]",
+                "ecocode-html:EC8000 3 more issues of this rule are not reported on this file, which has more than 2 of them null");
+    }
+
+    private List<String> issues() {
+        List<String> issues = new ArrayList<>();
+        for (Issue issue : context.allIssues()) {
+            issues.add(issue.ruleKey() + " " + issue.primaryLocation().message() + " " + issue.primaryLocation().textRange());
+        }
+        return issues;
+    }
+
+}
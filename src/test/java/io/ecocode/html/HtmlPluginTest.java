@@ -19,10 +19,14 @@ package io.ecocode.html;
 
 import org.junit.jupiter.api.Test;
 import org.sonar.api.Plugin;
+import org.sonar.api.SonarProduct;
 import org.sonar.api.SonarRuntime;
 
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 class HtmlPluginTest {
 
@@ -31,7 +35,18 @@ class HtmlPluginTest {
         SonarRuntime sonarRuntime = mock(SonarRuntime.class);
         Plugin.Context context = new Plugin.Context(sonarRuntime);
         new HtmlPlugin().define(context);
-        assertThat(context.getExtensions()).hasSize(2);
+        List<?> extensions = context.getExtensions();
+        assertThat(extensions).hasSize(2);
+    }
+
+    @Test
+    void sonarLintExtensions() {
+        SonarRuntime sonarRuntime = mock(SonarRuntime.class);
+        when(sonarRuntime.getProduct()).thenReturn(SonarProduct.SONARLINT);
+        Plugin.Context context = new Plugin.Context(sonarRuntime);
+        new HtmlPlugin().define(context);
+        List<?> extensions = context.getExtensions();
+        assertThat(extensions).hasSize(3).anyMatch(HtmlWarmAnalyzer.class::equals);
     }
 
 }
@@ -17,10 +17,16 @@
  */
 package io.ecocode.html;
 
+import io.ecocode.html.checks.AvoidAutoplayCheck;
+import io.ecocode.html.declarative.DeclarativeRules;
 import org.junit.jupiter.api.Test;
 import org.sonar.api.SonarRuntime;
 import org.sonar.api.server.rule.RulesDefinition;
 import org.sonar.api.utils.Version;
+import org.sonarsource.analyzer.commons.RuleMetadataLoader;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -43,4 +49,38 @@ class HtmlRulesDefinitionTest {
         assertThat(repository.key()).isEqualTo("ecocode-html");
     }
 
+    @Test
+    void sameRulesAsAnnotatedChecksAndDeclarativeRules() {
+        SonarRuntime sonarRuntime = mock(SonarRuntime.class);
+        when(sonarRuntime.getApiVersion()).thenReturn(Version.create(9, 9));
+
+        RulesDefinition.Context context = new RulesDefinition.Context();
+        new HtmlRulesDefinition(sonarRuntime).define(context);
+
+        RulesDefinition.Context annotatedContext = new RulesDefinition.Context();
+        RulesDefinition.NewRepository annotatedRepository = annotatedContext.createRepository(HtmlRulesDefinition.REPOSITORY_KEY, "web");
+        new RuleMetadataLoader(HtmlRulesDefinition.METADATA_LOCATION, sonarRuntime)
+                .addRulesByAnnotatedClass(annotatedRepository, new ArrayList<>(CheckList.getChecks()));
+        new RuleMetadataLoader(HtmlRulesDefinition.METADATA_LOCATION, sonarRuntime)
+                .addRulesByRuleKey(annotatedRepository, DeclarativeRules.keys(DeclarativeRules.load()));
+        annotatedRepository.done();
+
+        assertThat(describe(context.repository(HtmlRulesDefinition.REPOSITORY_KEY)))
+                .anyMatch(rule -> rule.startsWith(AvoidAutoplayCheck.KEY + " "))
+                .isEqualTo(describe(annotatedContext.repository(HtmlRulesDefinition.REPOSITORY_KEY)));
+    }
+
+    private static List<String> describe(RulesDefinition.Repository repository) {
+        List<String> rules = new ArrayList<>();
+        for (RulesDefinition.Rule rule : repository.rules()) {
+            rules.add(rule.key() + " " + rule.name() + " " + rule.severity() + " " + rule.type() + " " + rule.status() + " " + rule.tags()
+                    + " " + rule.htmlDescription().length() + " " + rule.debtRemediationFunction());
+            for (RulesDefinition.Param param : rule.params()) {
+                rules.add(rule.key() + " " + param.key() + " " + param.type() + " " + param.defaultValue() + " " + param.description());
+            }
+        }
+        rules.sort(null);
+        return rules;
+    }
+
 }
@@ -17,18 +17,32 @@
  */
 package io.ecocode.html;
 
+import io.ecocode.html.checks.AvoidAutoplayCheck;
+import io.ecocode.html.declarative.DeclarativeRule;
+import io.ecocode.html.jfr.AnalysisErrorEvent;
+import io.ecocode.html.jfr.CheckVisitEvent;
+import io.ecocode.html.jfr.FileAnalysisEvent;
+import io.ecocode.html.jfr.SaveMetricsEvent;
+import io.ecocode.html.util.TestCache;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.sonar.api.SonarProduct;
 import org.sonar.api.SonarRuntime;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.rule.ActiveRule;
 import org.sonar.api.batch.rule.ActiveRules;
 import org.sonar.api.batch.rule.CheckFactory;
 import org.sonar.api.batch.rule.internal.DefaultActiveRules;
 import org.sonar.api.batch.rule.internal.NewActiveRule;
 import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonar.api.batch.sensor.issue.IssueLocation;
 import org.sonar.api.batch.sensor.internal.SensorContextTester;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.server.rule.RulesDefinition;
@@ -41,6 +55,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -52,6 +67,10 @@ public class HtmlSensorTest {
 
     private SonarRuntime sonarRuntime;
 
+    private ActiveRules activeRules;
+
+    private CheckFactory checkFactory;
+
     private HtmlSensor htmlSensor;
 
     private SensorContextTester tester;
@@ -71,8 +90,8 @@ public class HtmlSensorTest {
         for (RulesDefinition.Rule rule : repository.rules()) {
             ar.add(new NewActiveRule.Builder().setRuleKey(RuleKey.of(HtmlRulesDefinition.REPOSITORY_KEY, rule.key())).build());
         }
-        ActiveRules activeRules = new DefaultActiveRules(ar);
-        CheckFactory checkFactory = new CheckFactory(activeRules);
+        activeRules = new DefaultActiveRules(ar);
+        checkFactory = new CheckFactory(activeRules);
 
         htmlSensor = new HtmlSensor(checkFactory, sonarRuntime);
         tester = SensorContextTester.create(TEST_DIR).setRuntime(sonarRuntime);
@@ -111,11 +130,356 @@ public class HtmlSensorTest {
         tester.fileSystem().add(inputFile);
         htmlSensor.execute(tester);
         assertThat(tester.allIssues()).hasSize(1);
+        assertThat(tester.allIssues().iterator().next().primaryLocation().textRange().start().line()).isEqualTo(7);
+        assertThat(tester.allAnalysisErrors()).isEmpty();
+    }
+
+    @Test
+    public void activeDeclarativeRulesAreChecked() throws Exception {
+        List<DeclarativeRule> declarativeRules = List.of(
+                new DeclarativeRule("EC9998", "Inactive rule", List.of("video"), List.of()),
+                new DeclarativeRule("EC9999", "Add controls to the {element} element", List.of("video", "audio"),
+                        List.of(DeclarativeRule.Condition.absent("controls"))));
+        List<NewActiveRule> rules = new ArrayList<>();
+        for (ActiveRule rule : activeRules.findAll()) {
+            rules.add(new NewActiveRule.Builder().setRuleKey(rule.ruleKey()).build());
+        }
+        rules.add(new NewActiveRule.Builder().setRuleKey(RuleKey.of(HtmlRulesDefinition.REPOSITORY_KEY, "EC9999")).build());
+        ActiveRules withDeclarativeRules = new DefaultActiveRules(rules);
+
+        tester.fileSystem().add(createInputFile("example.html"));
+        new HtmlSensor(checkFactory, withDeclarativeRules, sonarRuntime, null, declarativeRules).execute(tester);
+
+        assertThat(issueLocations(tester))
+                .filteredOn(location -> location.startsWith(HtmlRulesDefinition.REPOSITORY_KEY + ":EC9999 "))
+                .hasSize(3)
+                .allMatch(location -> location.endsWith(" element"))
+                .anyMatch(location -> location.endsWith("Add controls to the audio element"));
+        assertThat(tester.allIssues()).hasSize(5);
+    }
+
+    @Test
+    public void serverCodeIsMasked() throws Exception {
+        tester.fileSystem().add(createInputFile("example.php"));
+        htmlSensor.execute(tester);
+        // the ">" of the PHP condition does not end the audio tag
+        assertThat(tester.allIssues()).extracting(issue -> issue.primaryLocation().textRange().start().line()).containsExactly(3, 4);
+        assertThat(tester.allAnalysisErrors()).isEmpty();
+    }
+
+    @Test
+    public void flightRecorderEvents(@TempDir Path recordingDir) throws Exception {
+        tester.fileSystem().add(createInputFile("example.html"));
+        tester.fileSystem().add(new TestInputFileBuilder("key", "missing.html")
+                .setModuleBaseDir(TEST_DIR)
+                .setLanguage(HtmlConstants.LANGUAGE_KEY)
+                .build());
+
+        Path recordingFile = recordingDir.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(FileAnalysisEvent.NAME);
+            recording.enable(CheckVisitEvent.NAME);
+            recording.enable(SaveMetricsEvent.NAME);
+            recording.enable(AnalysisErrorEvent.NAME);
+            recording.start();
+            htmlSensor.execute(tester);
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        // the file which failed to be analyzed is recorded too, without outcome
+        assertThat(events).filteredOn(event -> event.getEventType().getName().equals(FileAnalysisEvent.NAME))
+                .extracting(event -> event.getString("path"))
+                .containsExactlyInAnyOrder("example.html", "missing.html");
+        assertThat(events).filteredOn(event -> event.getEventType().getName().equals(FileAnalysisEvent.NAME))
+                .filteredOn(event -> event.getString("path").equals("example.html"))
+                .singleElement()
+                .satisfies(event -> {
+                    assertThat(event.getLong("size")).isPositive();
+                    assertThat(event.getString("lexer")).isEqualTo("PageLexer");
+                    assertThat(event.getString("action")).isEqualTo("ANALYZED");
+                    assertThat(event.getInt("issues")).isEqualTo(2);
+                });
+        assertThat(events).filteredOn(event -> event.getEventType().getName().equals(CheckVisitEvent.NAME))
+                .singleElement()
+                .satisfies(event -> {
+                    assertThat(event.getString("rule")).isEqualTo(HtmlRulesDefinition.REPOSITORY_KEY + ":" + AvoidAutoplayCheck.KEY);
+                    assertThat(event.getLong("notifications")).isPositive();
+                });
+        assertThat(events).filteredOn(event -> event.getEventType().getName().equals(SaveMetricsEvent.NAME))
+                .singleElement()
+                .satisfies(event -> assertThat(event.getInt("savedIssues")).isEqualTo(2));
+        assertThat(events).filteredOn(event -> event.getEventType().getName().equals(AnalysisErrorEvent.NAME))
+                .singleElement()
+                .satisfies(event -> assertThat(event.getString("path")).isEqualTo("missing.html"));
+    }
+
+    @Test
+    public void identicalFilesAnalyzedOnce(@TempDir Path baseDir) throws Exception {
+        String content = Files.readString(TEST_DIR.resolve("example.html"));
+        for (String fileName : Arrays.asList("a.html", "b.html", "c.html")) {
+            Files.writeString(baseDir.resolve(fileName), content);
+        }
+        SensorContextTester context = SensorContextTester.create(baseDir).setRuntime(sonarRuntime);
+        context.settings().setProperty(HtmlAnalysisSettings.PROFILING_PROPERTY, true);
+        context.settings().setProperty(HtmlAnalysisSettings.DEDUPLICATION_PROPERTY, true);
+        context.fileSystem().setWorkDir(baseDir.resolve("work"));
+        for (String fileName : Arrays.asList("a.html", "b.html", "c.html")) {
+            context.fileSystem().add(new TestInputFileBuilder("key", fileName)
+                    .setModuleBaseDir(baseDir)
+                    .setLanguage(HtmlConstants.LANGUAGE_KEY)
+                    .setType(InputFile.Type.MAIN)
+                    .initMetadata(content)
+                    .setCharset(StandardCharsets.UTF_8)
+                    .build());
+        }
+
+        htmlSensor.execute(context);
+
+        assertThat(context.allAnalysisErrors()).isEmpty();
+        assertThat(context.allIssues()).hasSize(6);
+        assertThat(issueLocations(context).stream().map(location -> location.replaceAll(" [abc]\\.html ", " file ")).distinct())
+                .hasSize(2);
+        assertThat(Files.readString(context.fileSystem().workDir().toPath().resolve(HtmlAnalysisProfiler.REPORT_FILE)))
+                .contains("\"action\": \"ANALYZED\"")
+                .contains("\"action\": \"DUPLICATE\"");
+    }
+
+    @Test
+    public void parallelAnalysis() throws Exception {
+        tester.fileSystem().add(createInputFile("example.vue"));
+        tester.fileSystem().add(createInputFile("example.html"));
+        htmlSensor.execute(tester);
+
+        SensorContextTester parallelTester = SensorContextTester.create(TEST_DIR).setRuntime(sonarRuntime);
+        parallelTester.settings().setProperty(HtmlAnalysisSettings.THREADS_PROPERTY, 4);
+        parallelTester.fileSystem().add(createInputFile("example.vue"));
+        parallelTester.fileSystem().add(createInputFile("example.html"));
+        htmlSensor.execute(parallelTester);
+
+        assertThat(parallelTester.allIssues()).hasSize(3);
+        assertThat(parallelTester.allAnalysisErrors()).isEmpty();
+        assertThat(issueLocations(parallelTester)).containsExactlyElementsOf(issueLocations(tester));
+        assertThat(Thread.getAllStackTraces().keySet())
+                .filteredOn(thread -> thread.getName().startsWith("ecocode-html-analysis-"))
+                .allMatch(HtmlSensorTest::exits);
+    }
+
+    @Test
+    public void analysisWithPipeline() throws Exception {
+        tester.fileSystem().add(createInputFile("example.vue"));
+        tester.fileSystem().add(createInputFile("example.html"));
+        htmlSensor.execute(tester);
+
+        SensorContextTester pipelinedTester = SensorContextTester.create(TEST_DIR).setRuntime(sonarRuntime);
+        pipelinedTester.settings().setProperty(HtmlAnalysisSettings.PIPELINE_PROPERTY, true);
+        pipelinedTester.fileSystem().add(createInputFile("example.vue"));
+        pipelinedTester.fileSystem().add(createInputFile("example.html"));
+        htmlSensor.execute(pipelinedTester);
+
+        assertThat(pipelinedTester.allAnalysisErrors()).isEmpty();
+        assertThat(issueLocations(pipelinedTester)).hasSize(3).containsExactlyElementsOf(issueLocations(tester));
+    }
+
+    @Test
+    public void memoryBudget(@TempDir Path baseDir) throws Exception {
+        for (int i = 0; i < 20; i++) {
+            Files.copy(TEST_DIR.resolve("example.html"), baseDir.resolve("example" + i + ".html"));
+        }
+        for (int threads : new int[]{1, 4}) {
+            SensorContextTester budgetTester = SensorContextTester.create(baseDir).setRuntime(sonarRuntime);
+            budgetTester.settings().setProperty(HtmlAnalysisSettings.MEMORY_BUDGET_PROPERTY, 1);
+            budgetTester.settings().setProperty(HtmlAnalysisSettings.THREADS_PROPERTY, threads);
+            budgetTester.settings().setProperty(HtmlAnalysisSettings.PIPELINE_PROPERTY, true);
+            for (int i = 0; i < 20; i++) {
+                budgetTester.fileSystem().add(new TestInputFileBuilder("key", "example" + i + ".html")
+                        .setModuleBaseDir(baseDir)
+                        .setLanguage(HtmlConstants.LANGUAGE_KEY)
+                        .setType(InputFile.Type.MAIN)
+                        .setCharset(StandardCharsets.UTF_8)
+                        .initMetadata(Files.readString(baseDir.resolve("example" + i + ".html")))
+                        .build());
+            }
+            htmlSensor.execute(budgetTester);
+
+            assertThat(budgetTester.allAnalysisErrors()).isEmpty();
+            assertThat(budgetTester.allIssues()).hasSize(40);
+        }
+    }
+
+    @Test
+    public void streaming() throws Exception {
+        tester.settings().setProperty(HtmlAnalysisSettings.STREAMING_PROPERTY, true);
+        tester.fileSystem().add(createInputFile("example.html"));
+        htmlSensor.execute(tester);
+        assertThat(tester.allIssues()).hasSize(2);
+        assertThat(tester.allAnalysisErrors()).isEmpty();
+    }
+
+    @Test
+    public void filesAboveSoftLimitAreAnalyzedByChunks() throws Exception {
+        tester.fileSystem().add(createInputFile("large.html"));
+        htmlSensor.execute(tester);
+
+        SensorContextTester chunkedTester = SensorContextTester.create(TEST_DIR).setRuntime(sonarRuntime);
+        chunkedTester.settings().setProperty(HtmlAnalysisSettings.LARGE_FILE_SOFT_LIMIT_PROPERTY, 1);
+        chunkedTester.fileSystem().add(createInputFile("large.html"));
+        htmlSensor.execute(chunkedTester);
+
+        assertThat(chunkedTester.allAnalysisErrors()).isEmpty();
+        assertThat(issueLocations(chunkedTester)).hasSize(16).containsExactlyElementsOf(issueLocations(tester));
+    }
+
+    @Test
+    public void filesAboveHardLimitAreSkipped() throws Exception {
+        tester.settings().setProperty(HtmlAnalysisSettings.LARGE_FILE_HARD_LIMIT_PROPERTY, 1);
+        tester.fileSystem().add(createInputFile("large.html"));
+        tester.fileSystem().add(createInputFile("example.html"));
+        htmlSensor.execute(tester);
+
         assertThat(tester.allAnalysisErrors()).isEmpty();
+        assertThat(tester.allIssues())
+                .hasSize(2)
+                .allSatisfy(issue -> assertThat(issue.primaryLocation().inputComponent().key()).endsWith("example.html"));
+    }
+
+    @Test
+    public void profiling(@TempDir Path workDir) throws Exception {
+        tester.settings().setProperty(HtmlAnalysisSettings.PROFILING_PROPERTY, true);
+        tester.fileSystem().setWorkDir(workDir);
+        tester.fileSystem().add(createInputFile("example.html"));
+        htmlSensor.execute(tester);
+
+        assertThat(tester.allIssues()).hasSize(2);
+        String report = Files.readString(workDir.resolve(HtmlAnalysisProfiler.REPORT_FILE));
+        assertThat(report)
+                .contains("\"phases\": {\"readMs\": ")
+                .contains("{\"file\": \"example.html\", \"action\": \"ANALYZED\", \"totalMs\": ")
+                .contains("{\"rule\": \"ecocode-html:EC8000\", \"visitMs\": ");
+    }
+
+    @Test
+    public void filesWithoutTriggerTokensAreFilteredOut(@TempDir Path workDir) throws Exception {
+        tester.settings().setProperty(HtmlAnalysisSettings.PROFILING_PROPERTY, true);
+        tester.settings().setProperty(HtmlAnalysisSettings.PRE_FILTER_PROPERTY, true);
+        tester.fileSystem().setWorkDir(workDir);
+        tester.fileSystem().add(createInputFile("no-media.html"));
+        tester.fileSystem().add(createInputFile("example.html"));
+        htmlSensor.execute(tester);
+
+        assertThat(tester.allIssues()).hasSize(2);
+        assertThat(Files.readString(workDir.resolve(HtmlAnalysisProfiler.REPORT_FILE)))
+                .contains("{\"file\": \"no-media.html\", \"action\": \"FILTERED\"")
+                .contains("{\"file\": \"example.html\", \"action\": \"ANALYZED\"");
+    }
+
+    @Test
+    public void filesNotFilteredByDefault(@TempDir Path workDir) throws Exception {
+        tester.settings().setProperty(HtmlAnalysisSettings.PROFILING_PROPERTY, true);
+        tester.fileSystem().setWorkDir(workDir);
+        tester.fileSystem().add(createInputFile("no-media.html"));
+        htmlSensor.execute(tester);
+
+        assertThat(tester.allIssues()).isEmpty();
+        assertThat(Files.readString(workDir.resolve(HtmlAnalysisProfiler.REPORT_FILE)))
+                .contains("{\"file\": \"no-media.html\", \"action\": \"ANALYZED\"");
+    }
+
+    @Test
+    public void unchangedFilesReplayCachedIssues() throws Exception {
+        TestCache firstCache = new TestCache();
+        tester.setCacheEnabled(true);
+        tester.setPreviousCache(new TestCache());
+        tester.setNextCache(firstCache);
+        tester.fileSystem().add(createInputFile("example.vue"));
+        htmlSensor.execute(tester);
+        assertThat(firstCache.entries()).hasSize(1);
+
+        TestCache secondCache = new TestCache(firstCache);
+        SensorContextTester secondTester = SensorContextTester.create(TEST_DIR).setRuntime(sonarRuntime);
+        secondTester.setCacheEnabled(true);
+        secondTester.setPreviousCache(firstCache);
+        secondTester.setNextCache(secondCache);
+        secondTester.fileSystem().add(createInputFile("example.vue"));
+        htmlSensor.execute(secondTester);
+
+        assertThat(secondTester.allAnalysisErrors()).isEmpty();
+        assertThat(issueLocations(secondTester)).hasSize(1).containsExactlyElementsOf(issueLocations(tester));
+        assertThat(secondCache.entries()).containsOnlyKeys(firstCache.entries().keySet());
+    }
+
+    @Test
+    public void changedFilesOnly(@TempDir Path workDir) throws Exception {
+        tester.settings().setProperty(HtmlAnalysisSettings.CHANGED_FILES_ONLY_PROPERTY, true);
+        tester.settings().setProperty(HtmlAnalysisSettings.PROFILING_PROPERTY, true);
+        tester.fileSystem().setWorkDir(workDir);
+        tester.fileSystem().add(createInputFile("example.vue", InputFile.Status.CHANGED));
+        tester.fileSystem().add(createInputFile("example.html", InputFile.Status.SAME));
+        htmlSensor.execute(tester);
+
+        assertThat(tester.allAnalysisErrors()).isEmpty();
+        assertThat(issueLocations(tester)).hasSize(1).allMatch(location -> location.contains(" example.vue "));
+        assertThat(Files.readString(workDir.resolve(HtmlAnalysisProfiler.REPORT_FILE)))
+                .contains("{\"file\": \"example.vue\", \"action\": \"ANALYZED\"")
+                .contains("{\"file\": \"example.html\", \"action\": \"UNCHANGED\"");
+    }
+
+    @Test
+    public void changedFilesOnlyReplayUnchangedFilesFromCache() throws Exception {
+        TestCache firstCache = new TestCache();
+        tester.setCacheEnabled(true);
+        tester.setPreviousCache(new TestCache());
+        tester.setNextCache(firstCache);
+        tester.fileSystem().add(createInputFile("example.html"));
+        htmlSensor.execute(tester);
+
+        SensorContextTester secondTester = SensorContextTester.create(TEST_DIR).setRuntime(sonarRuntime);
+        secondTester.settings().setProperty(HtmlAnalysisSettings.CHANGED_FILES_ONLY_PROPERTY, true);
+        secondTester.setCacheEnabled(true);
+        secondTester.setPreviousCache(firstCache);
+        secondTester.setNextCache(new TestCache(firstCache));
+        secondTester.fileSystem().add(createInputFile("example.html", InputFile.Status.SAME));
+        secondTester.fileSystem().add(createInputFile("example.php", InputFile.Status.SAME));
+        htmlSensor.execute(secondTester);
+
+        // the unchanged file without previous analysis is not analyzed
+        assertThat(secondTester.allAnalysisErrors()).isEmpty();
+        assertThat(issueLocations(secondTester)).hasSize(2).containsExactlyElementsOf(issueLocations(tester));
+    }
+
+    private static List<String> issueLocations(SensorContextTester context) {
+        List<String> locations = new ArrayList<>();
+        for (Issue issue : context.allIssues()) {
+            IssueLocation location = issue.primaryLocation();
+            locations.add(issue.ruleKey() + " " + location.inputComponent() + " " + location.textRange() + " " + location.message());
+        }
+        return locations;
+    }
+
+    @Test
+    public void sonarLintAnalysesReuseWarmAnalyzer() throws Exception {
+        when(sonarRuntime.getProduct()).thenReturn(SonarProduct.SONARLINT);
+        HtmlWarmAnalyzer warmAnalyzer = new HtmlWarmAnalyzer();
+        tester.fileSystem().add(createInputFile("example.vue"));
+        new HtmlSensor(checkFactory, activeRules, sonarRuntime, warmAnalyzer).execute(tester);
+
+        // the checks of the first analysis are reused and the unchanged file is replayed, so no check is created
+        SensorContextTester secondTester = SensorContextTester.create(TEST_DIR).setRuntime(sonarRuntime);
+        secondTester.fileSystem().add(createInputFile("example.vue"));
+        new HtmlSensor(mock(CheckFactory.class), activeRules, sonarRuntime, warmAnalyzer).execute(secondTester);
+
+        assertThat(secondTester.allAnalysisErrors()).isEmpty();
+        assertThat(issueLocations(secondTester)).hasSize(1).containsExactlyElementsOf(issueLocations(tester));
     }
 
     private DefaultInputFile createInputFile(String fileName) throws IOException {
+        return createInputFile(fileName, InputFile.Status.ADDED);
+    }
+
+    private DefaultInputFile createInputFile(String fileName, InputFile.Status status) throws IOException {
         return new TestInputFileBuilder("key", fileName)
+                .setStatus(status)
                 .setModuleBaseDir(TEST_DIR)
                 .setLanguage(HtmlConstants.LANGUAGE_KEY)
                 .setType(InputFile.Type.MAIN)
@@ -124,4 +488,13 @@ public class HtmlSensorTest {
                 .build();
     }
 
+    private static boolean exits(Thread thread) {
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !thread.isAlive();
+    }
+
 }
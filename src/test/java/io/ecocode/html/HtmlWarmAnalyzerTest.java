@@ -0,0 +1,103 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import io.ecocode.html.checks.AvoidAutoplayCheck;
+import io.ecocode.html.visitor.HtmlNodeDispatcher;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.SonarRuntime;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.batch.rule.internal.DefaultActiveRules;
+import org.sonar.api.batch.rule.internal.NewActiveRule;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.internal.SonarRuntimeImpl;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.Version;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HtmlWarmAnalyzerTest {
+
+    private static final SonarRuntime SONARLINT_RUNTIME = SonarRuntimeImpl.forSonarLint(Version.create(9, 9));
+
+    private final HtmlWarmAnalyzer warmAnalyzer = new HtmlWarmAnalyzer();
+
+    @Test
+    void sessionReusedWithSameRulesAndSettings() {
+        HtmlWarmAnalyzer.Session session = warmAnalyzer.acquire(activeRules("EC8000"), settings(new MapSettings()), HtmlWarmAnalyzerTest::analyzer);
+        warmAnalyzer.release(session);
+
+        HtmlWarmAnalyzer.Session nextSession = warmAnalyzer.acquire(activeRules("EC8000"), settings(new MapSettings()), HtmlWarmAnalyzerTest::analyzer);
+
+        assertThat(nextSession).isSameAs(session);
+        assertThat(nextSession.cache().isEnabled()).isTrue();
+    }
+
+    @Test
+    void newSessionWhenRulesOrSettingsChange() {
+        HtmlWarmAnalyzer.Session session = warmAnalyzer.acquire(activeRules("EC8000"), settings(new MapSettings()), HtmlWarmAnalyzerTest::analyzer);
+        warmAnalyzer.release(session);
+        HtmlWarmAnalyzer.Session otherRulesSession = warmAnalyzer.acquire(activeRules(), settings(new MapSettings()), HtmlWarmAnalyzerTest::analyzer);
+        warmAnalyzer.release(otherRulesSession);
+
+        MapSettings streaming = new MapSettings();
+        streaming.setProperty(HtmlAnalysisSettings.STREAMING_PROPERTY, true);
+        HtmlWarmAnalyzer.Session otherSettingsSession = warmAnalyzer.acquire(activeRules(), settings(streaming), HtmlWarmAnalyzerTest::analyzer);
+
+        assertThat(otherRulesSession).isNotSameAs(session);
+        assertThat(otherSettingsSession).isNotSameAs(otherRulesSession);
+    }
+
+    @Test
+    void concurrentAnalysesGetTheirOwnSession() {
+        HtmlWarmAnalyzer.Session session = warmAnalyzer.acquire(activeRules("EC8000"), settings(new MapSettings()), HtmlWarmAnalyzerTest::analyzer);
+
+        HtmlWarmAnalyzer.Session concurrentSession = warmAnalyzer.acquire(activeRules("EC8000"), settings(new MapSettings()), HtmlWarmAnalyzerTest::analyzer);
+
+        assertThat(concurrentSession).isNotSameAs(session);
+    }
+
+    @Test
+    void fingerprint() {
+        assertThat(HtmlWarmAnalyzer.fingerprint(activeRules("EC8000")))
+                .isEqualTo(HtmlWarmAnalyzer.fingerprint(activeRules("EC8000")))
+                .isNotEqualTo(HtmlWarmAnalyzer.fingerprint(activeRules()));
+    }
+
+    private static ActiveRules activeRules(String... keys) {
+        List<NewActiveRule> rules = new ArrayList<>();
+        for (String key : keys) {
+            rules.add(new NewActiveRule.Builder().setRuleKey(RuleKey.of(HtmlRulesDefinition.REPOSITORY_KEY, key)).build());
+        }
+        return new DefaultActiveRules(rules);
+    }
+
+    private static HtmlAnalysisSettings settings(MapSettings settings) {
+        return new HtmlAnalysisSettings(settings.asConfig(), SONARLINT_RUNTIME);
+    }
+
+    private static HtmlFileAnalyzer analyzer(HtmlAnalysisCache cache) {
+        HtmlNodeDispatcher dispatcher = new HtmlNodeDispatcher();
+        dispatcher.addVisitor(new AvoidAutoplayCheck());
+        return new HtmlFileAnalyzer(dispatcher, settings(new MapSettings()), cache);
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonar.api.SonarEdition;
+import org.sonar.api.SonarQubeSide;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.internal.SonarRuntimeImpl;
+import org.sonar.api.utils.Version;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemoryBudgetTest {
+
+    private static final long MEGABYTE = 1024 * 1024;
+
+    @TempDir
+    Path baseDir;
+
+    @Test
+    void disabledByDefault() throws Exception {
+        MemoryBudget budget = MemoryBudget.create(settings(new MapSettings()));
+
+        assertThat(budget.isEnabled()).isFalse();
+        assertThat(budget.footprint(inputFile("a.html", 1000))).isZero();
+        assertThat(budget.tryAcquire(MEGABYTE)).isTrue();
+        assertThat(budget.tryAcquire(MEGABYTE)).isTrue();
+    }
+
+    @Test
+    void footprintEstimatedFromSize() throws Exception {
+        MapSettings settings = new MapSettings()
+                .setProperty(HtmlAnalysisSettings.MEMORY_BUDGET_PROPERTY, 64)
+                .setProperty(HtmlAnalysisSettings.LARGE_FILE_SOFT_LIMIT_PROPERTY, 100)
+                .setProperty(HtmlAnalysisSettings.LARGE_FILE_HARD_LIMIT_PROPERTY, 1500);
+        MemoryBudget budget = MemoryBudget.create(settings(settings));
+
+        assertThat(budget.isEnabled()).isTrue();
+        assertThat(budget.footprint(inputFile("small.html", 1000))).isEqualTo(1000L * MemoryBudget.FOOTPRINT_PER_BYTE);
+        // analyzed by chunks
+        assertThat(budget.footprint(inputFile("large.html", 200 * 1024))).isEqualTo(64L * 1024 * MemoryBudget.FOOTPRINT_PER_BYTE);
+        // analyzed by chunks of the mapped file
+        assertThat(budget.footprint(inputFile("mapped.html", 1200 * 1024)))
+                .isEqualTo(64L * 1024 * MemoryBudget.FOOTPRINT_PER_BYTE + 1200 * 1024);
+        // skipped
+        assertThat(budget.footprint(inputFile("huge.html", 2000 * 1024))).isZero();
+        assertThat(budget.footprint(new TestInputFileBuilder("key", "missing.html").setModuleBaseDir(baseDir).build())).isZero();
+    }
+
+    @Test
+    void filesAdmittedWithinBudget() throws Exception {
+        MemoryBudget budget = MemoryBudget.create(settings(new MapSettings().setProperty(HtmlAnalysisSettings.MEMORY_BUDGET_PROPERTY, 1)));
+
+        // a single file is always admitted, whatever its footprint
+        assertThat(budget.tryAcquire(2 * MEGABYTE)).isTrue();
+        assertThat(budget.tryAcquire(1)).isFalse();
+        budget.release(2 * MEGABYTE);
+        assertThat(budget.tryAcquire(MEGABYTE / 2)).isTrue();
+        assertThat(budget.tryAcquire(MEGABYTE / 2)).isTrue();
+        assertThat(budget.tryAcquire(1)).isFalse();
+
+        CountDownLatch admitted = new CountDownLatch(1);
+        Thread waiting = new Thread(() -> {
+            try {
+                budget.acquire(MEGABYTE / 2);
+                admitted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiting.start();
+        assertThat(admitted.await(100, TimeUnit.MILLISECONDS)).isFalse();
+        budget.release(MEGABYTE / 2);
+        assertThat(admitted.await(10, TimeUnit.SECONDS)).isTrue();
+        waiting.join();
+    }
+
+    private InputFile inputFile(String name, int size) throws Exception {
+        Files.write(baseDir.resolve(name), new byte[size]);
+        return new TestInputFileBuilder("key", name).setModuleBaseDir(baseDir).build();
+    }
+
+    private static HtmlAnalysisSettings settings(MapSettings settings) {
+        return new HtmlAnalysisSettings(settings.asConfig(),
+                SonarRuntimeImpl.forSonarQube(Version.create(9, 9), SonarQubeSide.SCANNER, SonarEdition.COMMUNITY));
+    }
+
+}
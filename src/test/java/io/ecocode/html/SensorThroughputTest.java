@@ -0,0 +1,240 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html;
+
+import io.ecocode.html.util.CorpusGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonar.api.SonarEdition;
+import org.sonar.api.SonarQubeSide;
+import org.sonar.api.SonarRuntime;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.rule.CheckFactory;
+import org.sonar.api.batch.rule.internal.DefaultActiveRules;
+import org.sonar.api.batch.rule.internal.NewActiveRule;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.internal.SonarRuntimeImpl;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.Version;
+import org.sonar.check.Rule;
+import org.sonar.plugins.html.api.HtmlConstants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * End-to-end throughput of {@link HtmlSensor} on a generated corpus of HTML, Vue and PHP files, compared with the baseline
+ * checked in {@value #DEFAULT_BASELINE}. Only run by the {@code throughput} profile:
+ * <pre>
+ * mvn test -Pthroughput [-Dthroughput.files=300] [-Dthroughput.size=8000] [-Dthroughput.tagDensity=0.5]
+ *     [-Dthroughput.threads=1] [-Dthroughput.tolerance=0.25] [-Dthroughput.updateBaseline=true]
+ * </pre>
+ * The measures are written to {@value #REPORT}. The baseline depends on the machine it was measured on, so it is only
+ * compared with runs on the same corpus, and should be updated with {@code -Dthroughput.updateBaseline=true} when
+ * the reference machine changes.
+ */
+@Tag("throughput")
+class SensorThroughputTest {
+
+    private static final String DEFAULT_BASELINE = "src/test/resources/throughput/baseline.properties";
+
+    private static final String REPORT = "target/throughput.properties";
+
+    private static final CorpusGenerator.Kind[] KINDS = {CorpusGenerator.Kind.HTML, CorpusGenerator.Kind.VUE, CorpusGenerator.Kind.PHP};
+
+    private static final int WARMUP_RUNS = 3;
+
+    private static final int MEASURED_RUNS = 5;
+
+    private static final String FILES_PER_SECOND = "filesPerSecond";
+
+    private static final String MEGABYTES_PER_SECOND = "megabytesPerSecond";
+
+    private static final String PEAK_HEAP_MEGABYTES = "peakHeapMegabytes";
+
+    private final int files = Integer.getInteger("throughput.files", 300);
+
+    private final int size = Integer.getInteger("throughput.size", 8000);
+
+    private final double tagDensity = Double.parseDouble(System.getProperty("throughput.tagDensity", "0.5"));
+
+    private final int threads = Integer.getInteger("throughput.threads", 1);
+
+    private final double tolerance = Double.parseDouble(System.getProperty("throughput.tolerance", "0.25"));
+
+    private final Path baselineFile = Paths.get(System.getProperty("throughput.baseline", DEFAULT_BASELINE));
+
+    @TempDir
+    Path baseDir;
+
+    @Test
+    void throughputDoesNotRegress() throws IOException {
+        List<InputFile> inputFiles = generateCorpus();
+        long bytes = 0;
+        for (InputFile inputFile : inputFiles) {
+            bytes += Files.size(Paths.get(inputFile.uri()));
+        }
+
+        SonarRuntime sonarRuntime = SonarRuntimeImpl.forSonarQube(Version.create(9, 9), SonarQubeSide.SCANNER, SonarEdition.COMMUNITY);
+        HtmlSensor sensor = new HtmlSensor(allRules(), sonarRuntime);
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            analyze(sensor, sonarRuntime, inputFiles);
+        }
+
+        // the best run is kept, the slower ones having been disturbed by the machine
+        long bestNanos = Long.MAX_VALUE;
+        long peakHeap = 0;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            System.gc();
+            resetPeakHeap();
+            long start = System.nanoTime();
+            SensorContextTester context = analyze(sensor, sonarRuntime, inputFiles);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            peakHeap = Math.max(peakHeap, peakHeap());
+            assertThat(context.allAnalysisErrors()).isEmpty();
+            assertThat(context.allIssues()).isNotEmpty();
+        }
+
+        Properties measures = corpusProperties();
+        double seconds = bestNanos / 1e9;
+        measures.setProperty(FILES_PER_SECOND, format(inputFiles.size() / seconds));
+        measures.setProperty(MEGABYTES_PER_SECOND, format(bytes / 1e6 / seconds));
+        measures.setProperty(PEAK_HEAP_MEGABYTES, format(peakHeap / 1e6));
+        store(measures, Paths.get(REPORT));
+
+        if (Boolean.getBoolean("throughput.updateBaseline")) {
+            store(measures, baselineFile);
+            return;
+        }
+
+        Properties baseline = load(baselineFile);
+        assumeTrue(corpusProperties().entrySet().stream().allMatch(entry -> entry.getValue().equals(baseline.get(entry.getKey()))),
+                "The baseline was measured on another corpus");
+        assertNoRegression(measures, baseline, FILES_PER_SECOND);
+        assertNoRegression(measures, baseline, MEGABYTES_PER_SECOND);
+    }
+
+    private List<InputFile> generateCorpus() throws IOException {
+        CorpusGenerator generator = new CorpusGenerator(42, tagDensity);
+        List<InputFile> inputFiles = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            CorpusGenerator.Kind kind = KINDS[i % KINDS.length];
+            String filename = "file" + i + "." + kind.extension();
+            String content = generator.generate(kind, size);
+            Files.writeString(baseDir.resolve(filename), content);
+            inputFiles.add(new TestInputFileBuilder("throughput", filename)
+                    .setModuleBaseDir(baseDir)
+                    .setLanguage(HtmlConstants.LANGUAGE_KEY)
+                    .setType(InputFile.Type.MAIN)
+                    .setCharset(StandardCharsets.UTF_8)
+                    .initMetadata(content)
+                    .build());
+        }
+        return inputFiles;
+    }
+
+    private SensorContextTester analyze(HtmlSensor sensor, SonarRuntime sonarRuntime, List<InputFile> inputFiles) {
+        SensorContextTester context = SensorContextTester.create(baseDir).setRuntime(sonarRuntime);
+        context.settings().setProperty(HtmlAnalysisSettings.THREADS_PROPERTY, threads);
+        inputFiles.forEach(context.fileSystem()::add);
+        sensor.execute(context);
+        return context;
+    }
+
+    private static CheckFactory allRules() {
+        List<NewActiveRule> activeRules = CheckList.getChecks().stream()
+                .map(check -> new NewActiveRule.Builder()
+                        .setRuleKey(RuleKey.of(HtmlRulesDefinition.REPOSITORY_KEY, check.getAnnotation(Rule.class).key()))
+                        .build())
+                .collect(Collectors.toList());
+        return new CheckFactory(new DefaultActiveRules(activeRules));
+    }
+
+    private Properties corpusProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("files", Integer.toString(files));
+        properties.setProperty("size", Integer.toString(size));
+        properties.setProperty("tagDensity", Double.toString(tagDensity));
+        properties.setProperty("threads", Integer.toString(threads));
+        return properties;
+    }
+
+    private void assertNoRegression(Properties measures, Properties baseline, String key) {
+        double measured = Double.parseDouble(measures.getProperty(key));
+        double expected = Double.parseDouble(baseline.getProperty(key));
+        assertThat(measured)
+                .as("%s regressed from %s to %s, beyond the tolerance of %s%%", key, expected, measured, tolerance * 100)
+                .isGreaterThanOrEqualTo(expected * (1 - tolerance));
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    private static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    private static void store(Properties properties, Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (OutputStream out = Files.newOutputStream(file)) {
+            properties.store(out, "HtmlSensor throughput on a generated corpus of HTML, Vue and PHP files");
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.declarative;
+
+import io.ecocode.html.checks.AvoidAutoplayCheck;
+import io.ecocode.html.util.TestHelper;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.html.checks.HtmlIssue;
+import org.sonar.plugins.html.checks.PreciseHtmlIssue;
+import org.sonar.plugins.html.node.Attribute;
+import org.sonar.plugins.html.node.TagNode;
+import org.sonar.plugins.html.visitor.HtmlSourceCode;
+
+import java.io.File;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class DeclarativeMatcherTest {
+
+    private static final String REPOSITORY = "ecocode-html";
+
+    private static final File AUTOPLAY = new File("src/test/resources/checks/AvoidAutoplayCheck.html");
+
+    @Test
+    void sameIssuesAsEquivalentCheck() {
+        DeclarativeRule autoplay = new DeclarativeRule(AvoidAutoplayCheck.KEY, "Avoid using autoplay attribute in {element} element",
+                List.of("audio", "video"), List.of(DeclarativeRule.Condition.present("autoplay")));
+        DeclarativeRulesCheck declarativeCheck = new DeclarativeRulesCheck(DeclarativeMatcher.compile(REPOSITORY, List.of(autoplay)));
+        AvoidAutoplayCheck check = new AvoidAutoplayCheck();
+        check.setRuleKey(RuleKey.of(REPOSITORY, AvoidAutoplayCheck.KEY));
+
+        assertThat(describe(TestHelper.scan(AUTOPLAY, declarativeCheck)))
+                .hasSize(2)
+                .isEqualTo(describe(TestHelper.scan(AUTOPLAY, check)));
+    }
+
+    @Test
+    void elementsAreMatchedAgainstAllRulesAtOnce() {
+        DeclarativeMatcher matcher = DeclarativeMatcher.compile(REPOSITORY, List.of(
+                new DeclarativeRule("R1", "no src", List.of("video", "audio"), List.of(DeclarativeRule.Condition.absent("src"))),
+                new DeclarativeRule("R2", "not none", List.of("video"), List.of(DeclarativeRule.Condition.notEqualTo("preload", "none"))),
+                new DeclarativeRule("R3", "eager", List.of(), List.of(DeclarativeRule.Condition.equalTo("loading", "EAGER")))));
+
+        assertThat(match(matcher, element("video"))).containsExactly("R1", "R2");
+        assertThat(match(matcher, element("VIDEO", "src", "a.mp4", "preload", " None "))).isEmpty();
+        assertThat(match(matcher, element("audio", "src", "a.mp3", "preload", "auto"))).isEmpty();
+        assertThat(match(matcher, element("img", "loading", "eager"))).containsExactly("R3");
+        assertThat(match(matcher, element("video", "src", "a.mp4", "preload", "auto", "loading", "eager"))).containsExactly("R2", "R3");
+        assertThat(match(matcher, element("span"))).isEmpty();
+    }
+
+    @Test
+    void triggerTokens() {
+        DeclarativeRule video = new DeclarativeRule("R1", "m", List.of("Video"), List.of(DeclarativeRule.Condition.absent("controls")));
+        DeclarativeRule loading = new DeclarativeRule("R2", "m", List.of(),
+                List.of(DeclarativeRule.Condition.absent("hidden"), DeclarativeRule.Condition.equalTo("loading", "eager")));
+        DeclarativeRule anyElement = new DeclarativeRule("R3", "m", List.of(), List.of(DeclarativeRule.Condition.absent("hidden")));
+
+        assertThat(DeclarativeMatcher.compile(REPOSITORY, List.of(video, loading)).triggerTokens()).containsExactly("video", "loading");
+        assertThat(DeclarativeMatcher.compile(REPOSITORY, List.of(video, anyElement)).triggerTokens()).isNull();
+        assertThat(DeclarativeMatcher.compile(REPOSITORY, List.of()).isEmpty()).isTrue();
+    }
+
+    private static List<String> match(DeclarativeMatcher matcher, TagNode node) {
+        HtmlSourceCode sourceCode = new HtmlSourceCode(mock(org.sonar.api.batch.fs.InputFile.class));
+        matcher.match(node, sourceCode);
+        return sourceCode.getIssues().stream().map(issue -> issue.ruleKey().rule()).collect(Collectors.toList());
+    }
+
+    private static TagNode element(String name, String... attributes) {
+        TagNode node = new TagNode();
+        node.setNodeName(name);
+        for (int i = 0; i < attributes.length; i += 2) {
+            node.getAttributes().add(new Attribute(attributes[i], attributes[i + 1]));
+        }
+        return node;
+    }
+
+    private static List<String> describe(HtmlSourceCode sourceCode) {
+        return sourceCode.getIssues().stream()
+                .map(DeclarativeMatcherTest::describe)
+                .collect(Collectors.toList());
+    }
+
+    private static String describe(HtmlIssue issue) {
+        PreciseHtmlIssue precise = (PreciseHtmlIssue) issue;
+        return issue.ruleKey() + " " + issue.line() + ":" + precise.startColumn() + "-" + precise.endLine() + ":" + precise.endColumn()
+                + " " + issue.message();
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.declarative;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeclarativeRulesTest {
+
+    @Test
+    void parse() throws IOException {
+        List<DeclarativeRule> rules = DeclarativeRules.parse(new StringReader("[{"
+                + "\"key\": \"EC9999\", \"message\": \"Lazy load {element}\", \"elements\": [\"img\", \"IFRAME\"],"
+                + "\"attributes\": [{\"name\": \"src\", \"present\": true}, {\"name\": \"hidden\", \"present\": false},"
+                + "{\"name\": \"decoding\", \"value\": \" async \"}, {\"name\": \"loading\", \"notValue\": \"lazy\"}]"
+                + "}, {\"key\": \"EC9998\", \"message\": \"Any element\"}]"));
+
+        assertThat(DeclarativeRules.keys(rules)).containsExactly("EC9999", "EC9998");
+        DeclarativeRule rule = rules.get(0);
+        assertThat(rule.message()).isEqualTo("Lazy load {element}");
+        assertThat(rule.elements()).extracting(Object::toString).containsExactly("img", "iframe");
+        assertThat(rule.conditions()).extracting(Object::toString)
+                .containsExactly("src PRESENT", "hidden ABSENT", "decoding EQUALS async", "loading NOT_EQUALS lazy");
+        assertThat(rules.get(1).elements()).isEmpty();
+        assertThat(rules.get(1).conditions()).isEmpty();
+    }
+
+    @Test
+    void invalidRules() {
+        assertInvalid("{}", "must be an array");
+        assertInvalid("[{\"message\": \"m\"}]", "has no key");
+        assertInvalid("[{\"key\": \"EC9999\"}]", "EC9999 has no message");
+        assertInvalid("[{\"key\": \"EC9999\", \"message\": \"m\", \"elements\": \"img\"}]", "must be an array");
+        assertInvalid("[{\"key\": \"EC9999\", \"message\": \"m\", \"attributes\": [{\"name\": \"a\"}]}]", "exactly one of");
+        assertInvalid("[{\"key\": \"EC9999\", \"message\": \"m\", \"attributes\": [{\"name\": \"a\", \"present\": true, \"value\": \"b\"}]}]",
+                "exactly one of");
+        assertInvalid("[{\"key\": \"EC9999\", \"message\": \"m\", \"attributes\": [{\"name\": \"a\", \"value\": 1}]}]", "wrong type");
+        assertInvalid("[{\"key\": \"EC9999\", \"message\": \"m\"}, {\"key\": \"EC9999\", \"message\": \"m\"}]", "declared several times");
+        assertInvalid("[", "Invalid declarative rules");
+    }
+
+    @Test
+    void catalogRulesHaveMetadata() {
+        for (String key : DeclarativeRules.keys(DeclarativeRules.load())) {
+            assertThat(DeclarativeRules.class.getResource("/io/ecocode/rules/html/" + key + ".json")).as(key).isNotNull();
+            assertThat(DeclarativeRules.class.getResource("/io/ecocode/rules/html/" + key + ".html")).as(key).isNotNull();
+        }
+    }
+
+    private static void assertInvalid(String json, String message) {
+        assertThatThrownBy(() -> DeclarativeRules.parse(new StringReader(json)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(message);
+    }
+
+}
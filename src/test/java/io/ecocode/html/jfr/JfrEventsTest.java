@@ -0,0 +1,44 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.jfr;
+
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JfrEventsTest {
+
+    @Test
+    void enabledOnlyWhileRecorded() {
+        assertThat(JfrEvents.isFileAnalysisEnabled()).isFalse();
+        assertThat(JfrEvents.isCheckVisitEnabled()).isFalse();
+
+        try (Recording recording = new Recording()) {
+            recording.enable(FileAnalysisEvent.NAME);
+            recording.disable(CheckVisitEvent.NAME);
+            recording.start();
+
+            assertThat(JfrEvents.isFileAnalysisEnabled()).isTrue();
+            assertThat(JfrEvents.isCheckVisitEnabled()).isFalse();
+        }
+
+        assertThat(JfrEvents.isFileAnalysisEnabled()).isFalse();
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.lex;
+
+import org.junit.jupiter.api.Test;
+import org.sonar.plugins.html.lex.PageLexer;
+import org.sonar.plugins.html.node.Node;
+import org.sonar.plugins.html.node.NodeType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ServerCodeMaskingReaderTest {
+
+    @Test
+    void phpCodeMasked() throws IOException {
+        assertThat(mask("<p class=\"<?= $a > 1 ? 'a' : 'b' ?>\">text</p>", ServerCodeMaskingReader.Syntax.PHP))
+                .isEqualTo("<p class=\"                         \">text</p>");
+        assertThat(mask("<br <?php\r\nif ($a) {\n?>class=\"a\" <? } ?>>", ServerCodeMaskingReader.Syntax.PHP))
+                .isEqualTo("<br      \r\n         \n  class=\"a\"        >");
+        assertThat(mask("<?xml version=\"1.0\"?><% a %>", ServerCodeMaskingReader.Syntax.PHP))
+                .isEqualTo("<?xml version=\"1.0\"?><% a %>");
+    }
+
+    @Test
+    void jspCodeMasked() throws IOException {
+        assertThat(mask("<%@ page %><a href=\"<%= url %>\"><%-- <% %> --%></a><? a ?>", ServerCodeMaskingReader.Syntax.JSP))
+                .isEqualTo("<%@ page %><a href=\"          \"><%-- <% %> --%></a><? a ?>");
+    }
+
+    @Test
+    void codeBetweenTagsKeptForTheLexer() throws IOException {
+        String jsp = "<%@ page %>\n<p><%= b > c %></p><%-- <p> --%>";
+        assertThat(mask(jsp, ServerCodeMaskingReader.Syntax.JSP)).isEqualTo(jsp);
+        String php = "<?php if ($a <b) { ?><p><?= $a ?></p><?php } ?>";
+        assertThat(mask(php, ServerCodeMaskingReader.Syntax.PHP)).isEqualTo(php);
+
+        for (String document : new String[]{jsp, php}) {
+            ServerCodeMaskingReader.Syntax syntax = document == jsp ? ServerCodeMaskingReader.Syntax.JSP : ServerCodeMaskingReader.Syntax.PHP;
+            List<Node> nodes = new PageLexer().parse(new StringReader(document));
+            List<Node> maskedNodes = new PageLexer().parse(new ServerCodeMaskingReader(new StringReader(document), syntax));
+            assertThat(maskedNodes).extracting(Node::getNodeType).containsExactlyElementsOf(nodes.stream().map(Node::getNodeType).collect(Collectors.toList()));
+            assertThat(maskedNodes).filteredOn(node -> node.getNodeType() != NodeType.TAG).extracting(Node::getCode)
+                    .containsExactlyElementsOf(nodes.stream().filter(node -> node.getNodeType() != NodeType.TAG).map(Node::getCode).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void unterminatedCodeMaskedUntilTheEnd() throws IOException {
+        assertThat(mask("<p class=<?php echo 'a';\n", ServerCodeMaskingReader.Syntax.PHP)).isEqualTo("<p class=               \n");
+        assertThat(mask("<p><", ServerCodeMaskingReader.Syntax.PHP)).isEqualTo("<p><");
+    }
+
+    @Test
+    void delimitersSplitBetweenReads() throws IOException {
+        StringBuilder document = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            document.append("<b title='<?php ").append(i).append(" ?>'></b>\n");
+            expected.append("<b title='").append(" ".repeat(String.valueOf(i).length() + 9)).append("'></b>\n");
+        }
+
+        // the underlying reader returns one character at a time, and the masked content is read by odd lengths
+        Reader reader = new ServerCodeMaskingReader(new OneCharReader(document.toString()), ServerCodeMaskingReader.Syntax.PHP);
+        StringBuilder masked = new StringBuilder();
+        char[] buffer = new char[7];
+        int read;
+        while ((read = reader.read(buffer, 0, buffer.length)) != -1) {
+            masked.append(buffer, 0, read);
+        }
+
+        assertThat(masked.toString()).isEqualTo(expected.toString());
+    }
+
+    private static String mask(String document, ServerCodeMaskingReader.Syntax syntax) throws IOException {
+        Reader reader = new ServerCodeMaskingReader(new StringReader(document), syntax);
+        StringBuilder masked = new StringBuilder();
+        int c;
+        while ((c = reader.read()) != -1) {
+            masked.append((char) c);
+        }
+        return masked.toString();
+    }
+
+    private static class OneCharReader extends StringReader {
+
+        OneCharReader(String s) {
+            super(s);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            return super.read(cbuf, off, Math.min(len, 1));
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.lex;
+
+import org.junit.jupiter.api.Test;
+import org.sonar.plugins.html.lex.PageLexer;
+import org.sonar.plugins.html.node.Node;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingPageLexerTest {
+
+    @Test
+    void sameNodesAsWholeDocument() throws IOException {
+        String document = Files.readString(Paths.get("src/test/resources/checks/AvoidAutoplayCheck.html"));
+
+        for (int chunkSize = 1; chunkSize < document.length() + 2; chunkSize++) {
+            assertThat(streamedNodes(document, chunkSize)).as("chunk size " + chunkSize).isEqualTo(nodes(document));
+        }
+    }
+
+    @Test
+    void windowsLineEndings() throws IOException {
+        String document = "<html>\r\n<body>\r\r<audio autoplay></audio>\n</body></html>";
+
+        assertThat(streamedNodes(document, 1)).isEqualTo(nodes(document));
+    }
+
+    @Test
+    void notCutInsideRawTextAndComments() {
+        String document = "<p>a</p><script>if (a <b) {}</script><!-- <p> --><p title='<b>'>b</p>";
+
+        assertThat(cuts(new StreamingPageLexer.ChunkBoundaries(1), document)).containsExactly(
+                document.indexOf("a</p>") + 1,
+                document.indexOf("<script>"),
+                document.indexOf("</script>") + "</script>".length(),
+                document.indexOf("<p title"),
+                document.lastIndexOf("</p>"));
+    }
+
+    @Test
+    void rawTextEndsAtItsEndTagOnly() {
+        String document = "<script>a = '</scriptx>';</script ><p>a</p>";
+
+        assertThat(cuts(new StreamingPageLexer.ChunkBoundaries(1), document)).containsExactly(
+                document.indexOf("<p>"),
+                document.indexOf("a</p>") + 1);
+    }
+
+    @Test
+    void templateExpressionsInTemplateSyntaxOnly() {
+        String document = "<p>{{ a </p><b> }}</p>";
+
+        assertThat(cuts(new StreamingPageLexer.ChunkBoundaries(1, Integer.MAX_VALUE, true), document)).containsExactly(
+                document.indexOf("{{") + "{{ a </p><b> }}".length());
+        assertThat(cuts(new StreamingPageLexer.ChunkBoundaries(1, Integer.MAX_VALUE, false), document)).containsExactly(
+                document.indexOf("</p>"),
+                document.indexOf("<b>"),
+                document.lastIndexOf("</p>"));
+    }
+
+    @Test
+    void cutInsideMarkupBeyondMaxChunkSize() throws IOException {
+        String document = "<p>a</p><!-- " + "-".repeat(100) + " --><p>b</p>";
+
+        assertThat(cuts(new StreamingPageLexer.ChunkBoundaries(10, 50, false), document)).containsExactly(
+                50, 100, document.indexOf("<p>b"));
+        assertThat(streamedNodes(document, 10, 50)).hasSizeGreaterThan(nodes(document).size());
+        assertThat(streamedNodes(document, 10, Integer.MAX_VALUE)).isEqualTo(nodes(document));
+    }
+
+    private static List<Integer> cuts(StreamingPageLexer.ChunkBoundaries boundaries, String document) {
+        List<Integer> cuts = new ArrayList<>();
+        int offset = 0;
+        int cut;
+        while ((cut = boundaries.next(document.substring(offset), true)) > 0) {
+            offset += cut;
+            cuts.add(offset);
+            boundaries.consumed(cut);
+        }
+        return cuts;
+    }
+
+    private static List<String> streamedNodes(String document, int chunkSize) throws IOException {
+        return streamedNodes(document, chunkSize, Integer.MAX_VALUE);
+    }
+
+    private static List<String> streamedNodes(String document, int chunkSize, int maxChunkSize) throws IOException {
+        List<String> nodes = new ArrayList<>();
+        new StreamingPageLexer(new PageLexer(), chunkSize, maxChunkSize).parse(new StringReader(document), node -> nodes.add(describe(node)));
+        return nodes;
+    }
+
+    private static List<String> nodes(String document) {
+        List<String> nodes = new ArrayList<>();
+        for (Node node : new PageLexer().parse(new StringReader(document))) {
+            nodes.add(describe(node));
+        }
+        return nodes;
+    }
+
+    private static String describe(Node node) {
+        return node.getNodeType() + " " + node.getStartLinePosition() + ":" + node.getStartColumnPosition()
+                + "-" + node.getEndLinePosition() + ":" + node.getEndColumnPosition() + " " + node.getCode();
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.lex;
+
+import org.junit.jupiter.api.Test;
+import org.sonar.plugins.html.lex.VueLexer;
+import org.sonar.plugins.html.node.Node;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VueTemplateLexerTest {
+
+    private static final String DOCUMENT = "\uFEFF<script>\r\n"
+            + "const html = '<template>';\r\n"
+            + "</script>\r\n"
+            + "<!-- <template> -->\r\n"
+            + "<style>p { color: red }</style>  <template lang=\"html\">\n"
+            + "  <template v-if=\"count > 1\"><p>été</p></template>\n"
+            + "  <template v-else/>\n"
+            + "  <video autoplay></video>\n"
+            + "</template>\n"
+            + "<style scoped>\n"
+            + "</style>\n";
+
+    @Test
+    void templateNodesAtTheirPositionInTheFile() {
+        List<String> expected = describe(new VueLexer().parse(new StringReader(DOCUMENT.substring(1))));
+        int start = indexOf(expected, "<template lang=\"html\">");
+        int end = expected.lastIndexOf(lastTemplateEnd(expected));
+
+        List<Node> nodes = new VueTemplateLexer().parse(encode(DOCUMENT, StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+
+        assertThat(nodes).isNotNull();
+        assertThat(describe(nodes)).isEqualTo(expected.subList(start, end + 1));
+        assertThat(describe(nodes).get(0)).startsWith("TAG 5:33-5:55 ");
+    }
+
+    @Test
+    void otherCharsets() {
+        Charset latin1 = StandardCharsets.ISO_8859_1;
+        List<Node> nodes = new VueTemplateLexer().parse(encode("<template><p>é</p></template>", latin1), latin1);
+
+        assertThat(nodes).isNotNull();
+        assertThat(describe(nodes)).contains("TEXT 1:13-1:14 é");
+        assertThat(new VueTemplateLexer().parse(encode(DOCUMENT, StandardCharsets.UTF_16), StandardCharsets.UTF_16)).isNull();
+    }
+
+    @Test
+    void templateNotFound() {
+        assertThat(parse("<script>const a = '<template></template>';</script>")).isNull();
+        assertThat(parse("<!-- <template></template> -->")).isNull();
+        assertThat(parse("<template><p>unterminated</p>")).isNull();
+        assertThat(parse("<template><template></template>")).isNull();
+        assertThat(parse("<templates></templates>")).isNull();
+    }
+
+    @Test
+    void templateTagsInQuotedAttributeValues() {
+        String document = "<template><p title='<template>'>a</p><p :title=\"'</template>'\"></p></template><style></style>";
+        List<String> expected = describe(new VueLexer().parse(new StringReader(document)));
+
+        List<Node> nodes = parse(document);
+
+        assertThat(nodes).isNotNull();
+        assertThat(describe(nodes)).isEqualTo(expected.subList(0, expected.size() - 2));
+        assertThat(parse("<template><p title=\"a></p></template>")).isNull();
+    }
+
+    @Test
+    void emptyTemplate() {
+        assertThat(parse("<TEMPLATE></TEMPLATE>")).isNotNull().hasSize(2);
+    }
+
+    private static List<Node> parse(String document) {
+        return new VueTemplateLexer().parse(encode(document, StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer encode(String document, Charset charset) {
+        return ByteBuffer.wrap(document.getBytes(charset)).asReadOnlyBuffer();
+    }
+
+    private static String lastTemplateEnd(List<String> nodes) {
+        String last = null;
+        for (String node : nodes) {
+            if (node.endsWith(" </template>")) {
+                last = node;
+            }
+        }
+        return last;
+    }
+
+    private static int indexOf(List<String> nodes, String code) {
+        for (int i = 0; i < nodes.size(); i++) {
+            if (nodes.get(i).endsWith(" " + code)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static List<String> describe(List<Node> nodes) {
+        List<String> described = new ArrayList<>();
+        for (Node node : nodes) {
+            described.add(node.getNodeType() + " " + node.getStartLinePosition() + ":" + node.getStartColumnPosition()
+                    + "-" + node.getEndLinePosition() + ":" + node.getEndColumnPosition() + " " + node.getCode());
+        }
+        return described;
+    }
+
+}
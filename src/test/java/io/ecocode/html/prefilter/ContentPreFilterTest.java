@@ -0,0 +1,82 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.prefilter;
+
+import io.ecocode.html.checks.AvoidAutoplayCheck;
+import org.junit.jupiter.api.Test;
+import org.sonar.plugins.html.checks.AbstractPageCheck;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentPreFilterTest {
+
+    private static final String WITH_TOKEN = "<video autoplay>";
+
+    private static final String WITHOUT_TOKEN = "<video controls>";
+
+    @Test
+    void checksWithTriggerTokens() {
+        ContentPreFilter filter = ContentPreFilter.create(List.of(AvoidAutoplayCheck.class));
+        assertThat(accepts(filter, WITH_TOKEN, StandardCharsets.UTF_8)).isTrue();
+        assertThat(accepts(filter, WITHOUT_TOKEN, StandardCharsets.UTF_8)).isFalse();
+        assertThat(accepts(filter, WITHOUT_TOKEN, StandardCharsets.ISO_8859_1)).isFalse();
+        assertThat(accepts(filter, WITHOUT_TOKEN, Charset.forName("windows-1252"))).isFalse();
+    }
+
+    @Test
+    void encodingsWithMultiByteAscii() {
+        ContentPreFilter filter = ContentPreFilter.create(List.of(AvoidAutoplayCheck.class));
+        assertThat(accepts(filter, WITH_TOKEN, StandardCharsets.UTF_16LE)).isTrue();
+        assertThat(accepts(filter, WITHOUT_TOKEN, StandardCharsets.UTF_16LE)).isTrue();
+        assertThat(accepts(filter, WITHOUT_TOKEN, StandardCharsets.UTF_16)).isTrue();
+    }
+
+    @Test
+    void checksWithoutTriggerTokens() {
+        ContentPreFilter filter = ContentPreFilter.create(List.of(AvoidAutoplayCheck.class, UntokenizedCheck.class));
+        assertThat(accepts(filter, WITHOUT_TOKEN, StandardCharsets.UTF_8)).isTrue();
+        assertThat(accepts(ContentPreFilter.acceptAll(), WITHOUT_TOKEN, StandardCharsets.UTF_8)).isTrue();
+    }
+
+    @Test
+    void visitorsProvidingTokens() {
+        TriggerTokenSource controls = () -> new String[]{"controls"};
+        TriggerTokenSource anyFile = () -> null;
+        assertThat(accepts(ContentPreFilter.forVisitors(List.of(new AvoidAutoplayCheck(), controls)), WITHOUT_TOKEN, StandardCharsets.UTF_8)).isTrue();
+        assertThat(accepts(ContentPreFilter.forVisitors(List.of(new AvoidAutoplayCheck(), controls)), "<video>", StandardCharsets.UTF_8)).isFalse();
+        assertThat(accepts(ContentPreFilter.forVisitors(List.of(new AvoidAutoplayCheck(), anyFile)), "<video>", StandardCharsets.UTF_8)).isTrue();
+    }
+
+    @Test
+    void noCheck() {
+        assertThat(accepts(ContentPreFilter.create(List.of()), WITH_TOKEN, StandardCharsets.UTF_8)).isFalse();
+    }
+
+    private static boolean accepts(ContentPreFilter filter, String content, Charset charset) {
+        return filter.accepts(ByteBuffer.wrap(content.getBytes(charset)), charset);
+    }
+
+    private static class UntokenizedCheck extends AbstractPageCheck {
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.prefilter;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenMatcherTest {
+
+    private final TokenMatcher matcher = TokenMatcher.compile(Arrays.asList("autoplay", "Video", "deo-x", "play"));
+
+    @Test
+    void matches() {
+        assertThat(matches("<audio AutoPlay>")).isTrue();
+        assertThat(matches("<VIDEO>")).isTrue();
+        assertThat(matches("vide video")).isTrue();
+        assertThat(matches("the videos")).isTrue();
+        assertThat(matches("vi-deo-x")).isTrue();
+        assertThat(matches("replay")).isTrue();
+        assertThat(matches("pla-y viDEo")).isTrue();
+    }
+
+    @Test
+    void doesNotMatch() {
+        assertThat(matches("")).isFalse();
+        assertThat(matches("<audio src=a.mp3 autopla>")).isFalse();
+        assertThat(matches("vide-o pla y")).isFalse();
+        assertThat(matches("lecture vidéo")).isFalse();
+    }
+
+    @Test
+    void directBuffers() {
+        byte[] bytes = "<p>é</p><video>".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+        buffer.flip();
+        assertThat(matcher.matches(buffer)).isTrue();
+        assertThat(matcher.matches(buffer.limit(bytes.length - 3))).isFalse();
+        assertThat(buffer.position()).isZero();
+    }
+
+    @Test
+    void invalidTokens() {
+        List<String> empty = List.of("");
+        assertThatThrownBy(() -> TokenMatcher.compile(empty)).isInstanceOf(IllegalArgumentException.class);
+        List<String> nonAscii = List.of("vidéo");
+        assertThatThrownBy(() -> TokenMatcher.compile(nonAscii)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private boolean matches(String content) {
+        return matcher.matches(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.util;
+
+import java.util.Random;
+
+/**
+ * Generates synthetic documents to measure the analysis throughput, reproducible for a given seed.
+ * <p>
+ * The tag density is the probability, between 0 and 1, that the next fragment of the document body is an element
+ * rather than a run of text. A part of the generated elements are audio and video elements, with or without autoplay.
+ */
+public final class CorpusGenerator {
+
+    public enum Kind {
+        HTML("html"),
+        VUE("vue"),
+        JSP("jsp"),
+        PHP("php");
+
+        private final String extension;
+
+        Kind(String extension) {
+            this.extension = extension;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    private static final String[] ELEMENTS = {
+            "<div class=\"container\">%s</div>",
+            "<p>%s</p>",
+            "<span title=\"title\">%s</span>",
+            "<a href=\"https://www.ecocode.io\">%s</a>",
+            "<ul><li>%s</li><li>item</li></ul>",
+            "<img src=\"image.png\" alt=\"%s\"/>",
+            "<input type=\"text\" value=\"%s\"/>",
+            "<audio src=\"sound.mp3\">%s</audio>",
+            "<audio src=\"sound.mp3\" autoplay>%s</audio>",
+            "<video src=\"movie.mp4\" controls>%s</video>",
+            "<video src=\"movie.mp4\" autoplay muted>%s</video>",
+    };
+
+    private static final String[] WORDS = {"lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit"};
+
+    private final Random random;
+
+    private final double tagDensity;
+
+    public CorpusGenerator(long seed, double tagDensity) {
+        this.random = new Random(seed);
+        this.tagDensity = tagDensity;
+    }
+
+    /**
+     * @param size approximate number of characters of the document
+     */
+    public String generate(Kind kind, int size) {
+        StringBuilder document = new StringBuilder(size + 256);
+        switch (kind) {
+            case VUE:
+                document.append("<template>\n  <div id=\"app\">\n");
+                appendBody(document, size * 2 / 3);
+                document.append("  </div>\n</template>\n\n<script>\nexport default {\n  name: 'App',\n");
+                appendScript(document, size / 3, "  const ");
+                document.append("}\n</script>\n\n<style scoped>\n#app { margin: 0; }\n</style>\n");
+                break;
+            case JSP:
+                document.append("<%@ page contentType=\"text/html;charset=UTF-8\" %>\n<html>\n<body>\n");
+                appendBody(document, size);
+                document.append("</body>\n</html>\n");
+                break;
+            case PHP:
+                document.append("<?php\nrequire_once 'header.php';\n");
+                appendScript(document, size / 4, "$");
+                document.append("?>\n<html>\n<body>\n");
+                appendBody(document, size * 3 / 4);
+                document.append("</body>\n</html>\n");
+                break;
+            default:
+                document.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head><title>Corpus</title></head>\n<body>\n");
+                appendBody(document, size);
+                document.append("</body>\n</html>\n");
+                break;
+        }
+        return document.toString();
+    }
+
+    private void appendBody(StringBuilder document, int size) {
+        int end = document.length() + size;
+        while (document.length() < end) {
+            if (random.nextDouble() < tagDensity) {
+                document.append(String.format(ELEMENTS[random.nextInt(ELEMENTS.length)], word()));
+            } else {
+                for (int i = 0; i < 8; i++) {
+                    document.append(word()).append(' ');
+                }
+            }
+            document.append('\n');
+        }
+    }
+
+    private void appendScript(StringBuilder document, int size, String declaration) {
+        int end = document.length() + size;
+        int i = 0;
+        while (document.length() < end) {
+            document.append(declaration).append(word()).append(i++).append(" = '<p>").append(word()).append("</p>';\n");
+        }
+    }
+
+    private String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.util;
+
+import org.sonar.api.batch.sensor.cache.ReadCache;
+import org.sonar.api.batch.sensor.cache.WriteCache;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory analysis cache, used both as the previous and the next cache of a {@code SensorContextTester}.
+ */
+public class TestCache implements ReadCache, WriteCache {
+
+    private final Map<String, byte[]> entries = new HashMap<>();
+
+    @Nullable
+    private final TestCache previous;
+
+    public TestCache() {
+        this(null);
+    }
+
+    public TestCache(@Nullable TestCache previous) {
+        this.previous = previous;
+    }
+
+    public Map<String, byte[]> entries() {
+        return entries;
+    }
+
+    @Override
+    public InputStream read(String key) {
+        return new ByteArrayInputStream(entries.get(key));
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    @Override
+    public void write(String key, InputStream data) {
+        try {
+            write(key, data.readAllBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void write(String key, byte[] data) {
+        if (entries.containsKey(key)) {
+            throw new IllegalArgumentException("Cache already contains key '" + key + "'");
+        }
+        entries.put(key, data);
+    }
+
+    @Override
+    public void copyFromPrevious(String key) {
+        if (previous == null || !previous.contains(key)) {
+            throw new IllegalArgumentException("No cache entry found for key '" + key + "'");
+        }
+        write(key, previous.entries.get(key));
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.visitor;
+
+import io.ecocode.html.CheckList;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.plugins.html.checks.AbstractPageCheck;
+import org.sonar.plugins.html.lex.PageLexer;
+import org.sonar.plugins.html.lex.VueLexer;
+import org.sonar.plugins.html.node.Node;
+import org.sonar.plugins.html.node.TagNode;
+import org.sonar.plugins.html.node.TextNode;
+import org.sonar.plugins.html.visitor.DefaultNodeVisitor;
+import org.sonar.plugins.html.visitor.HtmlAstScanner;
+import org.sonar.plugins.html.visitor.HtmlSourceCode;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HtmlNodeDispatcherTest {
+
+    @Test
+    void scan() {
+        RecordingVisitor visitor = new RecordingVisitor();
+        HtmlNodeDispatcher dispatcher = new HtmlNodeDispatcher();
+        dispatcher.addVisitor(visitor);
+
+        HtmlSourceCode sourceCode = new HtmlSourceCode(new TestInputFileBuilder("key", "index.html").build());
+        List<Node> nodes = new PageLexer().parse(new StringReader("<p>text<br/></p>"));
+        dispatcher.scan(nodes, sourceCode);
+
+        assertThat(visitor.getHtmlSourceCode()).isSameAs(sourceCode);
+        assertThat(visitor.events).containsExactly(
+                "startDocument", "startElement p", "characters", "startElement br", "endElement", "endElement", "endDocument");
+    }
+
+    @Test
+    void subscriptions() {
+        RecordingVisitor visitor = new RecordingVisitor();
+        SubscribedVisitor subscribedVisitor = new SubscribedVisitor();
+        HtmlNodeDispatcher dispatcher = new HtmlNodeDispatcher();
+        dispatcher.addVisitor(subscribedVisitor);
+        dispatcher.addVisitor(visitor);
+
+        HtmlSourceCode sourceCode = new HtmlSourceCode(new TestInputFileBuilder("key", "index.html").build());
+        String document = "<VIDEO src=a.mp4></VIDEO><video autoplay></video><audio AUTOPLAY/><p autoplay>text</p>";
+        dispatcher.scan(new PageLexer().parse(new StringReader(document)), sourceCode);
+
+        assertThat(subscribedVisitor.events).containsExactly(
+                "startDocument", "endElement", "startElement video", "endElement", "startElement audio", "endElement", "characters", "endDocument");
+        assertThat(visitor.events).containsExactly(
+                "startDocument", "startElement VIDEO", "endElement", "startElement video", "endElement", "startElement audio", "endElement",
+                "startElement p", "characters", "endElement", "endDocument");
+    }
+
+    @Test
+    void timedVisitors() {
+        SubscribedVisitor subscribedVisitor = new SubscribedVisitor();
+        HtmlNodeDispatcher dispatcher = new HtmlNodeDispatcher();
+        dispatcher.addVisitor(new TimedVisitor(subscribedVisitor));
+
+        HtmlSourceCode sourceCode = new HtmlSourceCode(new TestInputFileBuilder("key", "index.html").build());
+        dispatcher.scan(new PageLexer().parse(new StringReader("<p autoplay></p><video autoplay></video>")), sourceCode);
+
+        assertThat(subscribedVisitor.getHtmlSourceCode()).isSameAs(sourceCode);
+        assertThat(subscribedVisitor.events).containsExactly("startDocument", "startElement video", "endElement", "endDocument");
+        assertThat(dispatcher.visitorNanos()).isPositive();
+    }
+
+    @Test
+    void checksRaiseTheSameIssuesAsWithTheAstScanner() throws IOException {
+        List<Path> files;
+        try (Stream<Path> checkFiles = Files.list(Paths.get("src/test/resources/checks"));
+             Stream<Path> otherFiles = Files.list(Paths.get("src/test/resources/files"))) {
+            files = Stream.concat(checkFiles, otherFiles).sorted().collect(Collectors.toList());
+        }
+
+        int checks = CheckList.newChecks().size();
+        int issues = 0;
+        for (Path file : files) {
+            String document = Files.readString(file);
+            for (int i = 0; i < checks; i++) {
+                HtmlSourceCode scannerSourceCode = new HtmlSourceCode(new TestInputFileBuilder("key", file.toString()).build());
+                new HtmlAstScanner(List.of(CheckList.newChecks().get(i))).scan(parse(file, document), scannerSourceCode);
+
+                HtmlSourceCode dispatcherSourceCode = new HtmlSourceCode(new TestInputFileBuilder("key", file.toString()).build());
+                AbstractPageCheck check = CheckList.newChecks().get(i);
+                HtmlNodeDispatcher dispatcher = new HtmlNodeDispatcher();
+                dispatcher.addVisitor(check);
+                dispatcher.scan(parse(file, document), dispatcherSourceCode);
+
+                assertThat(issues(dispatcherSourceCode))
+                        .as("issues of %s on %s", check.getClass().getSimpleName(), file)
+                        .isEqualTo(issues(scannerSourceCode));
+                issues += scannerSourceCode.getIssues().size();
+            }
+        }
+        assertThat(issues).isPositive();
+    }
+
+    private static List<Node> parse(Path file, String document) {
+        PageLexer lexer = file.toString().endsWith(".vue") ? new VueLexer() : new PageLexer();
+        return lexer.parse(new StringReader(document));
+    }
+
+    private static List<String> issues(HtmlSourceCode sourceCode) {
+        return sourceCode.getIssues().stream()
+                .map(issue -> issue.ruleKey() + ":" + issue.line() + ":" + issue.message() + ":" + issue.cost())
+                .collect(Collectors.toList());
+    }
+
+    @ElementSubscription(tags = {"Video", "audio"}, attributes = "autoplay")
+    private static class SubscribedVisitor extends RecordingVisitor {
+    }
+
+    private static class RecordingVisitor extends DefaultNodeVisitor {
+
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void startDocument(List<Node> nodes) {
+            events.add("startDocument");
+        }
+
+        @Override
+        public void startElement(TagNode element) {
+            events.add("startElement " + element.getNodeName());
+        }
+
+        @Override
+        public void endElement(TagNode element) {
+            events.add("endElement");
+        }
+
+        @Override
+        public void characters(TextNode textNode) {
+            events.add("characters");
+        }
+
+        @Override
+        public void endDocument() {
+            events.add("endDocument");
+        }
+
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.visitor;
+
+import org.junit.jupiter.api.Test;
+import org.sonar.plugins.html.lex.PageLexer;
+import org.sonar.plugins.html.node.TagNode;
+
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexedElementTest {
+
+    private static final Symbol IMG = Symbols.intern("img");
+
+    private static final Symbol LOADING = Symbols.intern("loading");
+
+    private static final Symbol SRC = Symbols.intern("src");
+
+    @Test
+    void name_and_attributes() {
+        TagNode node = parse("<IMG Loading=lazy alt=''>");
+
+        IndexedElement element = IndexedElement.of(node);
+
+        assertThat(element.node()).isSameAs(node);
+        assertThat(element.is(IMG)).isTrue();
+        assertThat(element.hasAttribute(LOADING)).isTrue();
+        assertThat(element.hasAttribute(SRC)).isFalse();
+    }
+
+    @Test
+    void end_element() {
+        assertThat(IndexedElement.of(parse("</img>")).name()).isSameAs(IMG);
+        assertThat(IndexedElement.of(parse("<unknown-element>")).name()).isNull();
+    }
+
+    @Test
+    void reused_for_next_element() {
+        IndexedElement first = IndexedElement.of(parse("<img src=a.png>"));
+        assertThat(first.hasAttribute(SRC)).isTrue();
+
+        IndexedElement second = IndexedElement.of(parse("<img loading=lazy>"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(second.hasAttribute(SRC)).isFalse();
+        assertThat(second.hasAttribute(LOADING)).isTrue();
+    }
+
+    @Test
+    void symbols_interned_after_indexing() {
+        IndexedElement element = IndexedElement.of(parse("<img decoding=async>"));
+        assertThat(element.hasAttribute(SRC)).isFalse();
+
+        assertThat(element.hasAttribute(Symbols.intern("decoding"))).isTrue();
+    }
+
+    private static TagNode parse(String element) {
+        return (TagNode) new PageLexer().parse(new StringReader(element)).get(0);
+    }
+
+}
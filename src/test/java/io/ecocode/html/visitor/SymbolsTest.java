@@ -0,0 +1,59 @@
+/*
+ * ecoCode HTML plugin - Provides rules to reduce the environmental footprint of your HTML programs
+ * Copyright © 2023 Green Code Initiative (https://www.ecocode.io)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.ecocode.html.visitor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SymbolsTest {
+
+    @Test
+    void intern() {
+        Symbol symbol = Symbols.intern("Preload");
+
+        assertThat(symbol.name()).isEqualTo("preload");
+        assertThat(Symbols.intern("PRELOAD")).isSameAs(symbol);
+        assertThat(Symbols.intern("preload")).isSameAs(symbol);
+        assertThat(symbol.id()).isLessThan(Symbols.size());
+    }
+
+    @Test
+    void lookup() {
+        Symbol symbol = Symbols.intern("picture");
+
+        assertThat(Symbols.lookup("PICTURE", 0)).isSameAs(symbol);
+        assertThat(Symbols.lookup("/Picture", 1)).isSameAs(symbol);
+        assertThat(Symbols.lookup("pictures", 0)).isNull();
+        assertThat(Symbols.lookup("never-interned", 0)).isNull();
+    }
+
+    @Test
+    void growth() {
+        int size = Symbols.size();
+        for (int i = 0; i < 100; i++) {
+            Symbols.intern("growth-" + i);
+        }
+
+        assertThat(Symbols.size()).isEqualTo(size + 100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(Symbols.lookup("GROWTH-" + i, 0)).isNotNull().extracting(Symbol::name).isEqualTo("growth-" + i);
+        }
+    }
+
+}
@@ -0,0 +1,4 @@
+<?php $src = 'test.mp4'; ?>
+<h1>Hello <?= $name ?>!</h1>
+<video src="<?php echo $src ?>" autoplay></video>
+<audio <?php if ($count > 1) { echo 'loop'; } ?> autoplay></audio>